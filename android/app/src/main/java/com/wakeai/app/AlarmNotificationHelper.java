@@ -40,54 +40,84 @@ public class AlarmNotificationHelper {
     private static final String FALLBACK_CHANNEL_ID = "wakeai_alarm_fallback_channel";
     private static final int FALLBACK_NOTIFICATION_ID = 9002;
 
+    /** Activity PendingIntents shared by both alarm notifications; built once per process. */
+    private static PendingIntent fullScreenPI;
+    private static PendingIntent contentPI;
+    private static PendingIntent snoozePI;
+
     /**
      * Post a high-priority alarm notification with full-screen intent and sound.
      * Call this from the LocalNotifications receiver or from AlarmReceiver as
      * an immediate visual+audio signal while AlarmService is spinning up.
+     *
+     * @param channelReady true when the caller's fire plan already guaranteed
+     *                     the channel, which skips the channel lookup.
      */
-    static void postAlarmNotification(Context context) {
+    static void postAlarmNotification(Context context, boolean channelReady) {
         NotificationManager nm = (NotificationManager)
                 context.getSystemService(Context.NOTIFICATION_SERVICE);
         if (nm == null) return;
 
-        createFallbackChannel(context, nm);
-
-        Intent fullScreenIntent = new Intent(context, MainActivity.class);
-        fullScreenIntent.setAction("com.wakeai.app.ALARM_FIRED");
-        fullScreenIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK
-                | Intent.FLAG_ACTIVITY_CLEAR_TOP
-                | Intent.FLAG_ACTIVITY_SINGLE_TOP);
-
-        int piFlags = PendingIntent.FLAG_UPDATE_CURRENT;
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-            piFlags |= PendingIntent.FLAG_IMMUTABLE;
+        if (!channelReady) {
+            createFallbackChannel(context, nm);
         }
 
-        PendingIntent fullScreenPI = PendingIntent.getActivity(
-                context, 0, fullScreenIntent, piFlags);
-        PendingIntent contentPI = PendingIntent.getActivity(
-                context, 1, fullScreenIntent, piFlags);
+        nm.notify(FALLBACK_NOTIFICATION_ID, buildAlarmNotification(context, FALLBACK_CHANNEL_ID));
+        Log.i(TAG, "Fallback alarm notification posted with full-screen intent");
+    }
 
+    /**
+     * Build the ongoing alarm notification (full-screen intent → MainActivity
+     * over the lock screen). Used for both the fallback notification and
+     * AlarmService's foreground notification, which differ only in channel.
+     */
+    static Notification buildAlarmNotification(Context context, String channelId) {
         Notification.Builder builder;
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-            builder = new Notification.Builder(context, FALLBACK_CHANNEL_ID);
+            builder = new Notification.Builder(context, channelId);
         } else {
             builder = new Notification.Builder(context);
             builder.setPriority(Notification.PRIORITY_MAX);
         }
 
+        synchronized (AlarmNotificationHelper.class) {
+            if (fullScreenPI == null) {
+                Intent fullScreenIntent = new Intent(context, MainActivity.class);
+                fullScreenIntent.setAction("com.wakeai.app.ALARM_FIRED");
+                fullScreenIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK
+                        | Intent.FLAG_ACTIVITY_CLEAR_TOP
+                        | Intent.FLAG_ACTIVITY_SINGLE_TOP);
+
+                int piFlags = PendingIntent.FLAG_UPDATE_CURRENT;
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+                    piFlags |= PendingIntent.FLAG_IMMUTABLE;
+                }
+
+                Context app = context.getApplicationContext();
+                fullScreenPI = PendingIntent.getActivity(app, 0, fullScreenIntent, piFlags);
+                // Content intent (tap notification → same activity)
+                contentPI = PendingIntent.getActivity(app, 1, fullScreenIntent, piFlags);
+
+                // Snooze action → SnoozeReceiver, handled natively (no WebView)
+                Intent snoozeIntent = new Intent(app, SnoozeReceiver.class);
+                snoozeIntent.setAction(SnoozeReceiver.ACTION_SNOOZE);
+                snoozePI = PendingIntent.getBroadcast(app, 0, snoozeIntent, piFlags);
+            }
+        }
+
         builder.setSmallIcon(android.R.drawable.ic_lock_idle_alarm)
                 .setContentTitle("WakeAI Alarm")
                 .setContentText("Time to wake up!")
                 .setContentIntent(contentPI)
                 .setFullScreenIntent(fullScreenPI, true)
+                .addAction(new Notification.Action.Builder(
+                        android.R.drawable.ic_lock_idle_alarm, "Snooze", snoozePI).build())
                 .setOngoing(true)
                 .setAutoCancel(false)
                 .setVisibility(Notification.VISIBILITY_PUBLIC)
                 .setCategory(Notification.CATEGORY_ALARM);
 
-        nm.notify(FALLBACK_NOTIFICATION_ID, builder.build());
-        Log.i(TAG, "Fallback alarm notification posted with full-screen intent");
+        return builder.build();
     }
 
     /**
@@ -111,13 +141,15 @@ public class AlarmNotificationHelper {
      * alarm fires. Also used by LocalNotifications (alarmScheduler.js sets
      * channelId to this value) so that even Capacitor-posted notifications
      * play sound on STREAM_ALARM.
+     *
+     * @return true if the channel now exists (always true below Android O).
      */
-    static void ensureFallbackChannel(Context context) {
+    static boolean ensureFallbackChannel(Context context) {
         NotificationManager nm = (NotificationManager)
                 context.getSystemService(Context.NOTIFICATION_SERVICE);
-        if (nm != null) {
-            createFallbackChannel(context, nm);
-        }
+        if (nm == null) return false;
+        createFallbackChannel(context, nm);
+        return true;
     }
 
     private static void createFallbackChannel(Context context, NotificationManager nm) {
@@ -0,0 +1,176 @@
+package com.wakeai.app;
+
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The main process's way into state owned by the ":alarm" process.
+ *
+ * Ring state, fire traces, fire costs, trigger arbitration and the alarm
+ * process's wake-lock stats are written only there, to its private prefs or
+ * its memory. The main process never reads those files; it asks through
+ * {@link #call}, one binder round trip answered from the owner's own state:
+ *   ringState                           → RingStateChannel extras (latest event + phase)
+ *   fireTraces / fireCosts              → { records: String[] } encoded, oldest first
+ *   clearFireTraces / clearFireCosts
+ *   triggerWindow                       → { windowMs }
+ *   setTriggerWindow { windowMs }
+ *   triggerStats / wakeLockStats        → { group: { key: long } }
+ *   warmUp                              → nothing; see below
+ *
+ * Not exported, so only this app can call it. A call starts the alarm process
+ * when it isn't running; RingStateChannel checks that it is alive first, the
+ * on-demand stats calls don't bother. WarmUpReceiver relies on it: warmUp
+ * does nothing itself, but it brings the alarm process up (and keeps it
+ * cached) ahead of the fire.
+ */
+public class AlarmProcessProvider extends ContentProvider {
+
+    private static final String TAG = "AlarmProcessProvider";
+
+    private static final String AUTHORITY_SUFFIX = ".alarmprocess";
+
+    static final String METHOD_RING_STATE = "ringState";
+    static final String METHOD_FIRE_TRACES = "fireTraces";
+    static final String METHOD_CLEAR_FIRE_TRACES = "clearFireTraces";
+    static final String METHOD_FIRE_COSTS = "fireCosts";
+    static final String METHOD_CLEAR_FIRE_COSTS = "clearFireCosts";
+    static final String METHOD_TRIGGER_WINDOW = "triggerWindow";
+    static final String METHOD_SET_TRIGGER_WINDOW = "setTriggerWindow";
+    static final String METHOD_TRIGGER_STATS = "triggerStats";
+    static final String METHOD_WAKE_LOCK_STATS = "wakeLockStats";
+    static final String METHOD_WARM_UP = "warmUp";
+
+    static final String KEY_RECORDS = "records";
+    static final String KEY_WINDOW_MS = "windowMs";
+
+    @Override
+    public boolean onCreate() {
+        return true;
+    }
+
+    @Override
+    public Bundle call(String method, String arg, Bundle extras) {
+        Context context = getContext();
+        if (context == null) return null;
+        Bundle result = new Bundle();
+        switch (method) {
+            case METHOD_RING_STATE:
+                return RingStateChannel.snapshot();
+            case METHOD_FIRE_TRACES:
+                result.putStringArray(KEY_RECORDS, FireTrace.encodedTraces(context));
+                return result;
+            case METHOD_CLEAR_FIRE_TRACES:
+                FireTrace.clear(context);
+                return result;
+            case METHOD_FIRE_COSTS:
+                result.putStringArray(KEY_RECORDS, FireCost.encodedRecords(context));
+                return result;
+            case METHOD_CLEAR_FIRE_COSTS:
+                FireCost.clear(context);
+                return result;
+            case METHOD_TRIGGER_WINDOW:
+                result.putLong(KEY_WINDOW_MS, TriggerArbiter.windowMs(context));
+                return result;
+            case METHOD_SET_TRIGGER_WINDOW:
+                if (extras != null) {
+                    TriggerArbiter.setWindowMs(context, extras.getLong(KEY_WINDOW_MS));
+                }
+                return result;
+            case METHOD_TRIGGER_STATS:
+                return toBundle(TriggerArbiter.getStats(context));
+            case METHOD_WAKE_LOCK_STATS:
+                return toBundle(WakeLockCoordinator.getStats(context));
+            case METHOD_WARM_UP:
+                return result;
+            default:
+                Log.w(TAG, "Unknown method " + method);
+                return null;
+        }
+    }
+
+    // call() is the whole interface; there are no rows
+
+    @Override
+    public Cursor query(Uri uri, String[] projection, String selection,
+                        String[] selectionArgs, String sortOrder) {
+        return null;
+    }
+
+    @Override
+    public String getType(Uri uri) {
+        return null;
+    }
+
+    @Override
+    public Uri insert(Uri uri, ContentValues values) {
+        return null;
+    }
+
+    @Override
+    public int delete(Uri uri, String selection, String[] selectionArgs) {
+        return 0;
+    }
+
+    @Override
+    public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+        return 0;
+    }
+
+    // ── Main-process side ───────────────────────────────────────────────
+
+    /** Call {@code method} in the alarm process. Null when it could not be reached. */
+    static Bundle call(Context context, String method, Bundle extras) {
+        Uri uri = Uri.parse("content://" + context.getPackageName() + AUTHORITY_SUFFIX);
+        try {
+            return context.getContentResolver().call(uri, method, null, extras);
+        } catch (Exception e) {
+            Log.w(TAG, "Alarm process call " + method + " failed", e);
+            return null;
+        }
+    }
+
+    /** Encoded records from {@code method}; empty when the call failed. */
+    static String[] records(Context context, String method) {
+        Bundle result = call(context, method, null);
+        String[] records = result != null ? result.getStringArray(KEY_RECORDS) : null;
+        return records != null ? records : new String[0];
+    }
+
+    /** Grouped counters from {@code method}; empty when the call failed. */
+    static Map<String, Map<String, Number>> groups(Context context, String method) {
+        Bundle result = call(context, method, null);
+        Map<String, Map<String, Number>> groups = new HashMap<>();
+        if (result == null) return groups;
+        for (String group : result.keySet()) {
+            Bundle values = result.getBundle(group);
+            if (values == null) continue;
+            Map<String, Number> map = new HashMap<>();
+            for (String key : values.keySet()) {
+                map.put(key, values.getLong(key));
+            }
+            groups.put(group, map);
+        }
+        return groups;
+    }
+
+    private static Bundle toBundle(Map<String, Map<String, Number>> groups) {
+        Bundle result = new Bundle();
+        for (Map.Entry<String, Map<String, Number>> group : groups.entrySet()) {
+            Bundle values = new Bundle();
+            for (Map.Entry<String, Number> value : group.getValue().entrySet()) {
+                values.putLong(value.getKey(), value.getValue().longValue());
+            }
+            result.putBundle(group.getKey(), values);
+        }
+        return result;
+    }
+}
@@ -1,5 +1,6 @@
 package com.wakeai.app;
 
+import android.app.Activity;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
@@ -22,6 +23,25 @@ import android.util.Log;
  *   3. Launches MainActivity directly so the alarm UI shows immediately.
  *      This is BAL-exempt because it's triggered by setAlarmClock().
  *
+ * Afterwards it tells TriggerScheduler (through TriggerAdvanceReceiver in the
+ * main process, which owns alarm storage) that the head fired, so the next
+ * pending alarm is armed natively.
+ *
+ * The broadcast carries a {@link FirePlan} resolved when the trigger was
+ * armed; its extras are forwarded to AlarmService as-is, so nothing here reads
+ * storage or probes the notification channel.
+ *
+ * If another trigger path (JS ring() after the LocalNotification backup)
+ * already claimed this fire in TriggerArbiter, steps 1-3 are skipped.
+ *
+ * Runs in the ":alarm" process with AlarmService, which is why it is also the
+ * alarm process's entry point for the main process:
+ *   - ACTION_RING        JS ring(); claims the fire and starts the service,
+ *                        answering through the ordered broadcast's result code
+ *   - ACTION_TRACE_MARK  FireTrace stage reached in the main process
+ *   - ACTION_WAKE_LOCK_HELD  FireCost wake-lock hold ended in the main process
+ *   - ACTION_CPU_AWAKE   FireCost span the main process's CPU lock was held
+ *
  * Why BroadcastReceiver instead of getForegroundService() PendingIntent?
  *   - BroadcastReceivers from setAlarmClock() are guaranteed to be delivered
  *     by the system even when the app process is dead.
@@ -35,15 +55,66 @@ public class AlarmReceiver extends BroadcastReceiver {
 
     private static final String TAG = "AlarmReceiver";
 
+    static final String ACTION_RING = "com.wakeai.app.RING";
+    static final String ACTION_TRACE_MARK = "com.wakeai.app.TRACE_MARK";
+    static final String ACTION_WAKE_LOCK_HELD = "com.wakeai.app.WAKE_LOCK_HELD";
+    static final String ACTION_CPU_AWAKE = "com.wakeai.app.CPU_AWAKE";
+
+    static final String EXTRA_SOURCE = "com.wakeai.app.extra.SOURCE";
+    private static final String EXTRA_STAGE = "com.wakeai.app.extra.STAGE";
+    private static final String EXTRA_ELAPSED = "com.wakeai.app.extra.ELAPSED";
+    private static final String EXTRA_TAG = "com.wakeai.app.extra.TAG";
+    private static final String EXTRA_HELD_MS = "com.wakeai.app.extra.HELD_MS";
+    private static final String EXTRA_SINCE = "com.wakeai.app.extra.SINCE";
+
+    /** ACTION_RING result: the fire was claimed but AlarmService would not start. */
+    static final int RESULT_FAILED = Activity.RESULT_FIRST_USER;
+
     @Override
     public void onReceive(Context context, Intent intent) {
+        String action = intent.getAction();
+        if (ACTION_RING.equals(action)) {
+            setResultCode(ring(context, intent));
+            return;
+        }
+        if (ACTION_TRACE_MARK.equals(action)) {
+            FireTrace.markAt(context, intent.getIntExtra(EXTRA_STAGE, 0),
+                    intent.getLongExtra(EXTRA_ELAPSED, 0));
+            return;
+        }
+        if (ACTION_WAKE_LOCK_HELD.equals(action)) {
+            String tag = intent.getStringExtra(EXTRA_TAG);
+            if (tag != null) {
+                FireCost.wakeLockHeld(context, tag, intent.getLongExtra(EXTRA_HELD_MS, 0));
+            }
+            return;
+        }
+        if (ACTION_CPU_AWAKE.equals(action)) {
+            FireCost.cpuAwake(context, intent.getLongExtra(EXTRA_SINCE, 0),
+                    intent.getLongExtra(EXTRA_ELAPSED, 0));
+            return;
+        }
+
         Log.i(TAG, "Alarm received — posting fallback notification + starting service + launching activity");
 
+        String alarmId = intent.getStringExtra(AlarmService.EXTRA_ALARM_ID);
+        long triggerAt = intent.getLongExtra(AlarmService.EXTRA_TRIGGER_AT, 0);
+        boolean channelReady = intent.getBooleanExtra(FirePlan.EXTRA_CHANNEL_READY, false);
+
+        if (!TriggerArbiter.claim(context, TriggerArbiter.SOURCE_ALARM_MANAGER, alarmId, triggerAt)) {
+            // Already ringing via another path — only advance the heap
+            advanceTriggers(context, alarmId, triggerAt);
+            return;
+        }
+
+        // Start the latency trace for this fire (stage 0 + delivery lateness)
+        FireTrace.begin(context, alarmId, triggerAt);
+
         // 1. Post fallback notification FIRST — immediate, guaranteed visible.
         //    Has full-screen intent + CATEGORY_ALARM + sound on STREAM_ALARM.
         //    AlarmService will cancel this once it calls startForeground().
         try {
-            AlarmNotificationHelper.postAlarmNotification(context);
+            AlarmNotificationHelper.postAlarmNotification(context, channelReady);
         } catch (Exception e) {
             Log.e(TAG, "Failed to post fallback notification", e);
         }
@@ -76,6 +147,8 @@ public class AlarmReceiver extends BroadcastReceiver {
         try {
             Intent activityIntent = new Intent(context, MainActivity.class);
             activityIntent.setAction("com.wakeai.app.ALARM_FIRED");
+            activityIntent.putExtra(AlarmService.EXTRA_ALARM_ID, alarmId);
+            activityIntent.putExtra(AlarmService.EXTRA_TRIGGER_AT, triggerAt);
             activityIntent.addFlags(
                     Intent.FLAG_ACTIVITY_NEW_TASK
                     | Intent.FLAG_ACTIVITY_CLEAR_TOP
@@ -87,5 +160,105 @@ public class AlarmReceiver extends BroadcastReceiver {
             // will still show when the user interacts with the notification.
             Log.e(TAG, "Failed to launch activity — full-screen intent is fallback", e);
         }
+
+        // 4. Advance the trigger heap — arm the next alarm without a JS round-trip.
+        //    Done last so it never delays the user-visible steps above.
+        advanceTriggers(context, alarmId, triggerAt);
+    }
+
+    /**
+     * Record a FireTrace stage reached in the main process. {@code elapsed} is
+     * the main process's elapsedRealtime, which is the same clock here.
+     */
+    static void forwardTraceMark(Context context, int stage, long elapsed) {
+        Intent intent = new Intent(context, AlarmReceiver.class);
+        intent.setAction(ACTION_TRACE_MARK);
+        intent.putExtra(EXTRA_STAGE, stage);
+        intent.putExtra(EXTRA_ELAPSED, elapsed);
+        try {
+            context.sendBroadcast(intent);
+        } catch (Exception e) {
+            // Tracing must never break the fire path
+            Log.w(TAG, "Could not forward trace mark", e);
+        }
+    }
+
+    /** Count a wake-lock hold that ended in the main process for the current fire. */
+    static void forwardWakeLockHeld(Context context, String tag, long heldMs) {
+        Intent intent = new Intent(context, AlarmReceiver.class);
+        intent.setAction(ACTION_WAKE_LOCK_HELD);
+        intent.putExtra(EXTRA_TAG, tag);
+        intent.putExtra(EXTRA_HELD_MS, heldMs);
+        try {
+            context.sendBroadcast(intent);
+        } catch (Exception e) {
+            // Accounting must never keep a lock held
+            Log.w(TAG, "Could not forward wake lock hold", e);
+        }
+    }
+
+    /**
+     * Count a span the main process's CPU lock was held for the current fire.
+     * Both ends are elapsedRealtime, the same clock here.
+     */
+    static void forwardCpuAwake(Context context, long since, long until) {
+        Intent intent = new Intent(context, AlarmReceiver.class);
+        intent.setAction(ACTION_CPU_AWAKE);
+        intent.putExtra(EXTRA_SINCE, since);
+        intent.putExtra(EXTRA_ELAPSED, until);
+        try {
+            context.sendBroadcast(intent);
+        } catch (Exception e) {
+            // Accounting must never keep a lock held
+            Log.w(TAG, "Could not forward CPU awake span", e);
+        }
+    }
+
+    /**
+     * JS ring(): claim the fire for the caller's source and, if it won, start
+     * AlarmService with the intent's extras (a FirePlan when the alarm is
+     * stored). The caller launches the activity.
+     *
+     * @return RESULT_OK when started, RESULT_CANCELED when another trigger
+     *         already fired this alarm, {@link #RESULT_FAILED} when the service
+     *         could not be started.
+     */
+    private static int ring(Context context, Intent intent) {
+        String source = intent.getStringExtra(EXTRA_SOURCE);
+        String alarmId = intent.getStringExtra(AlarmService.EXTRA_ALARM_ID);
+        long triggerAt = intent.getLongExtra(AlarmService.EXTRA_TRIGGER_AT, 0);
+        if (!TriggerArbiter.claim(context, source != null ? source : TriggerArbiter.SOURCE_JS,
+                alarmId, triggerAt)) {
+            return Activity.RESULT_CANCELED;
+        }
+        try {
+            Intent serviceIntent = new Intent(context, AlarmService.class);
+            serviceIntent.setAction(AlarmService.ACTION_START_ALARM);
+            if (intent.getExtras() != null) {
+                serviceIntent.putExtras(intent.getExtras());
+            }
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                context.startForegroundService(serviceIntent);
+            } else {
+                context.startService(serviceIntent);
+            }
+            Log.i(TAG, "AlarmService started via ring()");
+            return Activity.RESULT_OK;
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to start AlarmService via ring()", e);
+            return RESULT_FAILED;
+        }
+    }
+
+    /** Storage and the trigger heap live in the main process — hand the fire over. */
+    private static void advanceTriggers(Context context, String alarmId, long triggerAt) {
+        try {
+            Intent advance = new Intent(context, TriggerAdvanceReceiver.class);
+            advance.putExtra(AlarmService.EXTRA_ALARM_ID, alarmId);
+            advance.putExtra(AlarmService.EXTRA_TRIGGER_AT, triggerAt);
+            context.sendBroadcast(advance);
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to arm next trigger", e);
+        }
     }
 }
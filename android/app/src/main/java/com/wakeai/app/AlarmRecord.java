@@ -0,0 +1,115 @@
+package com.wakeai.app;
+
+import java.util.Calendar;
+import java.util.Comparator;
+import java.util.TimeZone;
+
+/**
+ * Immutable, typed view of one natively persisted alarm.
+ *
+ * Records are stored by AlarmStorage in a compact delimited form instead of
+ * JSON so that the fire path can decode one record with a single split and
+ * no org.json allocation.
+ */
+public final class AlarmRecord {
+
+    /** Orders records by trigger time, ties broken by alarm ID. */
+    static final Comparator<AlarmRecord> BY_TRIGGER = new Comparator<AlarmRecord>() {
+        @Override
+        public int compare(AlarmRecord a, AlarmRecord b) {
+            int c = Long.compare(a.triggerAt, b.triggerAt);
+            return c != 0 ? c : a.alarmId.compareTo(b.alarmId);
+        }
+    };
+
+    private static final String FORMAT_V1 = "1";
+    /** v2 adds the recurrence rule before the alarm ID. v1 records decode as one-shot. */
+    private static final String FORMAT_V2 = "2";
+    private static final char SEP = '|';
+
+    final String alarmId;
+    final String time;
+    final String tone;
+    final boolean vibration;
+    final long triggerAt;
+    final Recurrence recurrence;
+
+    /**
+     * @param alarmId    Unique alarm ID (UUID from JS)
+     * @param time       Alarm time in "HH:mm" format
+     * @param tone       Tone file name without extension (e.g. "gentle")
+     * @param vibration  Whether vibration is enabled
+     * @param triggerAt  Epoch millis when the alarm should fire
+     */
+    AlarmRecord(String alarmId, String time, String tone,
+                boolean vibration, long triggerAt) {
+        this(alarmId, time, tone, vibration, triggerAt, Recurrence.NONE);
+    }
+
+    /**
+     * @param recurrence Repeat rule; {@link Recurrence#NONE} for a one-shot alarm
+     */
+    AlarmRecord(String alarmId, String time, String tone,
+                boolean vibration, long triggerAt, Recurrence recurrence) {
+        this.alarmId = alarmId;
+        this.time = time;
+        this.tone = tone != null ? tone : "gentle";
+        this.vibration = vibration;
+        this.triggerAt = triggerAt;
+        this.recurrence = recurrence != null ? recurrence : Recurrence.NONE;
+    }
+
+    /** Copy of this record with a different trigger time. */
+    AlarmRecord withTriggerAt(long newTriggerAt) {
+        return new AlarmRecord(alarmId, time, tone, vibration, newTriggerAt, recurrence);
+    }
+
+    /**
+     * Copy moved to the next occurrence of its rule after {@code afterMillis}
+     * (expired skip dates dropped), or null for a one-shot alarm or when the
+     * rule yields no further occurrence.
+     */
+    AlarmRecord nextOccurrence(long afterMillis, TimeZone zone) {
+        long next = recurrence.nextAfter(time, afterMillis, zone);
+        if (next <= 0) return null;
+        Calendar today = Calendar.getInstance(zone);
+        today.setTimeInMillis(afterMillis);
+        return new AlarmRecord(alarmId, time, tone, vibration, next,
+                recurrence.withoutSkipsBefore(Recurrence.dateKey(today)));
+    }
+
+    /**
+     * Encode as "2|triggerAt|vibration|time|tone|recurrence|alarmId".
+     * The alarm ID goes last so it may contain any character.
+     */
+    String encode() {
+        return FORMAT_V2 + SEP + triggerAt + SEP + (vibration ? '1' : '0')
+                + SEP + time + SEP + tone + SEP + recurrence.encode() + SEP + alarmId;
+    }
+
+    /**
+     * Decode a string produced by {@link #encode()}.
+     *
+     * @return the record, or null if the string is missing or malformed.
+     */
+    static AlarmRecord decode(String raw) {
+        if (raw == null) return null;
+        boolean v2 = raw.startsWith(FORMAT_V2 + SEP);
+        if (!v2 && !raw.startsWith(FORMAT_V1 + SEP)) return null;
+        String[] parts = raw.split("\\|", v2 ? 7 : 6);
+        if (parts.length != (v2 ? 7 : 6)) return null;
+        try {
+            return new AlarmRecord(parts[parts.length - 1], parts[3], parts[4],
+                    "1".equals(parts[2]), Long.parseLong(parts[1]),
+                    v2 ? Recurrence.decode(parts[5]) : Recurrence.NONE);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "AlarmRecord{" + alarmId + " @ " + triggerAt + ", " + time + ", " + tone
+                + (recurrence.repeats() ? ", repeat " + recurrence.encode() : "") + "}";
+    }
+}
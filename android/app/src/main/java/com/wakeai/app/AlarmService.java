@@ -3,7 +3,6 @@ package com.wakeai.app;
 import android.app.Notification;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
-import android.app.PendingIntent;
 import android.app.Service;
 import android.content.Context;
 import android.content.Intent;
@@ -13,14 +12,20 @@ import android.media.AudioManager;
 import android.media.MediaPlayer;
 import android.net.Uri;
 import android.os.Build;
+import android.os.Handler;
 import android.os.IBinder;
-import android.os.PowerManager;
+import android.os.Looper;
+import android.os.Process;
 import android.os.VibrationEffect;
 import android.os.Vibrator;
 import android.os.VibratorManager;
 import android.util.Log;
 
-import org.json.JSONObject;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Foreground service that plays the alarm tone on STREAM_ALARM (bypasses DND / silent),
@@ -28,7 +33,15 @@ import org.json.JSONObject;
  *
  * Lifecycle:
  *   AlarmReceiver → startForegroundService(ACTION_START_ALARM)
+ *   JS ring()      → same, via AlarmReceiver.ACTION_RING
  *   JS dismiss     → startService(ACTION_STOP_ALARM) via WakeAIAlarmPlugin
+ *   Snooze         → startService(ACTION_STOP_ALARM, outcome "snoozed") via SnoozeReceiver
+ *
+ * Runs in the lightweight ":alarm" process, apart from the WebView, so
+ * time-to-sound never waits for the UI process and the ringing process stays
+ * small. It never touches alarm storage, which belongs to the main process:
+ * it rings from the FirePlan in the intent, or the built-in defaults when
+ * none came with it (service restart, triggers armed by an older install).
  */
 public class AlarmService extends Service {
 
@@ -37,38 +50,51 @@ public class AlarmService extends Service {
     public static final String ACTION_START_ALARM = "com.wakeai.app.START_ALARM";
     public static final String ACTION_STOP_ALARM = "com.wakeai.app.STOP_ALARM";
 
+    /** Extras carried by the AlarmManager broadcast (see BootReceiver.scheduleAlarm). */
+    public static final String EXTRA_ALARM_ID = "com.wakeai.app.extra.ALARM_ID";
+    public static final String EXTRA_TRIGGER_AT = "com.wakeai.app.extra.TRIGGER_AT";
+    /** How a stop ended the ring (AlarmStateBus state); dismissed when absent. */
+    public static final String EXTRA_OUTCOME = "com.wakeai.app.extra.OUTCOME";
+
     private static final String CHANNEL_ID = "wakeai_alarm_channel";
     private static final int NOTIFICATION_ID = 9001;
 
-    /** Static flag so WakeAIAlarmPlugin can query "is alarm currently ringing natively?" */
-    static volatile boolean isRinging = false;
-
+    private PcmAlarmPlayer pcmPlayer;
     private MediaPlayer mediaPlayer;
     private Vibrator vibrator;
-    private PowerManager.WakeLock cpuWakeLock;
-    private PowerManager.WakeLock screenWakeLock;
     private AudioManager audioManager;
     private AudioFocusRequest audioFocusRequest;
     private int originalAlarmVolume = -1;
 
+    /** Serial worker for every audio / vibration / wake-lock mutation. */
+    private ExecutorService pipeline;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    /** Bumped on every start and stop; stale pipeline stages bail out. */
+    private final AtomicInteger generation = new AtomicInteger();
+
     @Override
     public void onCreate() {
         super.onCreate();
         createNotificationChannel();
+        pipeline = newWorker("AlarmPipeline", Process.THREAD_PRIORITY_URGENT_AUDIO);
     }
 
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
         if (intent == null) {
             // Service was killed by the system and restarted (START_STICKY).
-            // Resume the alarm if we have persisted alarm data — don't silently die.
-            AlarmStorage storage = new AlarmStorage(this);
-            if (storage.hasAlarm()) {
-                Log.i(TAG, "Service restarted with null intent — resuming alarm from storage");
-                startAlarm();
+            // Resume the ring that was in progress — don't silently die.
+            AlarmStateBus.Event interrupted = RingStateChannel.interruptedRing(this);
+            if (interrupted != null) {
+                RingStateMachine.Ring starting =
+                        RingStateMachine.tryStart(interrupted.alarmId, interrupted.triggerAt);
+                if (starting == null) return START_STICKY;
+                Log.i(TAG, "Service restarted with null intent — resuming alarm " + interrupted.alarmId);
+                FireTrace.mark(this, FireTrace.STAGE_SERVICE_START);
+                startAlarm(starting, null, interrupted.alarmId);
                 return START_STICKY;
             }
-            Log.i(TAG, "Service restarted with null intent but no alarm data — stopping");
+            Log.i(TAG, "Service restarted with null intent but no ring in progress — stopping");
             stopSelf();
             return START_NOT_STICKY;
         }
@@ -76,21 +102,37 @@ public class AlarmService extends Service {
         String action = intent.getAction();
         if (ACTION_STOP_ALARM.equals(action)) {
             Log.i(TAG, "Stopping alarm service");
-            stopAlarm();
+            String outcome = intent.getStringExtra(EXTRA_OUTCOME);
+            stopAlarm(outcome != null ? outcome : AlarmStateBus.STATE_DISMISSED);
             return START_NOT_STICKY;
         }
 
-        // Guard against duplicate starts (AlarmReceiver + JS ring() can both fire).
-        // If already ringing, the service is already showing notification + playing audio.
-        // A second startForeground() with the same notification is a safe no-op.
-        if (isRinging) {
-            Log.i(TAG, "Already ringing — ignoring duplicate START_ALARM");
-            return START_STICKY;
+        FirePlan plan = FirePlan.fromIntent(this, intent);
+        String alarmId = plan != null ? plan.alarmId : intent.getStringExtra(EXTRA_ALARM_ID);
+        long epoch = plan != null ? plan.triggerAt : intent.getLongExtra(EXTRA_TRIGGER_AT, 0);
+
+        // Exactly one of AlarmReceiver / JS ring() / a restart wins the
+        // IDLE → STARTING transition; the rest are duplicates or late. A
+        // different alarm falling due meanwhile takes the ring over.
+        RingStateMachine.Ring starting = RingStateMachine.tryStart(alarmId, epoch);
+        if (starting == null) {
+            if (RingStateMachine.isActive()) {
+                // Duplicate: already foreground, notification + audio are up
+                return START_STICKY;
+            }
+            // Late start after a stop. startForegroundService() still obliges us
+            // to call startForeground(), so do that and leave straight away.
+            startForeground(NOTIFICATION_ID,
+                    AlarmNotificationHelper.buildAlarmNotification(this, CHANNEL_ID));
+            stopForeground(true);
+            stopSelf(startId);
+            return START_NOT_STICKY;
         }
 
         // Default: start the alarm
         Log.i(TAG, "Starting alarm service");
-        startAlarm();
+        FireTrace.mark(this, FireTrace.STAGE_SERVICE_START);
+        startAlarm(starting, plan, alarmId);
         return START_STICKY;
     }
 
@@ -101,71 +143,128 @@ public class AlarmService extends Service {
 
     @Override
     public void onDestroy() {
-        stopAlarm();
+        stopAlarm(AlarmStateBus.STATE_DISMISSED);
+        // Queued cleanup still runs; the threads exit once it's done
+        pipeline.shutdown();
         super.onDestroy();
     }
 
     // ── Alarm lifecycle ─────────────────────────────────────────────────
 
-    private void startAlarm() {
-        isRinging = true;
-
-        // Acquire a wake lock to keep the CPU running AND turn screen on
-        acquireWakeLock();
+    /**
+     * Start ringing as a staged pipeline.
+     *
+     *   Stage 0 (main, immediately)  startForeground() — nothing else, so the
+     *                                foreground-service deadline is never at risk
+     *   Stage 1 (pipeline worker)    wake locks, force volume, audio focus
+     *   Stage 1 (main, posted)       launch the activity — never waits for audio
+     *   Stage 2 (pipeline worker)    vibration at once, then prepare + start audio,
+     *                                then drop the fallback notification
+     *
+     * Every audio / vibration / wake-lock mutation happens on the single
+     * pipeline thread, so stopAlarm() cleanup is naturally ordered after any
+     * in-flight stage; stale stages see a newer {@link #generation} and bail out.
+     *
+     * @param starting the STARTING state this start won in RingStateMachine
+     * @param plan    fire plan from the start intent, or null — then the
+     *                built-in defaults are used
+     * @param alarmId ID of the alarm that fired, or null when unknown. Only
+     *                consulted when there is no plan.
+     */
+    private void startAlarm(final RingStateMachine.Ring starting,
+                            final FirePlan plan, final String alarmId) {
+        if (starting.replaced != null) {
+            endReplacedRing(starting.replaced);
+        }
+        FireTrace.mark(this, FireTrace.STAGE_START_ALARM);
+        FireCost.begin(plan != null ? plan.alarmId : alarmId);
+        AlarmStateBus.publishRinging(plan != null ? plan.alarmId : alarmId,
+                plan != null ? plan.triggerAt : 0);
 
-        // Build and show the foreground notification with full-screen intent
-        Notification notification = buildAlarmNotification();
+        // Stage 0: build and show the foreground notification with full-screen intent
+        Notification notification = AlarmNotificationHelper.buildAlarmNotification(this, CHANNEL_ID);
         startForeground(NOTIFICATION_ID, notification);
+        FireTrace.mark(this, FireTrace.STAGE_FOREGROUND);
 
-        // Cancel the fallback notification (AlarmNotificationHelper) now that
-        // the real foreground service notification is showing.
-        AlarmNotificationHelper.cancelFallbackNotification(this);
+        final int gen = generation.incrementAndGet();
 
+        // Stage 1: activity launch, posted so it runs after onStartCommand returns.
         // CRITICAL: Launch the activity AFTER startForeground().
         // A foreground service has an exemption from Android 12+ background
         // activity start restrictions (BAL). This is the ONLY reliable way
         // to show the alarm UI when the app is killed or minimized.
         // The notification full-screen intent is NOT reliable on unlocked phones
         // (Android shows it as heads-up only) or on many OEMs (restricted).
-        launchAlarmActivity();
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (gen == generation.get()) {
+                    launchAlarmActivity(plan != null ? plan.alarmId : alarmId,
+                            plan != null ? plan.triggerAt : 0);
+                }
+            }
+        });
+
+        // Stages 1-2 on the serial pipeline worker
+        pipeline.execute(new Runnable() {
+            @Override
+            public void run() {
+                runStartPipeline(gen, starting,
+                        plan != null ? plan : FirePlan.defaults());
+            }
+        });
+    }
 
-        // Read alarm config from SharedPreferences
-        AlarmStorage storage = new AlarmStorage(this);
-        JSONObject alarm = storage.getAlarm();
+    private void runStartPipeline(int gen, RingStateMachine.Ring starting, FirePlan plan) {
+        if (gen != generation.get()) return;
 
-        String tone = "gentle";
-        boolean vibrationEnabled = true;
+        // Acquire a wake lock to keep the CPU running AND turn screen on
+        acquireWakeLock();
+
+        // Audio session prep that doesn't depend on the tone
+        forceAlarmVolumeMax();
+        requestAudioFocus();
+        if (gen != generation.get()) return;
 
-        if (alarm != null) {
-            tone = alarm.optString("tone", "gentle");
-            vibrationEnabled = alarm.optBoolean("vibration", true);
+        // Start vibration at once — it needs no preparation
+        if (plan.vibrationPattern != null) {
+            startVibration(plan.vibrationPattern);
         }
 
-        // Start audio
-        startAudio(tone);
+        // Prepare + start audio (mmap'd PCM → AudioTrack, or MediaPlayer fallback)
+        startAudio(plan.tone, plan.toneResId);
+
+        // Cancel the fallback notification (AlarmNotificationHelper) now that
+        // the real foreground notification is showing AND our audio is playing,
+        // so there is no silent gap between the two.
+        AlarmNotificationHelper.cancelFallbackNotification(this);
 
-        // Start vibration
-        if (vibrationEnabled) {
-            startVibration();
+        if (!RingStateMachine.markRinging(starting)) {
+            // A stop won the race; its cleanup is queued right behind us
+            Log.i(TAG, "Alarm stopped while starting");
+            return;
         }
 
-        Log.i(TAG, "Alarm started — tone: " + tone + ", vibration: " + vibrationEnabled);
+        Log.i(TAG, "Alarm started — tone: " + plan.tone
+                + ", vibration: " + (plan.vibrationPattern != null));
     }
 
     /**
      * Launch MainActivity with ALARM_FIRED action to show the swipe-to-dismiss screen.
      *
-     * Called from startAlarm() AFTER startForeground() — at this point the service
+     * Posted from startAlarm() AFTER startForeground() — at this point the service
      * is a foreground service and has the Background Activity Launch (BAL) exemption
      * on Android 12+ (API 31+). This works regardless of whether the app was:
      * - Open (no-op: singleTask + SINGLE_TOP delivers onNewIntent)
      * - Minimized (brings activity to foreground)
      * - Killed (creates new process and launches activity)
      */
-    private void launchAlarmActivity() {
+    private void launchAlarmActivity(String alarmId, long triggerAt) {
         try {
             Intent activityIntent = new Intent(this, MainActivity.class);
             activityIntent.setAction("com.wakeai.app.ALARM_FIRED");
+            activityIntent.putExtra(EXTRA_ALARM_ID, alarmId);
+            activityIntent.putExtra(EXTRA_TRIGGER_AT, triggerAt);
             activityIntent.addFlags(
                     Intent.FLAG_ACTIVITY_NEW_TASK
                     | Intent.FLAG_ACTIVITY_CLEAR_TOP
@@ -178,12 +277,47 @@ public class AlarmService extends Service {
         }
     }
 
-    private void stopAlarm() {
-        isRinging = false;
+    /**
+     * Another alarm took the ring over. An earlier ring still sounding ends as
+     * dismissed — its stages bail out, its audio and vibration are stopped on
+     * the pipeline before the new ones start — and the service stays in the
+     * foreground. One that was already stopping has its cleanup queued.
+     */
+    private void endReplacedRing(RingStateMachine.Ring replaced) {
+        if (replaced.phase == RingStateMachine.STOPPING) return;
+        generation.incrementAndGet();
+        FireCost.end(this, AlarmStateBus.STATE_DISMISSED);
+        AlarmStateBus.publishRingEnded(AlarmStateBus.STATE_DISMISSED);
+        runOnPipeline(new Runnable() {
+            @Override
+            public void run() {
+                stopAudio();
+                stopVibration();
+            }
+        });
+    }
 
-        stopAudio();
-        stopVibration();
-        releaseWakeLock();
+    /** @param outcome AlarmStateBus state that ends the ring (dismissed / snoozed) */
+    private void stopAlarm(final String outcome) {
+        // Null when nothing was active (second stop, onDestroy after dismiss);
+        // cleanup below is idempotent and still runs.
+        final RingStateMachine.Ring stopping = RingStateMachine.beginStop();
+        generation.incrementAndGet();
+        AlarmStateBus.publishRingEnded(outcome);
+
+        // Queued behind any in-flight start stage on the pipeline thread
+        runOnPipeline(new Runnable() {
+            @Override
+            public void run() {
+                stopAudio();
+                stopVibration();
+                releaseWakeLock();
+                if (stopping != null) {
+                    FireCost.end(AlarmService.this, outcome);
+                }
+                RingStateMachine.markIdle(stopping);
+            }
+        });
 
         stopForeground(true);
         stopSelf();
@@ -191,21 +325,55 @@ public class AlarmService extends Service {
         Log.i(TAG, "Alarm stopped");
     }
 
-    // ── Audio ───────────────────────────────────────────────────────────
+    private void runOnPipeline(Runnable task) {
+        try {
+            pipeline.execute(task);
+        } catch (RejectedExecutionException e) {
+            // Pipeline already shut down (service destroyed) — run inline
+            task.run();
+        }
+    }
 
-    private void startAudio(String tone) {
-        stopAudio();
+    private static ExecutorService newWorker(final String name, final int priority) {
+        return Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                return new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(priority);
+                        r.run();
+                    }
+                }, name);
+            }
+        });
+    }
 
-        try {
-            // Force alarm volume to MAX before anything else
-            forceAlarmVolumeMax();
+    // ── Audio ───────────────────────────────────────────────────────────
 
-            // Request audio focus to suppress other audio sources
-            requestAudioFocus();
+    /**
+     * Start looping the tone. Volume and audio focus are set up beforehand by
+     * the start pipeline; runs on the pipeline thread.
+     */
+    private void startAudio(String tone, int rawId) {
+        releasePlayer();
 
-            // Map tone name to raw resource ID
-            int rawId = getToneResourceId(tone);
+        try {
+            // Preferred engine: pre-decoded PCM on a static AudioTrack — no
+            // MP3 decode or prepare() at fire time, gapless loop. A tone that
+            // isn't cached yet goes straight to MediaPlayer below.
+            PcmTone pcm = ToneDecoder.get(this, rawId);
+            if (pcm != null) {
+                pcmPlayer = PcmAlarmPlayer.start(pcm);
+                if (pcmPlayer != null) {
+                    FireTrace.mark(this, FireTrace.STAGE_AUDIO_STARTED);
+                    FireCost.audioStarted();
+                    Log.i(TAG, "Audio started (AudioTrack): " + tone);
+                    return;
+                }
+            }
 
+            // Fallback engine: MediaPlayer decoding from the raw resource
             mediaPlayer = new MediaPlayer();
 
             // Use STREAM_ALARM — plays at alarm volume, bypasses DND
@@ -222,18 +390,35 @@ public class AlarmService extends Service {
 
             mediaPlayer.prepare();
             mediaPlayer.start();
+            FireTrace.mark(this, FireTrace.STAGE_AUDIO_STARTED);
+            FireCost.audioStarted();
 
-            Log.i(TAG, "Audio started: " + tone);
+            Log.i(TAG, "Audio started (MediaPlayer): " + tone);
         } catch (Exception e) {
             Log.e(TAG, "Failed to start audio", e);
             // Attempt fallback to gentle
             if (!"gentle".equals(tone)) {
-                startAudio("gentle");
+                startAudio("gentle", getToneResourceId("gentle"));
             }
         }
     }
 
     private void stopAudio() {
+        releasePlayer();
+        FireCost.audioStopped();
+
+        // Restore original alarm volume
+        restoreAlarmVolume();
+
+        // Release audio focus
+        releaseAudioFocus();
+    }
+
+    private void releasePlayer() {
+        if (pcmPlayer != null) {
+            pcmPlayer.stop();
+            pcmPlayer = null;
+        }
         if (mediaPlayer != null) {
             try {
                 if (mediaPlayer.isPlaying()) {
@@ -245,15 +430,9 @@ public class AlarmService extends Service {
             }
             mediaPlayer = null;
         }
-
-        // Restore original alarm volume
-        restoreAlarmVolume();
-
-        // Release audio focus
-        releaseAudioFocus();
     }
 
-    private int getToneResourceId(String tone) {
+    static int getToneResourceId(String tone) {
         switch (tone) {
             case "classic":
                 return R.raw.classic;
@@ -351,7 +530,7 @@ public class AlarmService extends Service {
 
     // ── Vibration ───────────────────────────────────────────────────────
 
-    private void startVibration() {
+    private void startVibration(long[] pattern) {
         stopVibration();
 
         try {
@@ -363,14 +542,12 @@ public class AlarmService extends Service {
             }
 
             if (vibrator != null && vibrator.hasVibrator()) {
-                // Pattern: vibrate 1s, pause 0.5s, vibrate 1s, pause 0.5s — repeat
-                long[] pattern = {0, 1000, 500, 1000, 500};
-
                 if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
                     vibrator.vibrate(VibrationEffect.createWaveform(pattern, 0));
                 } else {
                     vibrator.vibrate(pattern, 0);
                 }
+                FireCost.vibrationStarted();
             }
         } catch (Exception e) {
             Log.e(TAG, "Vibration error", e);
@@ -386,54 +563,24 @@ public class AlarmService extends Service {
             }
             vibrator = null;
         }
+        FireCost.vibrationStopped();
     }
 
     // ── Wake lock ───────────────────────────────────────────────────────
 
-    @SuppressWarnings("deprecation")
     private void acquireWakeLock() {
-        releaseWakeLock();
-
-        PowerManager pm = (PowerManager) getSystemService(Context.POWER_SERVICE);
-        if (pm != null) {
-            // 1. Screen wake lock — turns the screen ON.
-            //    CRITICAL: Without this the full-screen intent has nothing to display on.
-            //    SCREEN_BRIGHT_WAKE_LOCK is deprecated but ACQUIRE_CAUSES_WAKEUP only
-            //    works with screen-level wake locks, and this is what stock alarm apps use.
-            screenWakeLock = pm.newWakeLock(
-                    PowerManager.SCREEN_BRIGHT_WAKE_LOCK | PowerManager.ACQUIRE_CAUSES_WAKEUP,
-                    "WakeAI::AlarmScreenWake"
-            );
-            screenWakeLock.acquire(60 * 1000L); // 1 minute — activity takes over after that
-
-            // 2. CPU wake lock — keeps CPU running for the alarm duration
-            cpuWakeLock = pm.newWakeLock(
-                    PowerManager.PARTIAL_WAKE_LOCK,
-                    "WakeAI::AlarmServiceWakeLock"
-            );
-            cpuWakeLock.acquire(20 * 60 * 1000L); // 20 minutes
-
-            Log.i(TAG, "Wake locks acquired (screen + CPU)");
-        }
+        // Screen on at fire — CRITICAL: without it the full-screen intent has
+        // nothing to display on. The activity takes over after a minute.
+        WakeLockCoordinator.acquireScreen(this, WakeLockCoordinator.TAG_SERVICE_SCREEN, 60 * 1000L);
+        // CPU for the ring duration; released on dismiss / snooze, not at the timeout
+        WakeLockCoordinator.acquire(this, WakeLockCoordinator.TAG_SERVICE,
+                WakeLockCoordinator.ALARM_TIMEOUT_MS);
+        Log.i(TAG, "Wake locks acquired (screen + CPU)");
     }
 
     private void releaseWakeLock() {
-        if (screenWakeLock != null && screenWakeLock.isHeld()) {
-            try {
-                screenWakeLock.release();
-            } catch (Exception e) {
-                Log.e(TAG, "Error releasing screen wake lock", e);
-            }
-            screenWakeLock = null;
-        }
-        if (cpuWakeLock != null && cpuWakeLock.isHeld()) {
-            try {
-                cpuWakeLock.release();
-            } catch (Exception e) {
-                Log.e(TAG, "Error releasing CPU wake lock", e);
-            }
-            cpuWakeLock = null;
-        }
+        WakeLockCoordinator.release(WakeLockCoordinator.TAG_SERVICE_SCREEN);
+        WakeLockCoordinator.release(WakeLockCoordinator.TAG_SERVICE);
     }
 
     // ── Notification ────────────────────────────────────────────────────
@@ -448,7 +595,7 @@ public class AlarmService extends Service {
             channel.setDescription("Alarm notifications for WakeAI");
             channel.setBypassDnd(true);
             channel.enableVibration(false); // We handle vibration ourselves
-            channel.setSound(null, null);   // We handle audio ourselves via MediaPlayer
+            channel.setSound(null, null);   // We handle audio ourselves (AudioTrack / MediaPlayer)
             channel.setLockscreenVisibility(Notification.VISIBILITY_PUBLIC);
 
             NotificationManager nm = getSystemService(NotificationManager.class);
@@ -457,46 +604,4 @@ public class AlarmService extends Service {
             }
         }
     }
-
-    private Notification buildAlarmNotification() {
-        // Full-screen intent → opens MainActivity over lock screen
-        Intent fullScreenIntent = new Intent(this, MainActivity.class);
-        fullScreenIntent.setAction("com.wakeai.app.ALARM_FIRED");
-        fullScreenIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK
-                | Intent.FLAG_ACTIVITY_CLEAR_TOP
-                | Intent.FLAG_ACTIVITY_SINGLE_TOP);
-
-        int piFlags = PendingIntent.FLAG_UPDATE_CURRENT;
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-            piFlags |= PendingIntent.FLAG_IMMUTABLE;
-        }
-
-        PendingIntent fullScreenPI = PendingIntent.getActivity(
-                this, 0, fullScreenIntent, piFlags);
-
-        // Content intent (tap notification → same activity)
-        PendingIntent contentPI = PendingIntent.getActivity(
-                this, 1, fullScreenIntent, piFlags);
-
-        Notification.Builder builder;
-
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-            builder = new Notification.Builder(this, CHANNEL_ID);
-        } else {
-            builder = new Notification.Builder(this);
-            builder.setPriority(Notification.PRIORITY_MAX);
-        }
-
-        builder.setSmallIcon(android.R.drawable.ic_lock_idle_alarm)
-                .setContentTitle("WakeAI Alarm")
-                .setContentText("Time to wake up!")
-                .setContentIntent(contentPI)
-                .setFullScreenIntent(fullScreenPI, true)
-                .setOngoing(true)
-                .setAutoCancel(false)
-                .setVisibility(Notification.VISIBILITY_PUBLIC)
-                .setCategory(Notification.CATEGORY_ALARM);
-
-        return builder.build();
-    }
 }
@@ -0,0 +1,102 @@
+package com.wakeai.app;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, process-wide view of every stored alarm.
+ *
+ * AlarmStorage publishes a new snapshot through a single volatile field on
+ * every write (copy-on-write), so readers never lock and never see a
+ * half-applied change. Records are held sorted by triggerAt, making the
+ * next-due lookup ("first after T") an O(log n) binary search.
+ */
+public final class AlarmSnapshot {
+
+    static final AlarmSnapshot EMPTY =
+            new AlarmSnapshot(new AlarmRecord[0], Collections.<String, AlarmRecord>emptyMap());
+
+    private final AlarmRecord[] sorted;
+    private final Map<String, AlarmRecord> byId;
+
+    private AlarmSnapshot(AlarmRecord[] sorted, Map<String, AlarmRecord> byId) {
+        this.sorted = sorted;
+        this.byId = byId;
+    }
+
+    /** Build a snapshot from records in any order (duplicate IDs: last one wins). */
+    static AlarmSnapshot of(Iterable<AlarmRecord> records) {
+        HashMap<String, AlarmRecord> map = new HashMap<>();
+        for (AlarmRecord r : records) {
+            map.put(r.alarmId, r);
+        }
+        return fromMap(map);
+    }
+
+    private static AlarmSnapshot fromMap(HashMap<String, AlarmRecord> map) {
+        if (map.isEmpty()) return EMPTY;
+        AlarmRecord[] sorted = map.values().toArray(new AlarmRecord[0]);
+        Arrays.sort(sorted, AlarmRecord.BY_TRIGGER);
+        return new AlarmSnapshot(sorted, Collections.unmodifiableMap(map));
+    }
+
+    AlarmSnapshot withUpsert(AlarmRecord record) {
+        HashMap<String, AlarmRecord> map = new HashMap<>(byId);
+        map.put(record.alarmId, record);
+        return fromMap(map);
+    }
+
+    AlarmSnapshot withRemoval(String alarmId) {
+        if (!byId.containsKey(alarmId)) return this;
+        HashMap<String, AlarmRecord> map = new HashMap<>(byId);
+        map.remove(alarmId);
+        return fromMap(map);
+    }
+
+    /** Apply several upserts and deletes in one copy (deletes win over upserts of the same ID). */
+    AlarmSnapshot withChanges(Iterable<AlarmRecord> upserts, Iterable<String> deletes) {
+        HashMap<String, AlarmRecord> map = new HashMap<>(byId);
+        for (AlarmRecord r : upserts) {
+            map.put(r.alarmId, r);
+        }
+        for (String id : deletes) {
+            map.remove(id);
+        }
+        return fromMap(map);
+    }
+
+    AlarmRecord get(String alarmId) {
+        return alarmId != null ? byId.get(alarmId) : null;
+    }
+
+    /** First record strictly after {@code afterMillis}, or null. */
+    AlarmRecord nextAfter(long afterMillis) {
+        int lo = 0;
+        int hi = sorted.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sorted[mid].triggerAt <= afterMillis) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo < sorted.length ? sorted[lo] : null;
+    }
+
+    /** All records ordered by triggerAt (unmodifiable). */
+    List<AlarmRecord> all() {
+        return Collections.unmodifiableList(Arrays.asList(sorted));
+    }
+
+    int size() {
+        return sorted.length;
+    }
+
+    boolean isEmpty() {
+        return sorted.length == 0;
+    }
+}
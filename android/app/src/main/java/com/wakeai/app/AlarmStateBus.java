@@ -0,0 +1,158 @@
+package com.wakeai.app;
+
+import android.util.Log;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Process-wide stream of alarm state transitions.
+ *
+ * Each process has its own bus. Ringing is published in the ":alarm"
+ * process; RingStateChannel re-publishes those events here in the main
+ * process via {@link #publishRemote}, so the plugin and MainActivity observe
+ * fires without sharing memory with AlarmService.
+ *
+ * Native components publish here as things happen (plugin schedules an
+ * alarm, TriggerScheduler arms AlarmManager, AlarmService starts or stops
+ * ringing) and WakeAIAlarmPlugin forwards every event to JS as
+ * "alarmState". The WebView therefore learns about a fire by push instead of
+ * waking up every second to poll.
+ *
+ * Every event carries a strictly increasing sequence number, and the latest
+ * one is retained: a subscriber that attaches late (cold start, WebView
+ * reload) reads it via {@link #latest()} and uses the sequence number to
+ * ignore anything it has already seen.
+ *
+ * Arming the next alarm right after a fire must not hide the ring from a late
+ * subscriber, so every event also carries whether an alarm is ringing at
+ * that point.
+ */
+final class AlarmStateBus {
+
+    private static final String TAG = "AlarmStateBus";
+
+    static final String STATE_IDLE = "idle";             // nothing pending, nothing ringing
+    static final String STATE_SCHEDULED = "scheduled";   // stored by the bridge
+    static final String STATE_ARMED = "armed";           // head of the trigger heap is in AlarmManager
+    static final String STATE_WARMING = "warming";       // pre-alarm warm-up ran; fire is minutes away
+    static final String STATE_RINGING = "ringing";       // AlarmService (or the alarm UI) is active
+    static final String STATE_DISMISSED = "dismissed";   // user stopped the ringing alarm
+    static final String STATE_SNOOZED = "snoozed";       // ringing alarm pushed back
+
+    /** One transition. Immutable. */
+    static final class Event {
+        final long seq;
+        final String state;
+        final String alarmId;      // null when unknown (e.g. JS ring() with nothing stored)
+        final long triggerAt;      // 0 when unknown
+        final long at;             // wall clock of the transition
+        final boolean ringing;     // an alarm is ringing as of this event
+
+        Event(long seq, String state, String alarmId, long triggerAt, long at, boolean ringing) {
+            this.seq = seq;
+            this.state = state;
+            this.alarmId = alarmId;
+            this.triggerAt = triggerAt;
+            this.at = at;
+            this.ringing = ringing;
+        }
+    }
+
+    /** Notified on the publishing thread, in sequence order. Keep it short — the bus lock is held. */
+    interface Listener {
+        void onAlarmState(Event event);
+    }
+
+    private static final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private static long seq;      // guarded by the class lock
+    private static Event latest = new Event(0, STATE_IDLE, null, 0, 0, false);
+    /** The RINGING event of the current ring, or null. */
+    private static Event ring;
+
+    private AlarmStateBus() {}
+
+    static void addListener(Listener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    static void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /** The retained latest event (seq 0 / idle before anything was published). */
+    static synchronized Event latest() {
+        return latest;
+    }
+
+    static boolean isRinging() {
+        return latest().ringing;
+    }
+
+    /** The RINGING event of the ring in progress, or null when nothing rings. */
+    static synchronized Event currentRing() {
+        return ring;
+    }
+
+    static synchronized void publish(String state, String alarmId, long triggerAt) {
+        emit(state, alarmId, triggerAt);
+    }
+
+    /**
+     * Publish ringing unless the same alarm is already ringing — the service
+     * and the alarm activity both report it, whichever comes first.
+     */
+    static synchronized void publishRinging(String alarmId, long triggerAt) {
+        if (ring != null && (alarmId == null || alarmId.equals(ring.alarmId))) return;
+        emit(STATE_RINGING, alarmId, triggerAt);
+    }
+
+    /**
+     * End the current ring with {@code state} (dismissed / snoozed). No-op
+     * when nothing is ringing, so the several stop paths can all call it.
+     */
+    static synchronized void publishRingEnded(String state) {
+        if (ring == null) return;
+        emit(state, ring.alarmId, ring.triggerAt);
+    }
+
+    /**
+     * Re-publish an event that happened in the alarm process, keeping its
+     * wall-clock time. Ring start / end go through the same de-duplication
+     * as local publishers, since the UI may have reported them first.
+     */
+    static synchronized void publishRemote(String state, String alarmId, long triggerAt, long at) {
+        if (STATE_RINGING.equals(state)) {
+            if (ring != null && (alarmId == null || alarmId.equals(ring.alarmId))) return;
+        } else if (STATE_DISMISSED.equals(state) || STATE_SNOOZED.equals(state)) {
+            if (ring == null) return;
+        }
+        emit(state, alarmId, triggerAt, at);
+    }
+
+    private static void emit(String state, String alarmId, long triggerAt) {
+        emit(state, alarmId, triggerAt, System.currentTimeMillis());
+    }
+
+    /** Record and deliver one event. Caller holds the class lock, which keeps delivery in seq order. */
+    private static void emit(String state, String alarmId, long triggerAt, long at) {
+        boolean ringing = STATE_RINGING.equals(state)
+                || (ring != null && !STATE_DISMISSED.equals(state) && !STATE_SNOOZED.equals(state));
+        Event event = new Event(++seq, state, alarmId, triggerAt, at, ringing);
+        latest = event;
+        if (STATE_RINGING.equals(state)) {
+            ring = event;
+        } else if (!ringing) {
+            ring = null;
+        }
+        Log.i(TAG, "#" + event.seq + " " + event.state
+                + (event.alarmId != null ? " " + event.alarmId : ""));
+        for (Listener listener : listeners) {
+            try {
+                listener.onAlarmState(event);
+            } catch (Exception e) {
+                Log.e(TAG, "Alarm state listener failed", e);
+            }
+        }
+    }
+}
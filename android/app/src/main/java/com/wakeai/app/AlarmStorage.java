@@ -2,25 +2,114 @@ package com.wakeai.app;
 
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.util.Log;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 /**
  * SharedPreferences helper for persisting alarm data natively.
  * The BroadcastReceiver and Foreground Service read from here
  * so they can fire the alarm even when the WebView is dead.
+ *
+ * Layout: "alarm:<id>" → one encoded AlarmRecord per alarm.
+ *
+ * The file lives in device-protected storage so alarms can be re-armed on
+ * LOCKED_BOOT_COMPLETED and rung before first unlock. Installs that still
+ * have it in credential-protected storage are migrated on first load, or on
+ * the first unlock if the process started locked.
+ *
+ * All instances share one process-wide {@link AlarmSnapshot}. It is preloaded
+ * on a background thread when the process starts (WakeAIApplication), so hot
+ * readers — onStartCommand, fireAlarmEvent, the bridge — cost one volatile
+ * read. Writes are serialized, persisted, published atomically as a new
+ * snapshot, and then announced to in-process {@link Listener}s.
  */
 public class AlarmStorage {
 
+    private static final String TAG = "AlarmStorage";
+
     private static final String PREFS_NAME = "wakeai_native_alarm";
+    /** Pre multi-alarm single JSON blob — migrated into records on first load. */
     private static final String KEY_ALARM_JSON = "alarm_json";
+    private static final String KEY_RECORD_PREFIX = "alarm:";
+    /** Denormalized head copy from an earlier layout; dropped on load. */
+    private static final String KEY_NEXT_ALARM = "next_alarm";
+
+    /** Notified (on the writing thread) after every published change. */
+    public interface Listener {
+        void onAlarmsChanged(AlarmSnapshot snapshot);
+    }
+
+    private static final Object WRITE_LOCK = new Object();
+    private static final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
 
-    private final SharedPreferences prefs;
+    private static volatile AlarmSnapshot snapshot;
+    private static SharedPreferences prefs; // guarded by WRITE_LOCK
+    /** Credential-protected data still waiting to be moved (process started locked). */
+    private static boolean migrationPending; // guarded by WRITE_LOCK
+
+    private final Context appContext;
 
     public AlarmStorage(Context context) {
-        prefs = context.getApplicationContext()
-                .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        appContext = context.getApplicationContext();
+    }
+
+    /**
+     * Load the snapshot on a background thread so the first real reader
+     * doesn't pay for it. Called once from WakeAIApplication.onCreate().
+     */
+    static void preloadAsync(Context context) {
+        final Context app = context.getApplicationContext();
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                snapshot(app);
+            }
+        }, "AlarmStorage-preload").start();
+    }
+
+    /**
+     * Finish a migration that couldn't run while the device was locked and
+     * reload the snapshot. Called from BootReceiver on BOOT_COMPLETED.
+     */
+    static void onUserUnlocked(Context context) {
+        AlarmSnapshot next;
+        synchronized (WRITE_LOCK) {
+            if (snapshot != null && !migrationPending) return;
+            snapshot = load(context.getApplicationContext());
+            next = snapshot;
+        }
+        notifyListeners(next);
+    }
+
+    static void addListener(Listener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    static void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * The current snapshot — a volatile read once loaded.
+     */
+    static AlarmSnapshot snapshot(Context context) {
+        AlarmSnapshot current = snapshot;
+        if (current != null) return current;
+        synchronized (WRITE_LOCK) {
+            if (snapshot == null) {
+                snapshot = load(context.getApplicationContext());
+            }
+            return snapshot;
+        }
     }
 
     /**
@@ -34,46 +123,186 @@ public class AlarmStorage {
      */
     public void saveAlarm(String alarmId, String time, String tone,
                           boolean vibration, long triggerAt) {
-        try {
-            JSONObject json = new JSONObject();
-            json.put("alarmId", alarmId);
-            json.put("time", time);
-            json.put("tone", tone);
-            json.put("vibration", vibration);
-            json.put("triggerAt", triggerAt);
-            prefs.edit().putString(KEY_ALARM_JSON, json.toString()).apply();
-        } catch (JSONException e) {
-            // Should never happen with simple put calls
-            e.printStackTrace();
+        saveAlarm(new AlarmRecord(alarmId, time, tone, vibration, triggerAt));
+    }
+
+    /**
+     * Insert or replace a record (matched by alarm ID).
+     */
+    public void saveAlarm(AlarmRecord record) {
+        AlarmSnapshot next;
+        synchronized (WRITE_LOCK) {
+            next = snapshot(appContext).withUpsert(record);
+            prefs.edit().putString(KEY_RECORD_PREFIX + record.alarmId, record.encode()).apply();
+            snapshot = next;
         }
+        notifyListeners(next);
     }
 
     /**
-     * Read the stored alarm.
+     * Apply many upserts and deletes as one SharedPreferences commit, one
+     * snapshot swap and one listener notification.
      *
-     * @return JSONObject with alarm fields, or null if none saved.
+     * @return IDs from {@code deletes} that were actually stored (and are now removed).
      */
-    public JSONObject getAlarm() {
-        String raw = prefs.getString(KEY_ALARM_JSON, null);
-        if (raw == null) return null;
-        try {
-            return new JSONObject(raw);
-        } catch (JSONException e) {
-            return null;
+    public Set<String> applyBatch(List<AlarmRecord> upserts, List<String> deletes) {
+        AlarmSnapshot next;
+        Set<String> removed = new HashSet<>();
+        synchronized (WRITE_LOCK) {
+            AlarmSnapshot current = snapshot(appContext);
+            SharedPreferences.Editor editor = prefs.edit();
+            for (AlarmRecord record : upserts) {
+                editor.putString(KEY_RECORD_PREFIX + record.alarmId, record.encode());
+            }
+            for (String alarmId : deletes) {
+                if (current.get(alarmId) != null) {
+                    removed.add(alarmId);
+                }
+                editor.remove(KEY_RECORD_PREFIX + alarmId);
+            }
+            editor.apply();
+            next = current.withChanges(upserts, deletes);
+            snapshot = next;
         }
+        notifyListeners(next);
+        return removed;
     }
 
     /**
-     * Remove persisted alarm data (called on cancel / delete).
+     * Read one alarm by ID.
+     *
+     * @return the record, or null if no alarm with that ID is stored.
+     */
+    public AlarmRecord getAlarm(String alarmId) {
+        return snapshot(appContext).get(alarmId);
+    }
+
+    /**
+     * First alarm strictly after the given epoch millis.
+     *
+     * @return the record, or null if every stored alarm is at or before {@code afterMillis}.
+     */
+    public AlarmRecord getNextAlarmAfter(long afterMillis) {
+        return snapshot(appContext).nextAfter(afterMillis);
+    }
+
+    /**
+     * All stored alarms, ordered by triggerAt.
+     */
+    public List<AlarmRecord> getAlarms() {
+        return snapshot(appContext).all();
+    }
+
+    /**
+     * Remove one alarm (called on cancel / delete).
+     *
+     * @return true if an alarm with that ID was stored.
+     */
+    public boolean removeAlarm(String alarmId) {
+        AlarmSnapshot next;
+        synchronized (WRITE_LOCK) {
+            AlarmSnapshot current = snapshot(appContext);
+            next = current.withRemoval(alarmId);
+            if (next == current) return false;
+            prefs.edit().remove(KEY_RECORD_PREFIX + alarmId).apply();
+            snapshot = next;
+        }
+        notifyListeners(next);
+        return true;
+    }
+
+    /**
+     * Remove all persisted alarm data.
      */
     public void clearAlarm() {
-        prefs.edit().remove(KEY_ALARM_JSON).apply();
+        synchronized (WRITE_LOCK) {
+            snapshot(appContext);
+            prefs.edit().clear().apply();
+            snapshot = AlarmSnapshot.EMPTY;
+        }
+        notifyListeners(AlarmSnapshot.EMPTY);
     }
 
     /**
      * Quick check whether an alarm is stored.
      */
     public boolean hasAlarm() {
-        return prefs.contains(KEY_ALARM_JSON);
+        return !snapshot(appContext).isEmpty();
+    }
+
+    // ── Internals ───────────────────────────────────────────────────────
+
+    /** Read every record from disk. Caller holds WRITE_LOCK. */
+    private static AlarmSnapshot load(Context context) {
+        long startNs = System.nanoTime();
+        migrationPending = !DeviceProtectedStorage.migratePreferences(context, PREFS_NAME);
+        prefs = DeviceProtectedStorage.context(context)
+                .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+
+        List<AlarmRecord> records = new ArrayList<>();
+        for (Map.Entry<String, ?> entry : prefs.getAll().entrySet()) {
+            if (!entry.getKey().startsWith(KEY_RECORD_PREFIX)) continue;
+            Object value = entry.getValue();
+            AlarmRecord record = value instanceof String
+                    ? AlarmRecord.decode((String) value) : null;
+            if (record != null) {
+                records.add(record);
+            }
+        }
+
+        AlarmRecord legacy = migrateLegacyAlarm();
+        if (legacy != null) {
+            records.add(0, legacy); // Existing records with the same ID win
+        }
+
+        AlarmSnapshot loaded = AlarmSnapshot.of(records);
+        Log.i(TAG, "Loaded " + loaded.size() + " alarm(s) in "
+                + (System.nanoTime() - startNs) / 1_000_000 + " ms");
+        return loaded;
+    }
+
+    /**
+     * Convert the old single "alarm_json" blob into a record. Runs at most once
+     * per install because the legacy key is removed in the same commit.
+     */
+    private static AlarmRecord migrateLegacyAlarm() {
+        String raw = prefs.getString(KEY_ALARM_JSON, null);
+        if (raw == null) {
+            if (prefs.contains(KEY_NEXT_ALARM)) {
+                prefs.edit().remove(KEY_NEXT_ALARM).apply();
+            }
+            return null;
+        }
+
+        SharedPreferences.Editor editor = prefs.edit()
+                .remove(KEY_ALARM_JSON)
+                .remove(KEY_NEXT_ALARM);
+        AlarmRecord record = null;
+        try {
+            JSONObject json = new JSONObject(raw);
+            String alarmId = json.optString("alarmId", "");
+            if (!alarmId.isEmpty() && !prefs.contains(KEY_RECORD_PREFIX + alarmId)) {
+                record = new AlarmRecord(alarmId,
+                        json.optString("time", ""),
+                        json.optString("tone", "gentle"),
+                        json.optBoolean("vibration", true),
+                        json.optLong("triggerAt", 0));
+                editor.putString(KEY_RECORD_PREFIX + alarmId, record.encode());
+            }
+        } catch (JSONException e) {
+            // Corrupt legacy blob — nothing to migrate, just drop it
+        }
+        editor.apply();
+        return record;
+    }
+
+    private static void notifyListeners(AlarmSnapshot next) {
+        for (Listener listener : listeners) {
+            try {
+                listener.onAlarmsChanged(next);
+            } catch (Exception e) {
+                Log.e(TAG, "Alarm listener failed", e);
+            }
+        }
     }
 }
@@ -9,11 +9,15 @@ import android.content.Intent;
 import android.os.Build;
 import android.util.Log;
 
-import org.json.JSONObject;
-
 /**
- * Re-schedules the alarm after device reboot.
- * Reads persisted alarm data from SharedPreferences and sets AlarmManager again.
+ * Re-schedules alarms after device reboot — on LOCKED_BOOT_COMPLETED where
+ * available, so alarms are armed before the user first unlocks — and after
+ * anything that invalidates stored trigger times: a manual clock change
+ * (TIME_SET), a time-zone change, or an app update (MY_PACKAGE_REPLACED
+ * clears AlarmManager registrations).
+ *
+ * TriggerScheduler recomputes every repeating alarm from its rule in one
+ * pass and arms the earliest alarm that is still in the future.
  */
 public class BootReceiver extends BroadcastReceiver {
 
@@ -22,34 +26,44 @@ public class BootReceiver extends BroadcastReceiver {
     @Override
     public void onReceive(Context context, Intent intent) {
         String action = intent.getAction();
-        if (!Intent.ACTION_BOOT_COMPLETED.equals(action)
-                && !"android.intent.action.QUICKBOOT_POWERON".equals(action)
-                && !"com.htc.intent.action.QUICKBOOT_POWERON".equals(action)) {
+        boolean lockedBoot = Intent.ACTION_LOCKED_BOOT_COMPLETED.equals(action);
+        boolean boot = lockedBoot
+                || Intent.ACTION_BOOT_COMPLETED.equals(action)
+                || "android.intent.action.QUICKBOOT_POWERON".equals(action)
+                || "com.htc.intent.action.QUICKBOOT_POWERON".equals(action);
+        if (!boot
+                && !Intent.ACTION_TIME_CHANGED.equals(action)
+                && !Intent.ACTION_TIMEZONE_CHANGED.equals(action)
+                && !Intent.ACTION_MY_PACKAGE_REPLACED.equals(action)) {
             return;
         }
 
-        Log.i(TAG, "Boot completed — checking for alarms to reschedule");
+        Log.i(TAG, action + " — checking for alarms to reschedule");
 
-        AlarmStorage storage = new AlarmStorage(context);
-        JSONObject alarm = storage.getAlarm();
-        if (alarm == null) {
-            Log.i(TAG, "No alarm stored, nothing to reschedule");
-            return;
+        // LOCKED_BOOT_COMPLETED arrives seconds after boot, before first unlock;
+        // alarm data is in device-protected storage so it can be re-armed now.
+        // BOOT_COMPLETED (after unlock) re-arms again, which is idempotent, and
+        // finishes any pending move out of credential-protected storage.
+        if (boot && !lockedBoot) {
+            AlarmStorage.onUserUnlocked(context);
         }
 
-        long triggerAt = alarm.optLong("triggerAt", 0);
-        if (triggerAt <= System.currentTimeMillis()) {
-            Log.i(TAG, "Stored alarm time is in the past, skipping");
+        AlarmStorage storage = new AlarmStorage(context);
+        if (!storage.hasAlarm()) {
+            Log.i(TAG, "No alarm stored, nothing to reschedule");
             return;
         }
 
-        scheduleAlarm(context, triggerAt);
-        Log.i(TAG, "Alarm rescheduled for " + triggerAt);
+        // Moves repeating alarms to their next occurrence on the current wall
+        // clock, rebuilds the trigger heap (past one-shots are skipped) and
+        // arms the earliest future alarm — one AlarmManager call in total.
+        TriggerScheduler.rescheduleAll(context, action);
     }
 
     /**
      * Schedule an alarm using AlarmManager.setAlarmClock().
-     * This is the same logic used by WakeAIAlarmPlugin.
+     * Called only by TriggerScheduler, which arms the head of its trigger heap
+     * here. Request code 0 is reused, so this replaces any previously armed slot.
      *
      * Uses PendingIntent.getBroadcast() targeting AlarmReceiver. This is more
      * reliable than getForegroundService() because:
@@ -66,33 +80,63 @@ public class BootReceiver extends BroadcastReceiver {
      *   2. Starts AlarmService as a foreground service (audio + vibration)
      *   3. Launches MainActivity directly (BAL-exempt from setAlarmClock)
      */
-    static void scheduleAlarm(Context context, long triggerAtMillis) {
+    static void scheduleAlarm(Context context, FirePlan plan) {
         AlarmManager am = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
         if (am == null) return;
 
         // Target AlarmReceiver via broadcast — most reliable delivery method.
+        // The extras carry the precomputed fire plan (which heap entry fired,
+        // its tone, vibration and channel state).
         Intent receiverIntent = new Intent(context, AlarmReceiver.class);
         receiverIntent.setAction(AlarmService.ACTION_START_ALARM);
+        plan.writeTo(receiverIntent);
 
-        int piFlags = PendingIntent.FLAG_UPDATE_CURRENT;
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-            piFlags |= PendingIntent.FLAG_IMMUTABLE;
-        }
-
+        int piFlags = pendingIntentFlags();
         PendingIntent alarmPI = PendingIntent.getBroadcast(
                 context, 0, receiverIntent, piFlags);
 
         // Show-intent: opens the app when user taps the alarm icon in status bar.
+        // Its own action — it is not a fire and must not look like one.
         Intent showIntent = new Intent(context, MainActivity.class);
-        showIntent.setAction("com.wakeai.app.ALARM_FIRED");
+        showIntent.setAction(MainActivity.SHOW_ALARMS_ACTION);
         showIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
         PendingIntent showPI = PendingIntent.getActivity(
                 context, 1, showIntent, piFlags);
 
         // setAlarmClock is Doze-exempt and highest reliability
-        AlarmClockInfo clockInfo = new AlarmClockInfo(triggerAtMillis, showPI);
+        AlarmClockInfo clockInfo = new AlarmClockInfo(plan.triggerAt, showPI);
         am.setAlarmClock(clockInfo, alarmPI);
 
-        Log.i(TAG, "Alarm scheduled via getBroadcast→AlarmReceiver at " + triggerAtMillis);
+        // Companion warm-up a lead time earlier, so the fire lands in a warm process
+        WarmUpReceiver.arm(context, plan);
+        // Question pre-generation in a charging / idle window the night before
+        QuestionPrefetchJob.schedule(context, plan);
+
+        Log.i(TAG, "Alarm " + plan.alarmId + " scheduled via getBroadcast→AlarmReceiver at " + plan.triggerAt);
+    }
+
+    /**
+     * Cancel the AlarmManager slot armed by {@link #scheduleAlarm}.
+     * Extras are not part of PendingIntent identity, so a bare intent matches.
+     */
+    static void cancelScheduledAlarm(Context context) {
+        AlarmManager am = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        if (am == null) return;
+
+        Intent receiverIntent = new Intent(context, AlarmReceiver.class);
+        receiverIntent.setAction(AlarmService.ACTION_START_ALARM);
+        PendingIntent alarmPI = PendingIntent.getBroadcast(
+                context, 0, receiverIntent, pendingIntentFlags());
+        am.cancel(alarmPI);
+        WarmUpReceiver.cancel(context);
+        QuestionPrefetchJob.cancel(context);
+    }
+
+    private static int pendingIntentFlags() {
+        int piFlags = PendingIntent.FLAG_UPDATE_CURRENT;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            piFlags |= PendingIntent.FLAG_IMMUTABLE;
+        }
+        return piFlags;
     }
 }
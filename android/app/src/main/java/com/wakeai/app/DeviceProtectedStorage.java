@@ -0,0 +1,51 @@
+package com.wakeai.app;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.UserManager;
+
+/**
+ * Access to device-protected (direct boot) storage.
+ *
+ * Everything the ring path touches — alarm records, fire traces, the tone
+ * cache — lives here so that BootReceiver can re-arm on LOCKED_BOOT_COMPLETED
+ * and AlarmReceiver/AlarmService can ring before the user first unlocks.
+ * Credential-protected storage is unreadable until then. None of this data is
+ * sensitive. Below API 24 there is no direct boot and the app context is used.
+ */
+final class DeviceProtectedStorage {
+
+    private DeviceProtectedStorage() {}
+
+    /** Context whose files and SharedPreferences are readable before first unlock. */
+    static Context context(Context context) {
+        Context app = context.getApplicationContext();
+        if (app == null) app = context;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N && !app.isDeviceProtectedStorage()) {
+            return app.createDeviceProtectedStorageContext();
+        }
+        return app;
+    }
+
+    /** True once credential-protected storage is available (always true below API 24). */
+    static boolean isUserUnlocked(Context context) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N) return true;
+        UserManager um = (UserManager) context.getSystemService(Context.USER_SERVICE);
+        return um == null || um.isUserUnlocked();
+    }
+
+    /**
+     * Move a SharedPreferences file written by an older version from
+     * credential-protected into device-protected storage. Only possible while
+     * unlocked.
+     *
+     * @return true if nothing is left to migrate.
+     */
+    static boolean migratePreferences(Context context, String name) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N) return true;
+        if (!isUserUnlocked(context)) return false;
+        Context app = context.getApplicationContext();
+        // No-op (and still true) when the source file doesn't exist
+        return context(context).moveSharedPreferencesFrom(app, name);
+    }
+}
@@ -0,0 +1,398 @@
+package com.wakeai.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Debug;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-fire resource accounting.
+ *
+ * Each alarm cycle, from AlarmService.startAlarm to the stop cleanup, records
+ * what it cost the device:
+ *   - process CPU time (Process.getElapsedCpuTime delta)
+ *   - ring, audio playback and vibration durations
+ *   - wake-lock held time per WakeLockCoordinator tag
+ *   - time the device was kept awake: the union of the spans either process's
+ *     CPU lock was held. Tags overlap, so their sum overstates it
+ *   - peak Java and native heap, sampled while ringing
+ *
+ * CPU and heap are measured in the ":alarm" process, where AlarmService runs;
+ * the main process and the WebView renderer are not included. Wake locks held
+ * in the main process (MainActivity) are forwarded here through AlarmReceiver,
+ * like FireTrace stage marks, along with its CPU lock spans — only while the
+ * alarm process is running, since with it dead there is no fire to add them
+ * to and the broadcast would just start it. That hold usually ends just after the fire, when
+ * the ring-end broadcast reaches the main process, so a hold ending within
+ * {@link #LATE_WAKE_LOCK_MS} of the fire is added to its record.
+ *
+ * Records are kept like FireTrace: a bounded ring buffer, one short
+ * SharedPreferences string per slot, in a file only the alarm process
+ * touches. A record is written when the fire ends; a fire whose process dies
+ * mid-ring is not recorded. The main process reads (and clears) it through
+ * AlarmProcessProvider.
+ */
+final class FireCost {
+
+    private static final String TAG = "FireCost";
+
+    private static final String PREFS_NAME = "wakeai_fire_cost";
+    private static final String KEY_HEAD = "head";
+    private static final String KEY_SLOT_PREFIX = "slot:";
+
+    /** Ring buffer capacity — same as FireTrace. */
+    static final int CAPACITY = 64;
+
+    /** Heap is sampled this often while a fire is open. */
+    private static final long HEAP_SAMPLE_MS = 5000;
+
+    /** A forwarded wake-lock hold ending this soon after the fire still counts for it. */
+    private static final long LATE_WAKE_LOCK_MS = 60 * 1000L;
+
+    /** One finished fire. Durations in ms, heap in KiB. */
+    static final class Record {
+        final String alarmId;
+        final long startedAt;       // wall clock
+        final String outcome;       // dismissed / snoozed / stopped
+        final long ringMs;
+        final long cpuMs;
+        final long audioMs;
+        final long vibrationMs;
+        final long peakJavaHeapKb;
+        final long peakNativeHeapKb;
+        final long awakeMs;
+        final Map<String, Long> wakeLockMs;
+
+        Record(String alarmId, long startedAt, String outcome, long ringMs, long cpuMs,
+               long audioMs, long vibrationMs, long peakJavaHeapKb, long peakNativeHeapKb,
+               long awakeMs, Map<String, Long> wakeLockMs) {
+            this.alarmId = alarmId != null ? alarmId : "";
+            this.startedAt = startedAt;
+            this.outcome = outcome;
+            this.ringMs = ringMs;
+            this.cpuMs = cpuMs;
+            this.audioMs = audioMs;
+            this.vibrationMs = vibrationMs;
+            this.peakJavaHeapKb = peakJavaHeapKb;
+            this.peakNativeHeapKb = peakNativeHeapKb;
+            this.awakeMs = awakeMs;
+            this.wakeLockMs = wakeLockMs;
+        }
+
+        Record withAwakeMs(long awakeMs) {
+            return new Record(alarmId, startedAt, outcome, ringMs, cpuMs, audioMs, vibrationMs,
+                    peakJavaHeapKb, peakNativeHeapKb, awakeMs, wakeLockMs);
+        }
+
+        /**
+         * startedAt|outcome|ring,cpu,audio,vibration,javaKb,nativeKb,awake|tag=ms;tag=ms|alarmId
+         * (records written before awake was measured have six numbers)
+         */
+        String encode() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(startedAt).append('|').append(outcome).append('|')
+                    .append(ringMs).append(',').append(cpuMs).append(',')
+                    .append(audioMs).append(',').append(vibrationMs).append(',')
+                    .append(peakJavaHeapKb).append(',').append(peakNativeHeapKb).append(',')
+                    .append(awakeMs).append('|');
+            boolean first = true;
+            for (Map.Entry<String, Long> entry : wakeLockMs.entrySet()) {
+                if (!first) sb.append(';');
+                sb.append(entry.getKey()).append('=').append(entry.getValue());
+                first = false;
+            }
+            return sb.append('|').append(alarmId).toString();
+        }
+
+        static Record decode(String raw) {
+            if (raw == null) return null;
+            String[] parts = raw.split("\\|", 5);
+            if (parts.length != 5) return null;
+            try {
+                String[] n = parts[2].split(",");
+                if (n.length != 6 && n.length != 7) return null;
+                Map<String, Long> wakeLocks = new HashMap<>();
+                if (!parts[3].isEmpty()) {
+                    for (String pair : parts[3].split(";")) {
+                        int eq = pair.indexOf('=');
+                        if (eq > 0) {
+                            wakeLocks.put(pair.substring(0, eq), Long.parseLong(pair.substring(eq + 1)));
+                        }
+                    }
+                }
+                return new Record(parts[4], Long.parseLong(parts[0]), parts[1],
+                        Long.parseLong(n[0]), Long.parseLong(n[1]), Long.parseLong(n[2]),
+                        Long.parseLong(n[3]), Long.parseLong(n[4]), Long.parseLong(n[5]),
+                        n.length == 7 ? Long.parseLong(n[6]) : 0, wakeLocks);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+
+    /** The fire being measured. Mutated only under the class lock. */
+    private static final class Open {
+        final String alarmId;
+        final long startedAt = System.currentTimeMillis();
+        final long baseElapsed = SystemClock.elapsedRealtime();
+        final long baseCpuMs = Process.getElapsedCpuTime();
+        final Map<String, Long> wakeLockMs = new HashMap<>();
+        final List<long[]> awake = new ArrayList<>();   // CPU lock spans, elapsedRealtime
+        long audioSince = -1;
+        long audioMs;
+        long vibrationSince = -1;
+        long vibrationMs;
+        long peakJavaHeap;
+        long peakNativeHeap;
+
+        Open(String alarmId) {
+            this.alarmId = alarmId;
+        }
+    }
+
+    private static final Handler handler = new Handler(Looper.getMainLooper());
+    private static final Runnable heapSampler = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (FireCost.class) {
+                if (open == null) return;
+                sampleHeapLocked();
+            }
+            handler.postDelayed(this, HEAP_SAMPLE_MS);
+        }
+    };
+
+    private static Open open;
+
+    // The last fire written, amended by late wake-lock holds (class lock)
+    private static Record last;
+    private static int lastSlot = -1;
+    private static long lastEndedAt;       // elapsedRealtime
+    private static long lastBaseElapsed;
+    private static List<long[]> lastAwake;
+
+    private FireCost() {}
+
+    /** Start measuring a fire. Called once the ring wins STARTING. */
+    static synchronized void begin(String alarmId) {
+        open = new Open(alarmId);
+        sampleHeapLocked();
+        handler.removeCallbacks(heapSampler);
+        handler.postDelayed(heapSampler, HEAP_SAMPLE_MS);
+    }
+
+    static synchronized void audioStarted() {
+        if (open != null && open.audioSince < 0) {
+            open.audioSince = SystemClock.elapsedRealtime();
+            sampleHeapLocked();
+        }
+    }
+
+    static synchronized void audioStopped() {
+        if (open != null && open.audioSince >= 0) {
+            open.audioMs += SystemClock.elapsedRealtime() - open.audioSince;
+            open.audioSince = -1;
+        }
+    }
+
+    static synchronized void vibrationStarted() {
+        if (open != null && open.vibrationSince < 0) {
+            open.vibrationSince = SystemClock.elapsedRealtime();
+        }
+    }
+
+    static synchronized void vibrationStopped() {
+        if (open != null && open.vibrationSince >= 0) {
+            open.vibrationMs += SystemClock.elapsedRealtime() - open.vibrationSince;
+            open.vibrationSince = -1;
+        }
+    }
+
+    /**
+     * A wake-lock hold ended (WakeLockCoordinator), in either process. Counted
+     * for the open fire, or for the one that just ended; ignored otherwise.
+     */
+    static void wakeLockHeld(Context context, String tag, long heldMs) {
+        if (!WakeAIApplication.isAlarmProcess()) {
+            if (RingStateChannel.isAlarmProcessAlive(context)) {
+                AlarmReceiver.forwardWakeLockHeld(context, tag, heldMs);
+            }
+            return;
+        }
+        synchronized (FireCost.class) {
+            if (open != null) {
+                add(open.wakeLockMs, tag, heldMs);
+                return;
+            }
+            if (!lastStillOpen()) return;
+            add(last.wakeLockMs, tag, heldMs);
+            persist(context, lastSlot, last);
+        }
+    }
+
+    /**
+     * A CPU lock was held from {@code since} to {@code until} (elapsedRealtime),
+     * in either process. Counted like {@link #wakeLockHeld}; spans of both
+     * processes are merged, so overlap counts once.
+     */
+    static void cpuAwake(Context context, long since, long until) {
+        if (!WakeAIApplication.isAlarmProcess()) {
+            if (RingStateChannel.isAlarmProcessAlive(context)) {
+                AlarmReceiver.forwardCpuAwake(context, since, until);
+            }
+            return;
+        }
+        synchronized (FireCost.class) {
+            if (open != null) {
+                addSpan(open.awake, open.baseElapsed, since, until);
+                return;
+            }
+            if (!lastStillOpen()) return;
+            addSpan(lastAwake, lastBaseElapsed, since, until);
+            last = last.withAwakeMs(union(lastAwake));
+            persist(context, lastSlot, last);
+        }
+    }
+
+    /**
+     * Close the current fire and persist its record. Called from the stop
+     * cleanup, after audio, vibration and the service wake locks are released.
+     */
+    static synchronized void end(Context context, String outcome) {
+        if (open == null) return;
+        handler.removeCallbacks(heapSampler);
+        sampleHeapLocked();
+        audioStopped();
+        vibrationStopped();
+
+        Record record = new Record(open.alarmId, open.startedAt, outcome,
+                SystemClock.elapsedRealtime() - open.baseElapsed,
+                Process.getElapsedCpuTime() - open.baseCpuMs,
+                open.audioMs, open.vibrationMs,
+                open.peakJavaHeap / 1024, open.peakNativeHeap / 1024,
+                union(open.awake), open.wakeLockMs);
+        lastBaseElapsed = open.baseElapsed;
+        lastAwake = open.awake;
+        open = null;
+
+        last = record;
+        lastSlot = (prefs(context).getInt(KEY_HEAD, -1) + 1) % CAPACITY;
+        lastEndedAt = SystemClock.elapsedRealtime();
+        persist(context, lastSlot, record);
+        Log.i(TAG, "Fire cost: ring " + record.ringMs + " ms, cpu " + record.cpuMs
+                + " ms, awake " + record.awakeMs + " ms, wake locks " + record.wakeLockMs);
+    }
+
+    /** All retained records, oldest first. */
+    static List<Record> getRecords(Context context) {
+        List<Record> records = new ArrayList<>();
+        for (String raw : encodedRecords(context)) {
+            Record r = Record.decode(raw);
+            if (r != null) records.add(r);
+        }
+        return records;
+    }
+
+    /** Retained records, encoded, oldest first — asked of the alarm process from elsewhere. */
+    static String[] encodedRecords(Context context) {
+        if (!WakeAIApplication.isAlarmProcess()) {
+            return AlarmProcessProvider.records(context, AlarmProcessProvider.METHOD_FIRE_COSTS);
+        }
+        synchronized (FireCost.class) {
+            SharedPreferences prefs = prefs(context);
+            int head = prefs.getInt(KEY_HEAD, -1);
+            if (head < 0) return new String[0];
+            List<String> records = new ArrayList<>();
+            for (int i = 1; i <= CAPACITY; i++) {
+                String raw = prefs.getString(KEY_SLOT_PREFIX + (head + i) % CAPACITY, null);
+                if (raw != null) records.add(raw);
+            }
+            return records.toArray(new String[0]);
+        }
+    }
+
+    static void clear(Context context) {
+        if (!WakeAIApplication.isAlarmProcess()) {
+            AlarmProcessProvider.call(context, AlarmProcessProvider.METHOD_CLEAR_FIRE_COSTS, null);
+            return;
+        }
+        synchronized (FireCost.class) {
+            prefs(context).edit().clear().apply();
+            last = null;
+            lastSlot = -1;
+            lastAwake = null;
+        }
+    }
+
+    // ── Internals (callers hold the class lock) ─────────────────────────
+
+    private static void add(Map<String, Long> wakeLockMs, String tag, long heldMs) {
+        Long prev = wakeLockMs.get(tag);
+        wakeLockMs.put(tag, (prev != null ? prev : 0) + heldMs);
+    }
+
+    private static boolean lastStillOpen() {
+        return last != null && SystemClock.elapsedRealtime() - lastEndedAt <= LATE_WAKE_LOCK_MS;
+    }
+
+    /** Keep the part of a span from the fire's start on. */
+    private static void addSpan(List<long[]> spans, long base, long since, long until) {
+        since = Math.max(since, base);
+        if (until > since) spans.add(new long[] { since, until });
+    }
+
+    /** Total length of the spans, overlaps counted once. */
+    private static long union(List<long[]> spans) {
+        List<long[]> sorted = new ArrayList<>(spans);
+        Collections.sort(sorted, new Comparator<long[]>() {
+            @Override
+            public int compare(long[] a, long[] b) {
+                return Long.compare(a[0], b[0]);
+            }
+        });
+        long total = 0;
+        long coveredTo = Long.MIN_VALUE;
+        for (long[] span : sorted) {
+            long from = Math.max(span[0], coveredTo);
+            if (span[1] > from) {
+                total += span[1] - from;
+                coveredTo = span[1];
+            }
+        }
+        return total;
+    }
+
+    private static void persist(Context context, int slot, Record record) {
+        try {
+            prefs(context).edit()
+                    .putInt(KEY_HEAD, slot)
+                    .putString(KEY_SLOT_PREFIX + slot, record.encode())
+                    .apply();
+        } catch (Exception e) {
+            // Accounting must never break the stop path
+            Log.w(TAG, "Could not persist fire cost", e);
+        }
+    }
+
+    private static void sampleHeapLocked() {
+        Runtime rt = Runtime.getRuntime();
+        open.peakJavaHeap = Math.max(open.peakJavaHeap, rt.totalMemory() - rt.freeMemory());
+        open.peakNativeHeap = Math.max(open.peakNativeHeap, Debug.getNativeHeapAllocatedSize());
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return DeviceProtectedStorage.context(context)
+                .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}
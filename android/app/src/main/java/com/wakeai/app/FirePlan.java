@@ -0,0 +1,106 @@
+package com.wakeai.app;
+
+import android.content.Context;
+import android.content.Intent;
+
+/**
+ * Everything the fire path needs, resolved when the trigger is armed rather
+ * than when it fires.
+ *
+ * TriggerScheduler builds a plan for the heap head and BootReceiver writes it
+ * into the AlarmManager broadcast's extras. AlarmReceiver copies those extras
+ * to AlarmService, so neither of them reads storage, parses a record, maps a
+ * tone name or probes the notification channel at fire time.
+ *
+ * Raw resource IDs are only stable within one APK, so a plan armed by an
+ * older install (APK mtime differs) keeps its tone name and vibration but has
+ * the resource ID mapped again. The alarm process never falls back to alarm
+ * storage; a start without a plan rings with {@link #defaults}.
+ */
+final class FirePlan {
+
+    static final String EXTRA_TONE = "com.wakeai.app.extra.TONE";
+    static final String EXTRA_TONE_RES_ID = "com.wakeai.app.extra.TONE_RES_ID";
+    static final String EXTRA_VIBRATION_PATTERN = "com.wakeai.app.extra.VIBRATION_PATTERN";
+    static final String EXTRA_CHANNEL_READY = "com.wakeai.app.extra.CHANNEL_READY";
+    static final String EXTRA_SOURCE_STAMP = "com.wakeai.app.extra.SOURCE_STAMP";
+
+    /** Vibrate 1s, pause 0.5s, vibrate 1s, pause 0.5s — repeated from index 0. */
+    static final long[] ALARM_VIBRATION_PATTERN = {0, 1000, 500, 1000, 500};
+
+    final String alarmId;
+    final long triggerAt;
+    final String tone;
+    final int toneResId;
+    /** Null when vibration is disabled for this alarm. */
+    final long[] vibrationPattern;
+    /** The fallback notification channel existed when the plan was built. */
+    final boolean channelReady;
+    private final long sourceStamp;
+
+    private FirePlan(String alarmId, long triggerAt, String tone, int toneResId,
+                     long[] vibrationPattern, boolean channelReady, long sourceStamp) {
+        this.alarmId = alarmId;
+        this.triggerAt = triggerAt;
+        this.tone = tone;
+        this.toneResId = toneResId;
+        this.vibrationPattern = vibrationPattern;
+        this.channelReady = channelReady;
+        this.sourceStamp = sourceStamp;
+    }
+
+    /**
+     * Resolve a plan for a record that is about to be armed. Also makes sure
+     * the fallback channel exists, so the receiver can skip that check.
+     */
+    static FirePlan forRecord(Context context, AlarmRecord record) {
+        return new FirePlan(record.alarmId, record.triggerAt, record.tone,
+                AlarmService.getToneResourceId(record.tone),
+                record.vibration ? ALARM_VIBRATION_PATTERN : null,
+                AlarmNotificationHelper.ensureFallbackChannel(context),
+                ToneCache.sourceStamp(context));
+    }
+
+    /**
+     * Built-in defaults for starts that arrive without a plan (service
+     * restart, bare JS ring()). Never written to an intent.
+     */
+    static FirePlan defaults() {
+        return new FirePlan(null, 0, "gentle", AlarmService.getToneResourceId("gentle"),
+                ALARM_VIBRATION_PATTERN, false, 0);
+    }
+
+    void writeTo(Intent intent) {
+        intent.putExtra(AlarmService.EXTRA_ALARM_ID, alarmId);
+        intent.putExtra(AlarmService.EXTRA_TRIGGER_AT, triggerAt);
+        intent.putExtra(EXTRA_TONE, tone);
+        intent.putExtra(EXTRA_TONE_RES_ID, toneResId);
+        if (vibrationPattern != null) {
+            intent.putExtra(EXTRA_VIBRATION_PATTERN, vibrationPattern);
+        }
+        intent.putExtra(EXTRA_CHANNEL_READY, channelReady);
+        intent.putExtra(EXTRA_SOURCE_STAMP, sourceStamp);
+    }
+
+    /**
+     * Read a plan from broadcast / service extras.
+     *
+     * @return the plan, or null if the intent carries none. One built by a
+     *         different install has its tone resource ID mapped again.
+     */
+    static FirePlan fromIntent(Context context, Intent intent) {
+        if (intent == null || !intent.hasExtra(EXTRA_TONE_RES_ID)) return null;
+        String tone = intent.getStringExtra(EXTRA_TONE);
+        long stamp = intent.getLongExtra(EXTRA_SOURCE_STAMP, 0);
+        boolean current = stamp == ToneCache.sourceStamp(context);
+        return new FirePlan(
+                intent.getStringExtra(AlarmService.EXTRA_ALARM_ID),
+                intent.getLongExtra(AlarmService.EXTRA_TRIGGER_AT, 0),
+                tone,
+                current ? intent.getIntExtra(EXTRA_TONE_RES_ID, 0)
+                        : AlarmService.getToneResourceId(tone),
+                intent.getLongArrayExtra(EXTRA_VIBRATION_PATTERN),
+                current && intent.getBooleanExtra(EXTRA_CHANNEL_READY, false),
+                current ? stamp : 0);
+    }
+}
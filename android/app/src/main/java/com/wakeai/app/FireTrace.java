@@ -0,0 +1,227 @@
+package com.wakeai.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Fire-path latency tracing.
+ *
+ * Every alarm fire gets one trace holding monotonic (elapsedRealtime) stage
+ * timestamps from AlarmReceiver to the alarmFired JS event, plus how late the
+ * broadcast was delivered compared with the stored triggerAt.
+ *
+ * Traces live in a bounded ring buffer. Each slot is its own SharedPreferences
+ * key, so marking a stage rewrites one short string; the buffer survives
+ * process death (e.g. the receiver's process being killed before the activity
+ * starts in a new one). elapsedRealtime is used because it is monotonic across
+ * processes for the whole boot session.
+ *
+ * Only the ":alarm" process touches the file. Stages reached in the main
+ * process (activity, JS event) are timestamped there and forwarded to
+ * AlarmReceiver; reading and clearing go through AlarmProcessProvider.
+ */
+public final class FireTrace {
+
+    private static final String TAG = "FireTrace";
+
+    private static final String PREFS_NAME = "wakeai_fire_trace";
+    private static final String KEY_HEAD = "head";
+    private static final String KEY_SLOT_PREFIX = "slot:";
+
+    /** Ring buffer capacity — enough for a month of daily alarms. */
+    static final int CAPACITY = 64;
+
+    /** Stages later than this after the fire start a new trace instead. */
+    private static final long TRACE_WINDOW_MS = 30 * 60 * 1000L;
+
+    // Stage indices — order matches the fire path.
+    static final int STAGE_RECEIVED = 0;       // AlarmReceiver.onReceive
+    static final int STAGE_SERVICE_START = 1;  // AlarmService.onStartCommand
+    static final int STAGE_START_ALARM = 2;    // AlarmService.startAlarm entry
+    static final int STAGE_FOREGROUND = 3;     // startForeground() returned
+    static final int STAGE_AUDIO_STARTED = 4;  // first sample queued (player started)
+    static final int STAGE_ACTIVITY = 5;       // MainActivity.handleAlarmIntent
+    static final int STAGE_JS_EVENT = 6;       // alarmFired / checkLaunchIntent delivered
+
+    static final String[] STAGE_NAMES = {
+            "received", "serviceStart", "startAlarm", "foreground",
+            "audioStarted", "activity", "jsEvent"
+    };
+
+    /** One fire. Stage offsets are ms since {@link #baseElapsed}, -1 if not reached. */
+    static final class Trace {
+        final long baseElapsed;
+        final long receivedAt;
+        final long triggerAt;
+        final String alarmId;
+        final long[] stages;
+
+        Trace(long baseElapsed, long receivedAt, long triggerAt, String alarmId, long[] stages) {
+            this.baseElapsed = baseElapsed;
+            this.receivedAt = receivedAt;
+            this.triggerAt = triggerAt;
+            this.alarmId = alarmId != null ? alarmId : "";
+            this.stages = stages;
+        }
+
+        /** Delivery lateness vs. the scheduled time, or -1 when the trigger time is unknown. */
+        long latenessMs() {
+            return triggerAt > 0 ? receivedAt - triggerAt : -1;
+        }
+
+        String encode() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(baseElapsed).append('|').append(receivedAt).append('|')
+                    .append(triggerAt).append('|');
+            for (int i = 0; i < stages.length; i++) {
+                if (i > 0) sb.append(',');
+                sb.append(stages[i]);
+            }
+            return sb.append('|').append(alarmId).toString();
+        }
+
+        static Trace decode(String raw) {
+            if (raw == null) return null;
+            String[] parts = raw.split("\\|", 5);
+            if (parts.length != 5) return null;
+            try {
+                long[] stages = new long[STAGE_NAMES.length];
+                Arrays.fill(stages, -1);
+                String[] offsets = parts[3].split(",");
+                for (int i = 0; i < offsets.length && i < stages.length; i++) {
+                    stages[i] = Long.parseLong(offsets[i]);
+                }
+                return new Trace(Long.parseLong(parts[0]), Long.parseLong(parts[1]),
+                        Long.parseLong(parts[2]), parts[4], stages);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+
+    // Loaded from the file once per alarm process
+    private static SharedPreferences prefs;
+    private static int head = -1;          // slot of the current (latest) trace
+    private static Trace current;
+
+    private FireTrace() {}
+
+    /**
+     * Start a trace for a new fire. Called first thing in AlarmReceiver.onReceive.
+     */
+    static synchronized void begin(Context context, String alarmId, long triggerAt) {
+        load(context);
+        long[] stages = new long[STAGE_NAMES.length];
+        Arrays.fill(stages, -1);
+        stages[STAGE_RECEIVED] = 0;
+        current = new Trace(SystemClock.elapsedRealtime(), System.currentTimeMillis(),
+                triggerAt, alarmId, stages);
+        head = (head + 1) % CAPACITY;
+        persist();
+    }
+
+    /**
+     * Record a stage of the current fire. Only the first occurrence of each
+     * stage counts, so duplicate starts don't skew the numbers. If no recent
+     * trace exists (e.g. the fire came from JS ring() rather than AlarmReceiver)
+     * a new trace is started at this stage.
+     */
+    static void mark(Context context, int stage) {
+        long now = SystemClock.elapsedRealtime();
+        if (!WakeAIApplication.isAlarmProcess()) {
+            AlarmReceiver.forwardTraceMark(context, stage, now);
+            return;
+        }
+        markAt(context, stage, now);
+    }
+
+    /** Record {@code stage} as reached at elapsedRealtime {@code now}. Alarm process only. */
+    static synchronized void markAt(Context context, int stage, long now) {
+        load(context);
+        if (current == null || now - current.baseElapsed > TRACE_WINDOW_MS
+                || now < current.baseElapsed) {
+            long[] stages = new long[STAGE_NAMES.length];
+            Arrays.fill(stages, -1);
+            current = new Trace(now, System.currentTimeMillis(), 0, null, stages);
+            head = (head + 1) % CAPACITY;
+        }
+        if (current.stages[stage] >= 0) return;
+        current.stages[stage] = now - current.baseElapsed;
+        persist();
+    }
+
+    /**
+     * All retained traces, oldest first.
+     */
+    static List<Trace> getTraces(Context context) {
+        List<Trace> traces = new ArrayList<>();
+        for (String raw : encodedTraces(context)) {
+            Trace t = Trace.decode(raw);
+            if (t != null) traces.add(t);
+        }
+        return traces;
+    }
+
+    /** Retained traces, encoded, oldest first — asked of the alarm process from elsewhere. */
+    static String[] encodedTraces(Context context) {
+        if (!WakeAIApplication.isAlarmProcess()) {
+            return AlarmProcessProvider.records(context, AlarmProcessProvider.METHOD_FIRE_TRACES);
+        }
+        synchronized (FireTrace.class) {
+            load(context);
+            if (head < 0) return new String[0];
+            List<String> traces = new ArrayList<>();
+            for (int i = 1; i <= CAPACITY; i++) {
+                String raw = prefs.getString(KEY_SLOT_PREFIX + (head + i) % CAPACITY, null);
+                if (raw != null) traces.add(raw);
+            }
+            return traces.toArray(new String[0]);
+        }
+    }
+
+    static void clear(Context context) {
+        if (!WakeAIApplication.isAlarmProcess()) {
+            AlarmProcessProvider.call(context, AlarmProcessProvider.METHOD_CLEAR_FIRE_TRACES, null);
+            return;
+        }
+        synchronized (FireTrace.class) {
+            load(context);
+            prefs.edit().clear().apply();
+            head = -1;
+            current = null;
+        }
+    }
+
+    // ── Internals (callers hold the class lock) ─────────────────────────
+
+    private static void load(Context context) {
+        if (prefs != null) return;
+        // Device-protected so fires before first unlock are traced too
+        DeviceProtectedStorage.migratePreferences(context, PREFS_NAME);
+        prefs = DeviceProtectedStorage.context(context)
+                .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        head = prefs.getInt(KEY_HEAD, -1);
+        // Resume the latest trace — it may belong to a fire that started in a
+        // process that has since died.
+        current = head >= 0
+                ? Trace.decode(prefs.getString(KEY_SLOT_PREFIX + head, null)) : null;
+    }
+
+    private static void persist() {
+        try {
+            prefs.edit()
+                    .putInt(KEY_HEAD, head)
+                    .putString(KEY_SLOT_PREFIX + head, current.encode())
+                    .apply();
+        } catch (Exception e) {
+            // Tracing must never break the fire path
+            Log.w(TAG, "Could not persist fire trace", e);
+        }
+    }
+}
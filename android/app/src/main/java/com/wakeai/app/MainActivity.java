@@ -1,12 +1,13 @@
 package com.wakeai.app;
 
-import android.content.Context;
 import android.content.Intent;
 import android.os.Build;
 import android.os.Bundle;
-import android.os.PowerManager;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.KeyEvent;
+import android.view.View;
+import android.view.ViewTreeObserver;
 import android.view.WindowManager;
 import com.getcapacitor.BridgeActivity;
 import com.getcapacitor.community.admob.AdMob;
@@ -15,23 +16,73 @@ public class MainActivity extends BridgeActivity {
 
     private static final String TAG = "MainActivity";
     private static final String ALARM_FIRED_ACTION = "com.wakeai.app.ALARM_FIRED";
+    /** Tap on the status-bar alarm icon (AlarmClockInfo show-intent) — a plain open. */
+    static final String SHOW_ALARMS_ACTION = "com.wakeai.app.SHOW_ALARMS";
+    /** How long a notification tap waits for the alarm process's ring state on a cold start. */
+    private static final long INITIAL_RING_STATE_WAIT_MS = 500;
 
-    private PowerManager.WakeLock wakeLock;
+    /**
+     * Cold start caused by a real fire (see {@link #isFireIntent}). Gates the
+     * native ringing overlay and the first-frame / fully-drawn logging. JS
+     * learns about the ring from checkLaunchIntent (AlarmStateBus), not from
+     * this flag.
+     */
+    private boolean alarmLaunch;
+    private long createdAtUptime;
+    private boolean fullyDrawnReported;
+
+    /** Native ringing screen covering the WebView while it boots (alarm launches only). */
+    private RingingOverlay ringingOverlay;
+
+    /** Drops the overlay if the ring ends before JS takes over. */
+    private final AlarmStateBus.Listener ringEndListener = new AlarmStateBus.Listener() {
+        @Override
+        public void onAlarmState(AlarmStateBus.Event event) {
+            if (event.ringing) return;
+            runOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    hideRingingOverlay();
+                }
+            });
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
-        // Register plugins before super (which initializes the bridge)
+        createdAtUptime = SystemClock.uptimeMillis();
+        alarmLaunch = savedInstanceState == null && isFireIntent(getIntent());
+
+        // Register plugins before super (which initializes the bridge).
+        // AdMob stays registered even on an alarm launch: JS plugin headers
+        // are fixed when the bridge is built. Registering it is cheap — the
+        // SDK initialization (AdMob.initialize from JS) is what gets deferred.
         registerPlugin(VolumeGuardPlugin.class);
         registerPlugin(WakeAIAlarmPlugin.class);
+        registerPlugin(QuestionGeneratorPlugin.class);
+        registerPlugin(QuestionStorePlugin.class);
         registerPlugin(AdMob.class);
 
         super.onCreate(savedInstanceState);
 
+        if (alarmLaunch) {
+            Log.i(TAG, "Alarm launch — non-essential init deferred until the alarm ends");
+            logFirstFrame();
+        }
+
         // Enable showing on lock screen for alarm functionality
         enableLockScreenSupport();
 
         // Check if launched by alarm full-screen intent
         handleAlarmIntent(getIntent());
+
+        // Cover the booting WebView with the native ringing screen. Added
+        // after the lock screen flags so it is in the first frame shown
+        // over the keyguard.
+        if (alarmLaunch && AlarmStateBus.isRinging()) {
+            ringingOverlay = RingingOverlay.show(this);
+            AlarmStateBus.addListener(ringEndListener);
+        }
     }
 
     /**
@@ -67,33 +118,101 @@ public class MainActivity extends BridgeActivity {
 
     @Override
     public void onDestroy() {
+        // Stops the overlay's tick and drops ringEndListener — both hold this activity
+        hideRingingOverlay();
+        AlarmStateBus.removeListener(ringEndListener);
         releaseWakeLock();
         super.onDestroy();
     }
 
+    /**
+     * Called (via WakeAIAlarmPlugin.ringingScreenReady) once the JS ringing
+     * screen has rendered. Hands off from the native overlay to the WebView
+     * and reports time-to-fully-drawn for the launch.
+     */
+    void onRingingScreenReady() {
+        hideRingingOverlay();
+        if (fullyDrawnReported) return;
+        fullyDrawnReported = true;
+        reportFullyDrawn();
+        Log.i(TAG, "Ringing screen fully drawn "
+                + (SystemClock.uptimeMillis() - createdAtUptime) + " ms after onCreate"
+                + (alarmLaunch ? " (alarm launch)" : ""));
+    }
+
+    private void hideRingingOverlay() {
+        if (ringingOverlay == null) return;
+        AlarmStateBus.removeListener(ringEndListener);
+        ringingOverlay.hide();
+        ringingOverlay = null;
+    }
+
+    /** Log how long after onCreate the first frame was drawn. */
+    private void logFirstFrame() {
+        final View decor = getWindow().getDecorView();
+        decor.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                decor.getViewTreeObserver().removeOnPreDrawListener(this);
+                Log.i(TAG, "First frame " + (SystemClock.uptimeMillis() - createdAtUptime)
+                        + " ms after onCreate");
+                return true;
+            }
+        });
+    }
+
+    /**
+     * An ALARM_FIRED intent for a ring that is actually happening: it carries
+     * the fired alarm's ID (AlarmReceiver, AlarmService, JS ring()), or the
+     * alarm process reports an active ring (notification taps, which carry no
+     * ID). Anything else is a plain open and must not start ringing state.
+     * A tap that cold-starts this process may beat the alarm process's initial
+     * state, so that case waits briefly for it.
+     */
+    private static boolean isFireIntent(Intent intent) {
+        if (intent == null || !ALARM_FIRED_ACTION.equals(intent.getAction())) return false;
+        if (intent.getStringExtra(AlarmService.EXTRA_ALARM_ID) != null) return true;
+        RingStateChannel.awaitInitialState(INITIAL_RING_STATE_WAIT_MS);
+        return RingStateChannel.isRemoteActive();
+    }
+
     /**
      * Check if the intent is an alarm full-screen intent and notify JS.
      */
     private void handleAlarmIntent(Intent intent) {
-        if (intent == null) return;
-
-        String action = intent.getAction();
-        if (!ALARM_FIRED_ACTION.equals(action)) return;
+        if (intent == null || !ALARM_FIRED_ACTION.equals(intent.getAction())) return;
+        if (!isFireIntent(intent)) {
+            Log.i(TAG, "Alarm intent without an active ring — treated as a plain open");
+            return;
+        }
 
         Log.i(TAG, "Alarm intent received");
+        FireTrace.mark(this, FireTrace.STAGE_ACTIVITY);
 
         // Re-apply lock screen support since this is an alarm waking the device
         enableLockScreenSupport();
 
-        // Set flag for cold start detection (JS calls checkLaunchIntent)
-        WakeAIAlarmPlugin.launchedByAlarm = true;
+        // Retained ringing state for cold start detection (JS calls checkLaunchIntent).
+        // The alarm process publishes the same ring with the same ID, so
+        // whichever arrives second is dropped as a duplicate. Without an ID the
+        // alarm process is already ringing and its event is on the way.
+        String firedId = intent.getStringExtra(AlarmService.EXTRA_ALARM_ID);
+        if (firedId != null) {
+            AlarmStateBus.publishRinging(firedId, intent.getLongExtra(AlarmService.EXTRA_TRIGGER_AT, 0));
+        }
+
+        // Keep the device awake for the alarm. One hold however many alarm
+        // intents arrive; WakeLockCoordinator drops it as soon as the ring ends.
+        WakeLockCoordinator.acquire(this, WakeLockCoordinator.TAG_ACTIVITY,
+                WakeLockCoordinator.ALARM_TIMEOUT_MS);
 
         // If bridge is ready (warm start), fire event immediately to JS
         if (getBridge() != null) {
             com.getcapacitor.PluginHandle handle = getBridge().getPlugin("WakeAIAlarm");
             if (handle != null && handle.getInstance() instanceof WakeAIAlarmPlugin) {
                 Log.i(TAG, "Bridge ready — firing alarm event to JS");
-                ((WakeAIAlarmPlugin) handle.getInstance()).fireAlarmEvent();
+                ((WakeAIAlarmPlugin) handle.getInstance())
+                        .fireAlarmEvent(intent.getStringExtra(AlarmService.EXTRA_ALARM_ID));
             }
         }
         // For cold start, JS will call checkLaunchIntent() on init
@@ -125,29 +244,9 @@ public class MainActivity extends BridgeActivity {
 
         // Keep screen on while activity is visible (for alarm interaction)
         getWindow().addFlags(WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON);
-
-        // Acquire a wake lock to ensure the device stays awake for the alarm
-        acquireWakeLock();
-    }
-
-    private void acquireWakeLock() {
-        releaseWakeLock();
-
-        PowerManager powerManager = (PowerManager) getSystemService(Context.POWER_SERVICE);
-        if (powerManager != null) {
-            wakeLock = powerManager.newWakeLock(
-                PowerManager.PARTIAL_WAKE_LOCK,
-                "WakeAI::AlarmWakeLock"
-            );
-            // Auto-release after 20 minutes (matches MAX_RING_DURATION_MS)
-            wakeLock.acquire(20 * 60 * 1000L);
-        }
     }
 
     private void releaseWakeLock() {
-        if (wakeLock != null && wakeLock.isHeld()) {
-            wakeLock.release();
-            wakeLock = null;
-        }
+        WakeLockCoordinator.release(WakeLockCoordinator.TAG_ACTIVITY);
     }
 }
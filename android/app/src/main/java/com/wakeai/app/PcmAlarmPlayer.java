@@ -0,0 +1,95 @@
+package com.wakeai.app;
+
+import android.media.AudioAttributes;
+import android.media.AudioFormat;
+import android.media.AudioTrack;
+import android.util.Log;
+
+/**
+ * Low-latency alarm playback: a static-mode AudioTrack on USAGE_ALARM that
+ * loops pre-decoded PCM forever.
+ *
+ * Unlike MediaPlayer there is no data source to open and nothing to prepare —
+ * the samples are copied into the track's shared buffer once and the mixer
+ * loops them with no gap, so the first sample plays as soon as play() returns.
+ */
+final class PcmAlarmPlayer {
+
+    private static final String TAG = "PcmAlarmPlayer";
+
+    private final AudioTrack track;
+
+    private PcmAlarmPlayer(AudioTrack track) {
+        this.track = track;
+    }
+
+    /**
+     * Build the track, load the tone and start looping playback.
+     *
+     * @return the playing player, or null if the track could not be created
+     *         (caller falls back to MediaPlayer).
+     */
+    static PcmAlarmPlayer start(PcmTone tone) {
+        AudioTrack track = null;
+        try {
+            AudioAttributes attrs = new AudioAttributes.Builder()
+                    .setUsage(AudioAttributes.USAGE_ALARM)
+                    .setContentType(AudioAttributes.CONTENT_TYPE_SONIFICATION)
+                    .build();
+            AudioFormat format = new AudioFormat.Builder()
+                    .setEncoding(AudioFormat.ENCODING_PCM_16BIT)
+                    .setSampleRate(tone.sampleRate)
+                    .setChannelMask(tone.channelCount == 1
+                            ? AudioFormat.CHANNEL_OUT_MONO
+                            : AudioFormat.CHANNEL_OUT_STEREO)
+                    .build();
+
+            int size = tone.sizeInBytes();
+            track = new AudioTrack.Builder()
+                    .setAudioAttributes(attrs)
+                    .setAudioFormat(format)
+                    .setTransferMode(AudioTrack.MODE_STATIC)
+                    .setBufferSizeInBytes(size)
+                    .build();
+
+            int written = track.write(tone.data.duplicate(), size, AudioTrack.WRITE_BLOCKING);
+            if (written != size) {
+                Log.w(TAG, "Short static write: " + written + " of " + size);
+                track.release();
+                return null;
+            }
+
+            // Loop the whole buffer indefinitely (-1) — seamless, done by the mixer
+            int frames = tone.frameCount();
+            if (track.setLoopPoints(0, frames, -1) != AudioTrack.SUCCESS) {
+                Log.w(TAG, "Could not set loop points");
+                track.release();
+                return null;
+            }
+
+            track.play();
+            return new PcmAlarmPlayer(track);
+        } catch (Exception e) {
+            Log.e(TAG, "AudioTrack start failed", e);
+            if (track != null) {
+                track.release();
+            }
+            return null;
+        }
+    }
+
+    boolean isPlaying() {
+        return track.getPlayState() == AudioTrack.PLAYSTATE_PLAYING;
+    }
+
+    void stop() {
+        try {
+            if (isPlaying()) {
+                track.stop();
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error stopping AudioTrack", e);
+        }
+        track.release();
+    }
+}
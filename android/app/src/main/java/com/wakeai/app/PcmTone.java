@@ -0,0 +1,29 @@
+package com.wakeai.app;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A fully decoded alarm tone: interleaved 16-bit little-endian PCM plus the
+ * format needed to play it through AudioTrack.
+ */
+final class PcmTone {
+
+    final int sampleRate;
+    final int channelCount;
+    /** Read-only view over the samples; position 0, limit = byte size. */
+    final ByteBuffer data;
+
+    PcmTone(int sampleRate, int channelCount, ByteBuffer data) {
+        this.sampleRate = sampleRate;
+        this.channelCount = channelCount;
+        this.data = data.asReadOnlyBuffer();
+    }
+
+    int sizeInBytes() {
+        return data.limit();
+    }
+
+    int frameCount() {
+        return data.limit() / (2 * channelCount);
+    }
+}
@@ -0,0 +1,226 @@
+package com.wakeai.app;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.google.mediapipe.tasks.genai.llminference.LlmInference;
+import com.google.mediapipe.tasks.genai.llminference.LlmInferenceSession;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * On-device question generation on the CPU.
+ *
+ * Runs a small quantized instruct model (Qwen2.5-0.5B-Instruct, 8-bit, with a
+ * 1280-token KV cache, in MediaPipe .task format — the same model family
+ * WebLLM uses) through the MediaPipe LLM Inference runtime.
+ *
+ * Only built in when the nativeQuestionModel Gradle flag is on
+ * (BuildConfig.NATIVE_QUESTION_MODEL). Otherwise the MediaPipe runtime is not
+ * packaged and {@link #isSupported} is false, so none of its classes load. Weights are memory-mapped from the model
+ * file rather than copied onto the heap, so they are file-backed pages the
+ * kernel can drop and re-read instead of dirty memory.
+ *
+ * Prompts, JSON extraction and validation mirror questionGenerator.js, so
+ * native and WebLLM questions are interchangeable. One question per
+ * generation: a small model follows the single-object format far more
+ * reliably than a whole array, and each question can be streamed as soon as
+ * it is valid.
+ *
+ * Not thread-safe — QuestionGeneratorService drives it from one worker.
+ */
+final class QuestionGenerator {
+
+    private static final String TAG = "QuestionGenerator";
+
+    private static final String MODEL_DIR = "models";
+    static final String MODEL_FILE = "question-model.task";
+
+    /** Prompt + response budget, within the model's KV cache; a question is well under 150 tokens. */
+    private static final int MAX_TOKENS = 512;
+    /** Same as MAX_RETRIES + 1 in questionGenerator.js. */
+    private static final int MAX_ATTEMPTS = 3;
+    private static final int TOP_K = 40;
+    private static final float TOP_P = 0.9f;
+
+    private static final String SYSTEM_PROMPT =
+            "You generate grade 2-3 level quiz questions. Use small numbers only. Output valid JSON only.";
+
+    private static final Map<String, String> CATEGORY_PROMPTS = new HashMap<>();
+    private static final Map<String, String> CATEGORY_NAMES = new HashMap<>();
+    static {
+        CATEGORY_PROMPTS.put("math", "arithmetic or basic algebra (addition, subtraction, multiplication, division, simple equations)");
+        CATEGORY_PROMPTS.put("patterns", "number sequences and patterns (find the next number in a series)");
+        CATEGORY_PROMPTS.put("general", "general knowledge facts (geography, science, history, nature)");
+        CATEGORY_PROMPTS.put("logic", "simple logic puzzles and word problems (lateral thinking, riddles)");
+        CATEGORY_NAMES.put("math", "Math");
+        CATEGORY_NAMES.put("patterns", "Patterns");
+        CATEGORY_NAMES.put("general", "General Knowledge");
+        CATEGORY_NAMES.put("logic", "Logic");
+    }
+
+    private final Random random = new Random();
+    private LlmInference llm;
+
+    /**
+     * Built with the MediaPipe runtime, which needs API 24; otherwise only
+     * WebLLM / fallback questions exist.
+     */
+    static boolean isSupported() {
+        return BuildConfig.NATIVE_QUESTION_MODEL && Build.VERSION.SDK_INT >= Build.VERSION_CODES.N;
+    }
+
+    /** Where the model is expected: no-backup storage, never in a cloud backup. */
+    static File modelFile(Context context) {
+        return new File(new File(context.getNoBackupFilesDir(), MODEL_DIR), MODEL_FILE);
+    }
+
+    static boolean isModelInstalled(Context context) {
+        File file = modelFile(context);
+        return file.isFile() && file.length() > 0;
+    }
+
+    boolean isLoaded() {
+        return llm != null;
+    }
+
+    /**
+     * Map the model. Cheap when already loaded.
+     *
+     * @return load time in ms (0 when already loaded)
+     * @throws IllegalStateException when unsupported or no model is installed
+     */
+    long load(Context context) {
+        if (llm != null) return 0;
+        if (!isSupported()) throw new IllegalStateException("Native generation is not available");
+        File model = modelFile(context);
+        if (!isModelInstalled(context)) throw new IllegalStateException("No model installed at " + model);
+
+        long start = SystemClock.elapsedRealtime();
+        LlmInference.LlmInferenceOptions options = LlmInference.LlmInferenceOptions.builder()
+                .setModelPath(model.getAbsolutePath())
+                .setMaxTokens(MAX_TOKENS)
+                .setPreferredBackend(LlmInference.Backend.CPU)
+                .build();
+        llm = LlmInference.createFromOptions(context, options);
+        long ms = SystemClock.elapsedRealtime() - start;
+        Log.i(TAG, "Model loaded in " + ms + " ms (" + model.length() / (1024 * 1024) + " MiB mapped)");
+        return ms;
+    }
+
+    /**
+     * Generate one validated question.
+     *
+     * @param index position in the batch, for the question ID
+     * @return the question in the JS shape ({id, category, question,
+     *         options, correctIndex}), or null after MAX_ATTEMPTS invalid answers
+     */
+    JSONObject generate(String category, int index, float temperature) {
+        String prompt = buildPrompt(category);
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            LlmInferenceSession session = null;
+            try {
+                session = LlmInferenceSession.createFromOptions(llm,
+                        LlmInferenceSession.LlmInferenceSessionOptions.builder()
+                                .setTopK(TOP_K)
+                                .setTopP(TOP_P)
+                                .setTemperature(temperature)
+                                .setRandomSeed(random.nextInt())
+                                .build());
+                session.addQueryChunk(prompt);
+                JSONObject raw = parseObject(session.generateResponse());
+                if (raw != null && isValid(raw)) {
+                    return format(raw, category, index);
+                }
+            } catch (Exception e) {
+                Log.w(TAG, "Generation attempt " + attempt + " failed", e);
+            } finally {
+                if (session != null) session.close();
+            }
+        }
+        Log.w(TAG, "No valid " + category + " question after " + MAX_ATTEMPTS + " attempts");
+        return null;
+    }
+
+    /** Unmap the model. */
+    void close() {
+        if (llm != null) {
+            llm.close();
+            llm = null;
+        }
+    }
+
+    // ── Prompt and output handling (mirrors questionGenerator.js) ─────────
+
+    private static String buildPrompt(String category) {
+        String description = CATEGORY_PROMPTS.containsKey(category)
+                ? CATEGORY_PROMPTS.get(category) : CATEGORY_PROMPTS.get("math");
+        String name = CATEGORY_NAMES.containsKey(category) ? CATEGORY_NAMES.get(category) : category;
+        String user = "Generate a medium difficulty " + name + " question about " + description + ".\n\n"
+                + "Requirements:\n"
+                + "- Question must be under 80 characters\n"
+                + "- Exactly 4 answer options\n"
+                + "- Wrong options must be plausible\n"
+                + "- One correct answer\n\n"
+                + "Respond ONLY with this JSON format, no other text:\n"
+                + "{\"question\":\"your question here\",\"options\":[\"A\",\"B\",\"C\",\"D\"],\"correctIndex\":0}";
+        // Qwen2.5 chat template
+        return "<|im_start|>system\n" + SYSTEM_PROMPT + "<|im_end|>\n"
+                + "<|im_start|>user\n" + user + "<|im_end|>\n"
+                + "<|im_start|>assistant\n";
+    }
+
+    /** First balanced {...} in the response, ignoring code fences and chatter. */
+    private static JSONObject parseObject(String response) {
+        if (response == null) return null;
+        int start = response.indexOf('{');
+        if (start < 0) return null;
+        int depth = 0;
+        for (int i = start; i < response.length(); i++) {
+            char c = response.charAt(i);
+            if (c == '{') {
+                depth++;
+            } else if (c == '}' && --depth == 0) {
+                try {
+                    return new JSONObject(response.substring(start, i + 1));
+                } catch (JSONException e) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean isValid(JSONObject q) {
+        String question = q.optString("question", "");
+        JSONArray options = q.optJSONArray("options");
+        if (question.isEmpty() || options == null || options.length() != 4) return false;
+        for (int i = 0; i < 4; i++) {
+            if (!(options.opt(i) instanceof String) || options.optString(i).isEmpty()) return false;
+        }
+        Object correct = q.opt("correctIndex");
+        if (!(correct instanceof Number)) return false;
+        double index = ((Number) correct).doubleValue();
+        return index >= 0 && index <= 3;
+    }
+
+    private static JSONObject format(JSONObject raw, String category, int index) throws JSONException {
+        String question = raw.getString("question");
+        JSONObject q = new JSONObject();
+        q.put("id", "llm-" + category + "-" + System.currentTimeMillis() + "-" + index);
+        q.put("category", category);
+        q.put("question", question.length() > 100 ? question.substring(0, 100) : question);
+        q.put("options", raw.getJSONArray("options"));
+        q.put("correctIndex", raw.getInt("correctIndex"));
+        return q;
+    }
+}
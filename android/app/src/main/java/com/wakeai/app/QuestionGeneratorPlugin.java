@@ -0,0 +1,406 @@
+package com.wakeai.app;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.ServiceConnection;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+import android.os.Message;
+import android.os.Messenger;
+import android.os.RemoteException;
+import android.util.Log;
+
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import com.getcapacitor.Plugin;
+import com.getcapacitor.PluginCall;
+import com.getcapacitor.PluginMethod;
+import com.getcapacitor.annotation.CapacitorPlugin;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Capacitor plugin for native CPU question generation — the alternative to
+ * WebLLM on devices without WebGPU.
+ *
+ * Generation runs in QuestionGeneratorService (":generator" process); this
+ * plugin binds to it only while requests are pending, so the model is
+ * unmapped as soon as the last batch is done.
+ *
+ * JS API:
+ *   getStatus()  → { supported, modelInstalled, modelBytes }
+ *   generateBatch({ categories, count, temperature?, requestId? })
+ *                → { requestId, questions, generated, failed, duplicates, loadMs, durationMs }
+ *   cancel({ requestId })
+ *   installModel({ url, sha256 }) → { modelBytes } — downloads the .task model file
+ *   setPrefetchSpec({ categories, count }) — what QuestionPrefetchJob keeps ready
+ *   takePrefetchRuns() → { runs: [{ durationMs, generated }] } — prefetch runs since the last call
+ *
+ * Events:
+ *   question      — one validated question as soon as it is generated
+ *                   { requestId, index, question }
+ *   modelProgress — installModel progress { receivedBytes, totalBytes }
+ */
+@CapacitorPlugin(name = "QuestionGenerator")
+public class QuestionGeneratorPlugin extends Plugin {
+
+    private static final String TAG = "QuestionGeneratorPlugin";
+
+    private static final String EVENT_QUESTION = "question";
+    private static final String EVENT_MODEL_PROGRESS = "modelProgress";
+
+    private static final int DOWNLOAD_BUFFER = 64 * 1024;
+    private static final long PROGRESS_STEP_BYTES = 4L * 1024 * 1024;
+
+    /** One generateBatch call waiting for MSG_DONE. */
+    private static final class Pending {
+        final PluginCall call;
+        final JSArray questions = new JSArray();
+
+        Pending(PluginCall call) {
+            this.call = call;
+        }
+    }
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Main thread only — plugin methods hop over through mainHandler
+    private final Map<String, Pending> pending = new HashMap<>();
+    private final List<Message> outbox = new ArrayList<>();
+    private Messenger service;
+    private boolean bound;
+
+    private final Messenger replies = new Messenger(new Handler(Looper.getMainLooper()) {
+        @Override
+        public void handleMessage(Message msg) {
+            Bundle data = msg.getData();
+            String requestId = data.getString(QuestionGeneratorService.KEY_REQUEST_ID);
+            Pending p = requestId != null ? pending.get(requestId) : null;
+            if (p == null) return;
+            if (msg.what == QuestionGeneratorService.MSG_QUESTION) {
+                onQuestion(requestId, p, data.getString(QuestionGeneratorService.KEY_QUESTION));
+            } else if (msg.what == QuestionGeneratorService.MSG_DONE) {
+                pending.remove(requestId);
+                onDone(requestId, p, data);
+                unbindIfIdle();
+            }
+        }
+    });
+
+    private final ServiceConnection connection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder binder) {
+            service = new Messenger(binder);
+            for (Message msg : outbox) {
+                send(msg);
+            }
+            outbox.clear();
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            // Generator process died (e.g. killed for memory) — fail what was in flight
+            service = null;
+            for (Pending p : pending.values()) {
+                p.call.reject("Question generator process died");
+            }
+            pending.clear();
+            outbox.clear();
+            unbindIfIdle();
+        }
+    };
+
+    @Override
+    protected void handleOnDestroy() {
+        pending.clear();
+        outbox.clear();
+        unbindIfIdle();
+    }
+
+    @PluginMethod()
+    public void getStatus(PluginCall call) {
+        File model = QuestionGenerator.modelFile(getContext());
+        JSObject result = new JSObject();
+        result.put("supported", QuestionGenerator.isSupported());
+        result.put("modelInstalled", QuestionGenerator.isModelInstalled(getContext()));
+        result.put("modelBytes", model.isFile() ? model.length() : 0);
+        call.resolve(result);
+    }
+
+    @PluginMethod()
+    public void generateBatch(final PluginCall call) {
+        if (!QuestionGenerator.isSupported()) {
+            call.reject("Native generation is not available");
+            return;
+        }
+        if (!QuestionGenerator.isModelInstalled(getContext())) {
+            call.reject("No question model installed");
+            return;
+        }
+        int count = call.getInt("count", 0);
+        if (count <= 0) {
+            call.reject("count must be a positive number");
+            return;
+        }
+        String[] categoryList = categories(call);
+
+        final String requestId = call.getString("requestId", UUID.randomUUID().toString());
+        final Bundle data = new Bundle();
+        data.putString(QuestionGeneratorService.KEY_REQUEST_ID, requestId);
+        data.putStringArray(QuestionGeneratorService.KEY_CATEGORIES, categoryList);
+        data.putInt(QuestionGeneratorService.KEY_COUNT, count);
+        data.putFloat(QuestionGeneratorService.KEY_TEMPERATURE, call.getFloat("temperature",
+                QuestionGeneratorService.DEFAULT_TEMPERATURE));
+
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                pending.put(requestId, new Pending(call));
+                post(QuestionGeneratorService.MSG_GENERATE, data);
+            }
+        });
+    }
+
+    @PluginMethod()
+    public void cancel(PluginCall call) {
+        final String requestId = call.getString("requestId");
+        if (requestId == null) {
+            call.reject("requestId is required");
+            return;
+        }
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!pending.containsKey(requestId)) return;
+                Bundle data = new Bundle();
+                data.putString(QuestionGeneratorService.KEY_REQUEST_ID, requestId);
+                post(QuestionGeneratorService.MSG_CANCEL, data);
+            }
+        });
+        call.resolve();
+    }
+
+    @PluginMethod()
+    public void setPrefetchSpec(PluginCall call) {
+        QuestionPrefetchJob.setSpec(getContext(), categories(call), call.getInt("count", 0));
+        call.resolve();
+    }
+
+    @PluginMethod()
+    public void takePrefetchRuns(PluginCall call) {
+        JSObject result = new JSObject();
+        result.put("runs", QuestionPrefetchJob.takeRuns(getContext()));
+        call.resolve(result);
+    }
+
+    /**
+     * Download the model file into place. Written to a temp file first and
+     * renamed only once its SHA-256 matches the pinned one, so a partial or
+     * tampered download never looks installed.
+     */
+    @PluginMethod()
+    public void installModel(final PluginCall call) {
+        if (!QuestionGenerator.isSupported()) {
+            call.reject("Native generation is not available");
+            return;
+        }
+        final String url = call.getString("url");
+        if (url == null || !url.startsWith("https://")) {
+            call.reject("An https url is required");
+            return;
+        }
+        String digest = call.getString("sha256");
+        if (digest == null || !digest.matches("[0-9a-fA-F]{64}")) {
+            call.reject("A sha256 hex digest is required");
+            return;
+        }
+        final String sha256 = digest.toLowerCase(Locale.ROOT);
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    long bytes = download(url, sha256, QuestionGenerator.modelFile(getContext()));
+                    // Prefetch is only armed with a model; arm it for the trigger already set
+                    AlarmRecord armed = TriggerScheduler.peekArmed(getContext());
+                    if (armed != null) {
+                        QuestionPrefetchJob.schedule(getContext(),
+                                FirePlan.forRecord(getContext(), armed));
+                    }
+                    JSObject result = new JSObject();
+                    result.put("modelBytes", bytes);
+                    call.resolve(result);
+                } catch (Exception e) {
+                    Log.e(TAG, "Model download failed", e);
+                    call.reject("Model download failed: " + e.getMessage());
+                }
+            }
+        }, "QuestionModelDownload").start();
+    }
+
+    // ── Internals ───────────────────────────────────────────────────────
+
+    /** The call's "categories" array; ["math"] when missing or empty, like the JS defaults. */
+    private static String[] categories(PluginCall call) {
+        JSArray categories = call.getArray("categories", new JSArray());
+        if (categories.length() == 0) {
+            return new String[] {"math"};
+        }
+        String[] list = new String[categories.length()];
+        for (int i = 0; i < list.length; i++) {
+            list[i] = categories.optString(i, "math");
+        }
+        return list;
+    }
+
+    private void onQuestion(String requestId, Pending p, String json) {
+        try {
+            JSObject question = JSObject.fromJSONObject(new JSONObject(json));
+            p.questions.put(question);
+            JSObject event = new JSObject();
+            event.put("requestId", requestId);
+            event.put("index", p.questions.length() - 1);
+            event.put("question", question);
+            notifyListeners(EVENT_QUESTION, event);
+        } catch (JSONException e) {
+            Log.w(TAG, "Dropping malformed question", e);
+        }
+    }
+
+    private void onDone(String requestId, Pending p, Bundle data) {
+        String error = data.getString(QuestionGeneratorService.KEY_ERROR);
+        if (error != null && p.questions.length() == 0) {
+            p.call.reject(error);
+            return;
+        }
+        JSObject result = new JSObject();
+        result.put("requestId", requestId);
+        result.put("questions", p.questions);
+        result.put("generated", data.getInt(QuestionGeneratorService.KEY_GENERATED));
+        result.put("failed", data.getInt(QuestionGeneratorService.KEY_FAILED));
+        result.put("duplicates", data.getInt(QuestionGeneratorService.KEY_DUPLICATES));
+        result.put("loadMs", data.getLong(QuestionGeneratorService.KEY_LOAD_MS));
+        result.put("durationMs", data.getLong(QuestionGeneratorService.KEY_DURATION_MS));
+        p.call.resolve(result);
+    }
+
+    /** Send now, or once bound. Binding creates the generator process on first use. */
+    private void post(int what, Bundle data) {
+        Message msg = Message.obtain(null, what);
+        msg.setData(data);
+        msg.replyTo = replies;
+        if (service != null) {
+            send(msg);
+            return;
+        }
+        outbox.add(msg);
+        if (!bound) {
+            bound = getContext().bindService(new Intent(getContext(), QuestionGeneratorService.class),
+                    connection, Context.BIND_AUTO_CREATE);
+            if (!bound) {
+                Log.e(TAG, "Could not bind QuestionGeneratorService");
+                connection.onServiceDisconnected(null);
+            }
+        }
+    }
+
+    private void send(Message msg) {
+        try {
+            service.send(msg);
+        } catch (RemoteException e) {
+            Log.w(TAG, "Generator service unreachable", e);
+        }
+    }
+
+    /** Unbinding lets the service (and its mapped model) go away. */
+    private void unbindIfIdle() {
+        if (!pending.isEmpty() || !bound) return;
+        bound = false;
+        service = null;
+        try {
+            getContext().unbindService(connection);
+        } catch (IllegalArgumentException e) {
+            // Never connected
+        }
+    }
+
+    private long download(String url, String sha256, File target) throws Exception {
+        File dir = target.getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IllegalStateException("Cannot create " + dir);
+        }
+        File temp = new File(target.getPath() + ".part");
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        try {
+            conn.setConnectTimeout(15000);
+            conn.setReadTimeout(30000);
+            if (conn.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                throw new IllegalStateException("HTTP " + conn.getResponseCode());
+            }
+            // int is enough: model files are a few hundred MB (-1 when unknown)
+            long total = conn.getContentLength();
+            long received = 0;
+            long nextProgress = 0;
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buf = new byte[DOWNLOAD_BUFFER];
+            try (InputStream in = conn.getInputStream();
+                 OutputStream out = new FileOutputStream(temp)) {
+                int n;
+                while ((n = in.read(buf)) > 0) {
+                    out.write(buf, 0, n);
+                    digest.update(buf, 0, n);
+                    received += n;
+                    if (received >= nextProgress) {
+                        nextProgress = received + PROGRESS_STEP_BYTES;
+                        JSObject progress = new JSObject();
+                        progress.put("receivedBytes", received);
+                        progress.put("totalBytes", total);
+                        notifyListeners(EVENT_MODEL_PROGRESS, progress);
+                    }
+                }
+            }
+            if (total > 0 && received != total) {
+                throw new IllegalStateException("Truncated download (" + received + "/" + total + ")");
+            }
+            String actual = hex(digest.digest());
+            if (!actual.equals(sha256)) {
+                throw new IllegalStateException("SHA-256 mismatch (got " + actual + ")");
+            }
+            if (!temp.renameTo(target)) {
+                throw new IllegalStateException("Cannot move model into place");
+            }
+            Log.i(TAG, "Model installed: " + received + " bytes");
+            return received;
+        } finally {
+            conn.disconnect();
+            if (temp.exists() && !temp.delete()) {
+                Log.w(TAG, "Could not delete " + temp);
+            }
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,205 @@
+package com.wakeai.app;
+
+import android.app.Service;
+import android.content.Intent;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+import android.os.Message;
+import android.os.Messenger;
+import android.os.Process;
+import android.os.RemoteException;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.json.JSONObject;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Bound service hosting {@link QuestionGenerator} in the ":generator" process.
+ *
+ * The mapped model and the inference arenas (several hundred MB) live in this
+ * process, not in the UI process next to the WebView, and go away when the
+ * last client unbinds. Clients talk to it with {@link Messenger}s:
+ *
+ *   MSG_GENERATE  client → service  requestId, categories, count, temperature
+ *   MSG_CANCEL    client → service  requestId
+ *   MSG_QUESTION  service → client  requestId, question (JSON), as each one is ready
+ *   MSG_DONE      service → client  requestId, generated, failed, duplicates,
+ *                                   loadMs, durationMs, error (null on success)
+ *
+ * Requests run one at a time on a background-priority worker, in arrival
+ * order; a cancelled request stops after its current question. A question
+ * the user has already seen ({@link SeenQuestions}) or that repeats one
+ * earlier in the same batch is generated again, up to count extra times.
+ */
+public class QuestionGeneratorService extends Service {
+
+    private static final String TAG = "QuestionGeneratorService";
+
+    static final int MSG_GENERATE = 1;
+    static final int MSG_CANCEL = 2;
+    static final int MSG_QUESTION = 3;
+    static final int MSG_DONE = 4;
+
+    static final String KEY_REQUEST_ID = "requestId";
+    static final String KEY_CATEGORIES = "categories";
+    static final String KEY_COUNT = "count";
+    static final String KEY_TEMPERATURE = "temperature";
+    static final String KEY_QUESTION = "question";
+    static final String KEY_GENERATED = "generated";
+    static final String KEY_FAILED = "failed";
+    static final String KEY_DUPLICATES = "duplicates";
+    static final String KEY_LOAD_MS = "loadMs";
+    static final String KEY_DURATION_MS = "durationMs";
+    static final String KEY_ERROR = "error";
+
+    static final float DEFAULT_TEMPERATURE = 0.8f;
+    /** Upper bound on one request, so a runaway caller can't pin the CPU for hours. */
+    static final int MAX_COUNT = 50;
+
+    private final QuestionGenerator generator = new QuestionGenerator();
+    private final Set<String> cancelled = Collections.synchronizedSet(new HashSet<String>());
+    private ExecutorService worker;
+    private Messenger messenger;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        worker = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                return new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        r.run();
+                    }
+                }, "QuestionGenerator");
+            }
+        });
+        messenger = new Messenger(new Handler(Looper.getMainLooper()) {
+            @Override
+            public void handleMessage(Message msg) {
+                Bundle data = msg.getData();
+                String requestId = data.getString(KEY_REQUEST_ID);
+                if (msg.what == MSG_GENERATE && requestId != null) {
+                    enqueue(requestId, data, msg.replyTo);
+                } else if (msg.what == MSG_CANCEL && requestId != null) {
+                    cancelled.add(requestId);
+                }
+            }
+        });
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return messenger.getBinder();
+    }
+
+    @Override
+    public void onDestroy() {
+        worker.execute(new Runnable() {
+            @Override
+            public void run() {
+                generator.close();
+            }
+        });
+        worker.shutdown();
+        super.onDestroy();
+    }
+
+    // ── Internals ───────────────────────────────────────────────────────
+
+    private void enqueue(final String requestId, Bundle data, final Messenger client) {
+        final String[] categories = data.getStringArray(KEY_CATEGORIES);
+        final int count = Math.min(MAX_COUNT, data.getInt(KEY_COUNT, 0));
+        final float temperature = data.getFloat(KEY_TEMPERATURE, DEFAULT_TEMPERATURE);
+        worker.execute(new Runnable() {
+            @Override
+            public void run() {
+                generate(requestId, categories, count, temperature, client);
+            }
+        });
+    }
+
+    /** Worker thread. */
+    private void generate(String requestId, String[] categories, int count,
+                          float temperature, Messenger client) {
+        long start = SystemClock.elapsedRealtime();
+        int generated = 0;
+        int failed = 0;
+        int duplicates = 0;
+        long loadMs = 0;
+        String error = null;
+        try {
+            loadMs = generator.load(this);
+            SeenQuestions seen = SeenQuestions.openReadOnly(this);
+            Set<Long> batch = new HashSet<>();
+            int i = 0;
+            while (i < count && !cancelled.contains(requestId)) {
+                String category = categories != null && categories.length > 0
+                        ? categories[i % categories.length] : "math";
+                JSONObject question = generator.generate(category, i, temperature);
+                if (question == null) {
+                    failed++;
+                    i++;
+                    continue;
+                }
+                long key = SeenQuestions.key(question.optString("question"));
+                if ((seen.contains(key) || !batch.add(key)) && duplicates < count) {
+                    // Same slot again
+                    duplicates++;
+                    continue;
+                }
+                i++;
+                generated++;
+                Bundle out = new Bundle();
+                out.putString(KEY_REQUEST_ID, requestId);
+                out.putString(KEY_QUESTION, question.toString());
+                if (!send(client, MSG_QUESTION, out)) {
+                    // Client is gone — nobody to stream to
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Request " + requestId + " failed", e);
+            error = e.getMessage() != null ? e.getMessage() : e.toString();
+        } finally {
+            cancelled.remove(requestId);
+        }
+
+        long durationMs = SystemClock.elapsedRealtime() - start;
+        Log.i(TAG, "Request " + requestId + ": " + generated + " generated, " + failed
+                + " failed, " + duplicates + " duplicates in " + durationMs + " ms (load " + loadMs + " ms)");
+        Bundle done = new Bundle();
+        done.putString(KEY_REQUEST_ID, requestId);
+        done.putInt(KEY_GENERATED, generated);
+        done.putInt(KEY_FAILED, failed);
+        done.putInt(KEY_DUPLICATES, duplicates);
+        done.putLong(KEY_LOAD_MS, loadMs);
+        done.putLong(KEY_DURATION_MS, durationMs);
+        done.putString(KEY_ERROR, error);
+        send(client, MSG_DONE, done);
+    }
+
+    private static boolean send(Messenger client, int what, Bundle data) {
+        if (client == null) return false;
+        Message msg = Message.obtain(null, what);
+        msg.setData(data);
+        try {
+            client.send(msg);
+            return true;
+        } catch (RemoteException e) {
+            Log.w(TAG, "Client went away", e);
+            return false;
+        }
+    }
+}
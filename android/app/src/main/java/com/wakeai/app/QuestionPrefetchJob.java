@@ -0,0 +1,437 @@
+package com.wakeai.app;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.ServiceConnection;
+import android.content.SharedPreferences;
+import android.os.BatteryManager;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.IBinder;
+import android.os.Message;
+import android.os.Messenger;
+import android.os.PersistableBundle;
+import android.os.PowerManager;
+import android.os.Process;
+import android.os.RemoteException;
+import android.text.TextUtils;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Collections;
+
+/**
+ * Deferred question pre-generation, the night before an alarm.
+ *
+ * BootReceiver.scheduleAlarm() arms two jobs next to the real trigger, both
+ * held back until {@link #WINDOW_MS} before it:
+ *   - JOB_ID_CHARGING runs once the device is charging
+ *   - JOB_ID_IDLE runs in an idle maintenance window (battery not low)
+ * Whichever runs first binds QuestionGeneratorService and tops up
+ * {@link QuestionStore} — the question cache JS reads from — to the target
+ * the JS side last set; the other then finds the store full and finishes at
+ * once. The ringing screen never waits on generation.
+ *
+ * The job backs off — and JobScheduler retries it later — when the device is
+ * already warm (thermal status or forecast headroom), when the battery is
+ * low and not charging, or when the device heats up mid-run. Charging or
+ * idle ending stops it through onStopJob. Questions are stored as each one
+ * is generated, so a stopped run keeps its progress.
+ *
+ * Each finished run is kept (durationMs, generated) until JS takes it with
+ * {@link #takeRuns} and adds it to its generation stats.
+ */
+public class QuestionPrefetchJob extends JobService {
+
+    private static final String TAG = "QuestionPrefetchJob";
+
+    // High, fixed IDs: WorkManager (pulled in by the ads SDK) allocates from 0
+    private static final int JOB_ID_CHARGING = 0x57410001;
+    private static final int JOB_ID_IDLE = 0x57410002;
+
+    private static final String EXTRA_TRIGGER_AT = "triggerAt";
+
+    /** Earliest start: this long before the alarm. */
+    static final long WINDOW_MS = 12 * 60 * 60 * 1000L;
+    /** Too late to bother — WarmUpReceiver and the JS preload cover the last minutes. */
+    private static final long MIN_LEAD_MS = 10 * 60 * 1000L;
+    private static final long BACKOFF_MS = 15 * 60 * 1000L;
+
+    private static final int MIN_BATTERY_PERCENT = 40;
+    /** getThermalHeadroom(): 1.0 is where the device starts severe throttling. */
+    private static final float MAX_THERMAL_HEADROOM = 0.8f;
+    private static final int THERMAL_FORECAST_SECONDS = 30;
+
+    private static final String PREFS_NAME = "wakeai_question_prefetch";
+    private static final String KEY_CATEGORIES = "categories";
+    private static final String KEY_TARGET = "target";
+    /** Used until JS sets the spec; matches its defaults (math, EASY session + buffer). */
+    private static final int DEFAULT_TARGET = 10;
+    private static final String KEY_RUNS = "runs";
+    /** Runs kept for JS; older ones are dropped if JS never collects them. */
+    private static final int MAX_RUNS = 16;
+
+    // Main thread only
+    private Run current;
+
+    // ── Scheduling ──────────────────────────────────────────────────────
+
+    /**
+     * Arm (or re-arm) both jobs for the plan that was just armed as the real
+     * trigger. Nothing is armed without an installed model — the jobs would
+     * only wake up to find nothing to generate with.
+     */
+    static void schedule(Context context, FirePlan plan) {
+        if (!QuestionGenerator.isSupported()) return;
+        JobScheduler js = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        if (js == null) return;
+        if (!QuestionGenerator.isModelInstalled(context)) {
+            cancel(context);
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        if (plan.triggerAt - now < MIN_LEAD_MS) {
+            cancel(context);
+            return;
+        }
+        // Re-scheduling an ID stops a running job — leave it alone if nothing changed
+        if (isPending(js, JOB_ID_CHARGING, plan.triggerAt) && isPending(js, JOB_ID_IDLE, plan.triggerAt)) {
+            return;
+        }
+
+        long latency = Math.max(0, plan.triggerAt - WINDOW_MS - now);
+        PersistableBundle extras = new PersistableBundle();
+        extras.putLong(EXTRA_TRIGGER_AT, plan.triggerAt);
+        ComponentName component = new ComponentName(context, QuestionPrefetchJob.class);
+
+        JobInfo.Builder charging = new JobInfo.Builder(JOB_ID_CHARGING, component)
+                .setMinimumLatency(latency)
+                .setRequiresCharging(true)
+                .setBackoffCriteria(BACKOFF_MS, JobInfo.BACKOFF_POLICY_EXPONENTIAL)
+                .setExtras(extras);
+        // Idle jobs ignore back-off policies; a rescheduled one waits for the next idle window
+        JobInfo.Builder idle = new JobInfo.Builder(JOB_ID_IDLE, component)
+                .setMinimumLatency(latency)
+                .setRequiresDeviceIdle(true)
+                .setExtras(extras);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            charging.setRequiresStorageNotLow(true);
+            idle.setRequiresStorageNotLow(true).setRequiresBatteryNotLow(true);
+        }
+        try {
+            js.schedule(charging.build());
+            js.schedule(idle.build());
+            Log.i(TAG, "Prefetch for " + plan.alarmId + " armed from " + (now + latency));
+        } catch (Exception e) {
+            Log.w(TAG, "Could not schedule prefetch", e);
+        }
+    }
+
+    static void cancel(Context context) {
+        JobScheduler js = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        if (js == null) return;
+        js.cancel(JOB_ID_CHARGING);
+        js.cancel(JOB_ID_IDLE);
+    }
+
+    /**
+     * How many questions to keep ready, and from which categories. Set by JS
+     * from the alarm's difficulty and the selected categories.
+     */
+    static void setSpec(Context context, String[] categories, int target) {
+        prefs(context).edit()
+                .putString(KEY_CATEGORIES, TextUtils.join(",", categories))
+                .putInt(KEY_TARGET, Math.max(0, Math.min(target, QuestionGeneratorService.MAX_COUNT)))
+                .apply();
+    }
+
+    /** Keep a finished run for JS (reply thread). */
+    static synchronized void recordRun(Context context, long durationMs, int generated) {
+        SharedPreferences prefs = prefs(context);
+        JSONArray runs = runs(prefs);
+        try {
+            runs.put(new JSONObject().put("durationMs", durationMs).put("generated", generated));
+        } catch (JSONException e) {
+            return;
+        }
+        JSONArray kept = new JSONArray();
+        for (int i = Math.max(0, runs.length() - MAX_RUNS); i < runs.length(); i++) {
+            kept.put(runs.opt(i));
+        }
+        prefs.edit().putString(KEY_RUNS, kept.toString()).apply();
+    }
+
+    /** Runs finished since the last call, oldest first: [{ durationMs, generated }]. */
+    static synchronized JSONArray takeRuns(Context context) {
+        SharedPreferences prefs = prefs(context);
+        JSONArray runs = runs(prefs);
+        if (runs.length() > 0) prefs.edit().remove(KEY_RUNS).apply();
+        return runs;
+    }
+
+    private static JSONArray runs(SharedPreferences prefs) {
+        try {
+            return new JSONArray(prefs.getString(KEY_RUNS, "[]"));
+        } catch (JSONException e) {
+            return new JSONArray();
+        }
+    }
+
+    // ── JobService ──────────────────────────────────────────────────────
+
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        long triggerAt = params.getExtras().getLong(EXTRA_TRIGGER_AT, 0);
+        if (current != null) {
+            // The other variant is already generating
+            return false;
+        }
+        if (triggerAt - System.currentTimeMillis() < MIN_LEAD_MS) {
+            Log.i(TAG, "Alarm too close, skipping prefetch");
+            return false;
+        }
+        if (!QuestionGenerator.isModelInstalled(this)) {
+            Log.i(TAG, "No question model installed, skipping prefetch");
+            return false;
+        }
+        SharedPreferences prefs = prefs(this);
+        int wanted = prefs.getInt(KEY_TARGET, DEFAULT_TARGET) - QuestionStore.get(this).size();
+        if (wanted <= 0) {
+            Log.i(TAG, "Question cache already at target");
+            return false;
+        }
+        String backOff = backOffReason();
+        if (backOff != null) {
+            Log.i(TAG, "Backing off prefetch: " + backOff);
+            jobFinished(params, true);
+            return true;
+        }
+
+        String[] categories = prefs.getString(KEY_CATEGORIES, "math").split(",");
+        current = new Run(params, categories, wanted);
+        current.start();
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // Charging or idle ended, or the job was re-armed — keep what was stored, retry later
+        if (current != null && current.params.getJobId() == params.getJobId()) {
+            Log.i(TAG, "Prefetch stopped by the system");
+            current.cancel();
+            current.release();
+            current = null;
+        }
+        return true;
+    }
+
+    // ── Internals ───────────────────────────────────────────────────────
+
+    /** One generator request, from bind to jobFinished. Main thread except the reply handler. */
+    private final class Run implements ServiceConnection {
+        final JobParameters params;
+        final String requestId;
+        final String[] categories;
+        final int wanted;
+        final HandlerThread replyThread;
+        final Messenger replies;
+        Messenger service;
+        boolean bound;
+        volatile boolean throttled;
+        PowerManager.OnThermalStatusChangedListener thermalListener;
+
+        Run(JobParameters params, String[] categories, int wanted) {
+            this.params = params;
+            this.requestId = "prefetch-" + params.getJobId() + "-" + System.currentTimeMillis();
+            this.categories = categories;
+            this.wanted = wanted;
+            replyThread = new HandlerThread(TAG, Process.THREAD_PRIORITY_BACKGROUND);
+            replyThread.start();
+            // Questions are written to disk as they arrive, off the main thread
+            replies = new Messenger(new Handler(replyThread.getLooper()) {
+                @Override
+                public void handleMessage(Message msg) {
+                    Bundle data = msg.getData();
+                    if (!requestId.equals(data.getString(QuestionGeneratorService.KEY_REQUEST_ID))) return;
+                    if (msg.what == QuestionGeneratorService.MSG_QUESTION) {
+                        store(data.getString(QuestionGeneratorService.KEY_QUESTION));
+                    } else if (msg.what == QuestionGeneratorService.MSG_DONE) {
+                        onDone(data);
+                    }
+                }
+            });
+        }
+
+        void start() {
+            Log.i(TAG, "Prefetching " + wanted + " questions (job " + params.getJobId() + ")");
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                PowerManager pm = (PowerManager) getSystemService(Context.POWER_SERVICE);
+                if (pm != null) {
+                    thermalListener = new PowerManager.OnThermalStatusChangedListener() {
+                        @Override
+                        public void onThermalStatusChanged(int status) {
+                            if (status >= PowerManager.THERMAL_STATUS_MODERATE && !throttled) {
+                                Log.i(TAG, "Thermal status " + status + " — stopping prefetch");
+                                throttled = true;
+                                cancel();
+                            }
+                        }
+                    };
+                    pm.addThermalStatusListener(thermalListener);
+                }
+            }
+            bound = bindService(new Intent(QuestionPrefetchJob.this, QuestionGeneratorService.class),
+                    this, Context.BIND_AUTO_CREATE);
+            if (!bound) {
+                Log.e(TAG, "Could not bind QuestionGeneratorService");
+                finish(true);
+            }
+        }
+
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder binder) {
+            service = new Messenger(binder);
+            Bundle data = new Bundle();
+            data.putString(QuestionGeneratorService.KEY_REQUEST_ID, requestId);
+            data.putStringArray(QuestionGeneratorService.KEY_CATEGORIES, categories);
+            data.putInt(QuestionGeneratorService.KEY_COUNT, wanted);
+            data.putFloat(QuestionGeneratorService.KEY_TEMPERATURE, QuestionGeneratorService.DEFAULT_TEMPERATURE);
+            if (!send(QuestionGeneratorService.MSG_GENERATE, data)) {
+                finish(true);
+            }
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            // Generator process died mid-run; what was stored stays
+            Log.w(TAG, "Generator process died during prefetch");
+            service = null;
+            finish(true);
+        }
+
+        /** Reply thread. */
+        private void store(String json) {
+            try {
+                JSONObject question = new JSONObject(json);
+                // The generator checked a snapshot; the user may have been shown it since
+                if (SeenQuestions.get(QuestionPrefetchJob.this).containsQuestion(question.optString("question"))) {
+                    return;
+                }
+                String category = question.optString("category", null);
+                QuestionStore.get(QuestionPrefetchJob.this).push(
+                        Collections.singletonList(category), Collections.singletonList(json));
+            } catch (JSONException e) {
+                Log.w(TAG, "Dropping malformed question", e);
+            }
+        }
+
+        /** Reply thread. */
+        private void onDone(Bundle data) {
+            final int generated = data.getInt(QuestionGeneratorService.KEY_GENERATED);
+            final String error = data.getString(QuestionGeneratorService.KEY_ERROR);
+            long durationMs = data.getLong(QuestionGeneratorService.KEY_DURATION_MS);
+            Log.i(TAG, "Prefetch done: " + generated + "/" + wanted + " in " + durationMs + " ms"
+                    + (error != null ? " (" + error + ")" : ""));
+            recordRun(QuestionPrefetchJob.this, durationMs, generated);
+            new Handler(getMainLooper()).post(new Runnable() {
+                @Override
+                public void run() {
+                    finish(throttled || error != null);
+                }
+            });
+        }
+
+        void cancel() {
+            Bundle data = new Bundle();
+            data.putString(QuestionGeneratorService.KEY_REQUEST_ID, requestId);
+            send(QuestionGeneratorService.MSG_CANCEL, data);
+        }
+
+        /** Main thread. No-op once stopped or finished. */
+        void finish(boolean reschedule) {
+            if (current != this) return;
+            current = null;
+            release();
+            jobFinished(params, reschedule);
+        }
+
+        void release() {
+            if (thermalListener != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                PowerManager pm = (PowerManager) getSystemService(Context.POWER_SERVICE);
+                if (pm != null) pm.removeThermalStatusListener(thermalListener);
+                thermalListener = null;
+            }
+            if (bound) {
+                bound = false;
+                unbindService(this);
+            }
+            service = null;
+            replyThread.quitSafely();
+        }
+
+        private boolean send(int what, Bundle data) {
+            Messenger target = service;
+            if (target == null) return false;
+            Message msg = Message.obtain(null, what);
+            msg.setData(data);
+            msg.replyTo = replies;
+            try {
+                target.send(msg);
+                return true;
+            } catch (RemoteException e) {
+                Log.w(TAG, "Generator service unreachable", e);
+                return false;
+            }
+        }
+    }
+
+    /** Why generating now would cost too much, or null when it's fine. */
+    private String backOffReason() {
+        BatteryManager bm = (BatteryManager) getSystemService(Context.BATTERY_SERVICE);
+        if (bm != null && !bm.isCharging()) {
+            int level = bm.getIntProperty(BatteryManager.BATTERY_PROPERTY_CAPACITY);
+            if (level > 0 && level < MIN_BATTERY_PERCENT) {
+                return "battery at " + level + "% and not charging";
+            }
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            PowerManager pm = (PowerManager) getSystemService(Context.POWER_SERVICE);
+            if (pm != null) {
+                int status = pm.getCurrentThermalStatus();
+                if (status >= PowerManager.THERMAL_STATUS_MODERATE) {
+                    return "thermal status " + status;
+                }
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+                    float headroom = pm.getThermalHeadroom(THERMAL_FORECAST_SECONDS);
+                    // NaN when unsupported or polled too often
+                    if (!Float.isNaN(headroom) && headroom >= MAX_THERMAL_HEADROOM) {
+                        return "thermal headroom " + headroom;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean isPending(JobScheduler js, int jobId, long triggerAt) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N) return false;
+        JobInfo job = js.getPendingJob(jobId);
+        return job != null && job.getExtras().getLong(EXTRA_TRIGGER_AT, 0) == triggerAt;
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return DeviceProtectedStorage.context(context)
+                .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}
@@ -0,0 +1,359 @@
+package com.wakeai.app;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Natively persisted question cache: one FIFO deque per category.
+ *
+ * The deques live in memory and are backed by an append-only log in
+ * no-backup storage, one record per line:
+ *   +category \t pushedAt \t question JSON   push onto the category's tail
+ *   -category                                pop the category's head
+ * so push and pop each append one short line — nothing is rewritten. Replay
+ * on first use is one pass with O(1) per record. Once the log holds far more
+ * records than live questions it is compacted: the live questions are
+ * written to a temp file in push order, which is renamed over the log.
+ *
+ * Caps are enforced here, oldest first: {@link #MAX_PER_CATEGORY} per
+ * category and {@link #MAX_TOTAL} overall. The oldest question overall is
+ * the lowest sequence number among the category heads, and there are only
+ * a handful of categories.
+ *
+ * Main process only (QuestionStorePlugin, QuestionPrefetchJob); all methods
+ * are synchronized.
+ */
+final class QuestionStore {
+
+    private static final String TAG = "QuestionStore";
+
+    private static final String FILE_NAME = "question_store.log";
+
+    static final int MAX_PER_CATEGORY = QuestionGeneratorService.MAX_COUNT;
+    static final int MAX_TOTAL = 100;
+
+    /** Compact once the log has this many records beyond twice the live count. */
+    private static final int COMPACT_SLACK = 64;
+
+    private static final char OP_PUSH = '+';
+    private static final char OP_POP = '-';
+    private static final char SEP = '\t';
+
+    private static final String DEFAULT_CATEGORY = "math";
+
+    /** One stored question. */
+    static final class Entry {
+        final long seq;
+        final String category;
+        final long pushedAt;
+        final String json;
+
+        Entry(long seq, String category, long pushedAt, String json) {
+            this.seq = seq;
+            this.category = category;
+            this.pushedAt = pushedAt;
+            this.json = json;
+        }
+    }
+
+    private static final Comparator<Entry> BY_SEQ = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry a, Entry b) {
+            return Long.compare(a.seq, b.seq);
+        }
+    };
+
+    private static QuestionStore instance;
+
+    private final File file;
+    private final Map<String, ArrayDeque<Entry>> deques = new LinkedHashMap<>();
+    private int size;
+    private long nextSeq;
+    /** Records in the log file, live or not. */
+    private int records;
+
+    static synchronized QuestionStore get(Context context) {
+        if (instance == null) {
+            instance = new QuestionStore(new File(context.getApplicationContext().getNoBackupFilesDir(), FILE_NAME));
+            instance.load();
+        }
+        return instance;
+    }
+
+    private QuestionStore(File file) {
+        this.file = file;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    /** Live count per category, categories in first-seen order. */
+    synchronized Map<String, Integer> sizes() {
+        Map<String, Integer> sizes = new LinkedHashMap<>();
+        for (Map.Entry<String, ArrayDeque<Entry>> e : deques.entrySet()) {
+            if (!e.getValue().isEmpty()) sizes.put(e.getKey(), e.getValue().size());
+        }
+        return sizes;
+    }
+
+    /**
+     * Append questions, evicting the oldest past the caps.
+     *
+     * @param categories category of each question (null → "math")
+     * @param jsons      question JSON, one line each
+     * @return number of questions evicted to stay within the caps
+     */
+    synchronized int push(List<String> categories, List<String> jsons) {
+        long now = System.currentTimeMillis();
+        StringBuilder log = new StringBuilder();
+        int evicted = 0;
+        for (int i = 0; i < jsons.size(); i++) {
+            String category = clean(categories.get(i));
+            String json = jsons.get(i).replace('\n', ' ');
+            Entry entry = new Entry(nextSeq++, category, now, json);
+            deque(category).addLast(entry);
+            size++;
+            log.append(OP_PUSH).append(category).append(SEP).append(now).append(SEP).append(json).append('\n');
+            records++;
+
+            if (deque(category).size() > MAX_PER_CATEGORY) {
+                popHead(category, log);
+                evicted++;
+            }
+            if (size > MAX_TOTAL) {
+                popHead(oldestCategory(), log);
+                evicted++;
+            }
+        }
+        append(log);
+        return evicted;
+    }
+
+    /**
+     * Remove and return up to {@code n} questions: round-robin over the
+     * requested categories, oldest first in each, then from any other
+     * category when those run out.
+     */
+    synchronized List<String> take(int n, String[] categories) {
+        List<String> taken = new ArrayList<>();
+        StringBuilder log = new StringBuilder();
+        boolean progress = true;
+        while (taken.size() < n && progress) {
+            progress = false;
+            for (String category : categories) {
+                if (taken.size() >= n) break;
+                Entry e = popHead(category, log);
+                if (e != null) {
+                    taken.add(e.json);
+                    progress = true;
+                }
+            }
+        }
+        while (taken.size() < n && size > 0) {
+            taken.add(popHead(oldestCategory(), log).json);
+        }
+        append(log);
+        return taken;
+    }
+
+    /** Up to {@code n} questions in push order, without removing them. */
+    synchronized List<String> peek(int n) {
+        List<Entry> all = new ArrayList<>(size);
+        for (ArrayDeque<Entry> deque : deques.values()) {
+            all.addAll(deque);
+        }
+        Collections.sort(all, BY_SEQ);
+        List<String> out = new ArrayList<>(Math.min(n, all.size()));
+        for (int i = 0; i < all.size() && i < n; i++) {
+            out.add(all.get(i).json);
+        }
+        return out;
+    }
+
+    /** Drop questions pushed more than {@code maxAgeMs} ago. Deques are oldest-first. */
+    synchronized int prune(long maxAgeMs) {
+        long cutoff = System.currentTimeMillis() - maxAgeMs;
+        StringBuilder log = new StringBuilder();
+        int removed = 0;
+        for (String category : new ArrayList<>(deques.keySet())) {
+            ArrayDeque<Entry> deque = deques.get(category);
+            while (!deque.isEmpty() && deque.peekFirst().pushedAt < cutoff) {
+                popHead(category, log);
+                removed++;
+            }
+        }
+        append(log);
+        return removed;
+    }
+
+    synchronized void clear() {
+        deques.clear();
+        size = 0;
+        records = 0;
+        if (file.exists() && !file.delete()) {
+            Log.w(TAG, "Could not delete " + file);
+        }
+    }
+
+    // ── Internals ───────────────────────────────────────────────────────
+
+    private ArrayDeque<Entry> deque(String category) {
+        ArrayDeque<Entry> deque = deques.get(category);
+        if (deque == null) {
+            deque = new ArrayDeque<>();
+            deques.put(category, deque);
+        }
+        return deque;
+    }
+
+    /** Pop a category's head and log it; null when the category is empty. */
+    private Entry popHead(String category, StringBuilder log) {
+        ArrayDeque<Entry> deque = deques.get(category);
+        Entry e = deque != null ? deque.pollFirst() : null;
+        if (e == null) return null;
+        size--;
+        log.append(OP_POP).append(category).append('\n');
+        records++;
+        return e;
+    }
+
+    /** Category holding the oldest live question; only called when size > 0. */
+    private String oldestCategory() {
+        String oldest = null;
+        long oldestSeq = Long.MAX_VALUE;
+        for (Map.Entry<String, ArrayDeque<Entry>> e : deques.entrySet()) {
+            Entry head = e.getValue().peekFirst();
+            if (head != null && head.seq < oldestSeq) {
+                oldestSeq = head.seq;
+                oldest = e.getKey();
+            }
+        }
+        return oldest;
+    }
+
+    private void append(StringBuilder log) {
+        if (log.length() == 0) return;
+        if (records > 2 * size + COMPACT_SLACK) {
+            compact();
+            return;
+        }
+        try (OutputStream out = new FileOutputStream(file, true)) {
+            out.write(log.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            Log.w(TAG, "Could not append to question log", e);
+        }
+    }
+
+    /** Rewrite the log as the live questions only, in push order. */
+    private void compact() {
+        List<Entry> live = new ArrayList<>(size);
+        for (ArrayDeque<Entry> deque : deques.values()) {
+            live.addAll(deque);
+        }
+        Collections.sort(live, BY_SEQ);
+        StringBuilder log = new StringBuilder();
+        for (Entry e : live) {
+            log.append(OP_PUSH).append(e.category).append(SEP).append(e.pushedAt)
+                    .append(SEP).append(e.json).append('\n');
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(temp)) {
+            out.write(log.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            Log.w(TAG, "Could not compact question log", e);
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            Log.w(TAG, "Could not replace question log");
+            return;
+        }
+        Log.i(TAG, "Compacted " + records + " records to " + live.size());
+        records = live.size();
+    }
+
+    private void load() {
+        if (!file.isFile()) return;
+        long startNs = System.nanoTime();
+        // Every complete record ends in '\n'; without one the last record
+        // (push or pop) was cut short and is not replayed at all.
+        boolean tornTail = !endsWithNewline(file);
+        boolean torn = tornTail;
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line = in.readLine();
+            while (line != null) {
+                String next = in.readLine();
+                if (next == null && tornTail) break;
+                records++;
+                if (!replay(line)) torn = true;
+                line = next;
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Could not read question log", e);
+        }
+        if (torn) {
+            // A write cut short by a crash; rewrite so later appends start on a clean line
+            Log.w(TAG, "Skipped damaged records in question log");
+            compact();
+        }
+        Log.i(TAG, size + " questions from " + records + " records in "
+                + (System.nanoTime() - startNs) / 1_000_000 + " ms");
+    }
+
+    private static boolean endsWithNewline(File file) {
+        long length = file.length();
+        if (length == 0) return true;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            raf.seek(length - 1);
+            return raf.read() == '\n';
+        } catch (Exception e) {
+            Log.w(TAG, "Could not check question log tail", e);
+            return true;
+        }
+    }
+
+    /** Apply one log record. @return false if the record is damaged (and skipped). */
+    private boolean replay(String line) {
+        if (line.isEmpty()) return true;
+        char op = line.charAt(0);
+        if (op == OP_POP) {
+            ArrayDeque<Entry> deque = deques.get(line.substring(1));
+            if (deque != null && deque.pollFirst() != null) size--;
+            return true;
+        }
+        int a = line.indexOf(SEP);
+        int b = a >= 0 ? line.indexOf(SEP, a + 1) : -1;
+        if (op != OP_PUSH || b < 0 || !line.endsWith("}")) return false;
+        try {
+            long pushedAt = Long.parseLong(line.substring(a + 1, b));
+            String category = line.substring(1, a);
+            deque(category).addLast(new Entry(nextSeq++, category, pushedAt, line.substring(b + 1)));
+            size++;
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static String clean(String category) {
+        if (category == null || category.isEmpty()) return DEFAULT_CATEGORY;
+        return category.replace('\t', ' ').replace('\n', ' ');
+    }
+}
@@ -0,0 +1,160 @@
+package com.wakeai.app;
+
+import android.util.Log;
+
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import com.getcapacitor.Plugin;
+import com.getcapacitor.PluginCall;
+import com.getcapacitor.PluginMethod;
+import com.getcapacitor.annotation.CapacitorPlugin;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Capacitor plugin over {@link QuestionStore}, the native question cache, and
+ * {@link SeenQuestions}, the index of questions the user has been shown.
+ *
+ * JS API:
+ *   push({ questions })              → { size, evicted, skipped } — seen questions are skipped
+ *   take({ count, categories })      → { questions } — removed from the store
+ *   peek({ count? })                 → { questions } — oldest first, not removed
+ *   size()                           → { size, categories: { [category]: n } }
+ *   prune({ maxAgeMs })              → { removed, size }
+ *   clear()
+ *   markSeen({ questions })          — record questions as shown to the user
+ *   checkSeen({ questions })         → { seen: [boolean] }, one per question
+ *
+ * take() hands a whole alarm session its questions in one bridge call.
+ */
+@CapacitorPlugin(name = "QuestionStore")
+public class QuestionStorePlugin extends Plugin {
+
+    private static final String TAG = "QuestionStorePlugin";
+
+    @PluginMethod()
+    public void push(PluginCall call) {
+        JSArray questions = call.getArray("questions", new JSArray());
+        SeenQuestions seen = SeenQuestions.get(getContext());
+        List<String> categories = new ArrayList<>(questions.length());
+        List<String> jsons = new ArrayList<>(questions.length());
+        int skipped = 0;
+        for (int i = 0; i < questions.length(); i++) {
+            JSONObject q = questions.optJSONObject(i);
+            if (q == null) continue;
+            if (seen.containsQuestion(q.optString("question"))) {
+                skipped++;
+                continue;
+            }
+            categories.add(q.optString("category", null));
+            jsons.add(q.toString());
+        }
+        QuestionStore store = store();
+        int evicted = store.push(categories, jsons);
+        JSObject result = new JSObject();
+        result.put("size", store.size());
+        result.put("evicted", evicted);
+        result.put("skipped", skipped);
+        call.resolve(result);
+    }
+
+    @PluginMethod()
+    public void take(PluginCall call) {
+        int count = call.getInt("count", 1);
+        JSArray categories = call.getArray("categories", new JSArray());
+        String[] list = new String[categories.length()];
+        for (int i = 0; i < list.length; i++) {
+            list[i] = categories.optString(i, "");
+        }
+        resolveQuestions(call, store().take(Math.max(0, count), list));
+    }
+
+    @PluginMethod()
+    public void peek(PluginCall call) {
+        resolveQuestions(call, store().peek(call.getInt("count", Integer.MAX_VALUE)));
+    }
+
+    @PluginMethod()
+    public void size(PluginCall call) {
+        QuestionStore store = store();
+        JSObject categories = new JSObject();
+        for (Map.Entry<String, Integer> e : store.sizes().entrySet()) {
+            categories.put(e.getKey(), e.getValue());
+        }
+        JSObject result = new JSObject();
+        result.put("size", store.size());
+        result.put("categories", categories);
+        call.resolve(result);
+    }
+
+    @PluginMethod()
+    public void prune(PluginCall call) {
+        Long maxAgeMs = call.getLong("maxAgeMs");
+        if (maxAgeMs == null || maxAgeMs < 0) {
+            call.reject("maxAgeMs is required");
+            return;
+        }
+        QuestionStore store = store();
+        JSObject result = new JSObject();
+        result.put("removed", store.prune(maxAgeMs));
+        result.put("size", store.size());
+        call.resolve(result);
+    }
+
+    @PluginMethod()
+    public void clear(PluginCall call) {
+        store().clear();
+        call.resolve();
+    }
+
+    @PluginMethod()
+    public void markSeen(PluginCall call) {
+        JSArray questions = call.getArray("questions", new JSArray());
+        long[] keys = new long[questions.length()];
+        for (int i = 0; i < keys.length; i++) {
+            JSONObject q = questions.optJSONObject(i);
+            keys[i] = SeenQuestions.key(q != null ? q.optString("question") : "");
+        }
+        SeenQuestions.get(getContext()).addAll(keys);
+        call.resolve();
+    }
+
+    @PluginMethod()
+    public void checkSeen(PluginCall call) {
+        JSArray questions = call.getArray("questions", new JSArray());
+        SeenQuestions seen = SeenQuestions.get(getContext());
+        JSArray flags = new JSArray();
+        for (int i = 0; i < questions.length(); i++) {
+            JSONObject q = questions.optJSONObject(i);
+            flags.put(q != null && seen.containsQuestion(q.optString("question")));
+        }
+        JSObject result = new JSObject();
+        result.put("seen", flags);
+        call.resolve(result);
+    }
+
+    // ── Internals ───────────────────────────────────────────────────────
+
+    private QuestionStore store() {
+        return QuestionStore.get(getContext());
+    }
+
+    private static void resolveQuestions(PluginCall call, List<String> jsons) {
+        JSArray questions = new JSArray();
+        for (String json : jsons) {
+            try {
+                questions.put(new JSONObject(json));
+            } catch (JSONException e) {
+                Log.w(TAG, "Dropping malformed stored question", e);
+            }
+        }
+        JSObject result = new JSObject();
+        result.put("questions", questions);
+        call.resolve(result);
+    }
+}
@@ -0,0 +1,124 @@
+package com.wakeai.app;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.TreeSet;
+
+/**
+ * Immutable repeat rule of one alarm: the weekdays it rings on plus local
+ * dates to skip. Stored inside AlarmRecord so the native layer can compute
+ * every next occurrence itself.
+ *
+ * Occurrences are wall-clock times ("HH:mm") in the device's current time
+ * zone, like any alarm clock: they follow the user across zones, and a DST
+ * change never shifts 07:00 to 06:00 or 08:00. A local time that doesn't
+ * exist (spring-forward gap) rings at the first valid instant after it; a
+ * repeated one (fall-back) rings once.
+ */
+final class Recurrence {
+
+    /** Days are bits 0 (Sunday) … 6 (Saturday), matching JS Date.getDay(). */
+    static final int EVERY_DAY = 0x7F;
+
+    /** Never rings again — a one-shot alarm. */
+    static final Recurrence NONE = new Recurrence(0, Collections.<String>emptyList());
+
+    /** Upper bound on the next-occurrence search (a year plus skips). */
+    private static final int MAX_DAYS_AHEAD = 400;
+
+    final int dayMask;
+    /** "yyyy-MM-dd" local dates, sorted. */
+    final List<String> skipDates;
+
+    Recurrence(int dayMask, List<String> skipDates) {
+        this.dayMask = dayMask & EVERY_DAY;
+        List<String> sorted = new ArrayList<>(new TreeSet<>(skipDates));
+        this.skipDates = Collections.unmodifiableList(sorted);
+    }
+
+    boolean repeats() {
+        return dayMask != 0;
+    }
+
+    /**
+     * First occurrence of {@code time} strictly after {@code afterMillis}.
+     *
+     * @param time "HH:mm"
+     * @return epoch millis, or -1 for a one-shot rule, a malformed time, or
+     *         when every candidate day within the search bound is skipped.
+     */
+    long nextAfter(String time, long afterMillis, TimeZone zone) {
+        if (!repeats()) return -1;
+        int hour;
+        int minute;
+        try {
+            int colon = time.indexOf(':');
+            hour = Integer.parseInt(time.substring(0, colon));
+            minute = Integer.parseInt(time.substring(colon + 1));
+        } catch (RuntimeException e) {
+            return -1;
+        }
+
+        Calendar day = Calendar.getInstance(zone);
+        day.setTimeInMillis(afterMillis);
+        for (int i = 0; i < MAX_DAYS_AHEAD; i++) {
+            if (i > 0) day.add(Calendar.DAY_OF_MONTH, 1);
+            if ((dayMask & (1 << (day.get(Calendar.DAY_OF_WEEK) - Calendar.SUNDAY))) == 0) continue;
+            if (skipDates.contains(dateKey(day))) continue;
+
+            // Lenient: a time inside a DST gap rolls forward to a valid instant
+            Calendar at = (Calendar) day.clone();
+            at.set(Calendar.HOUR_OF_DAY, hour);
+            at.set(Calendar.MINUTE, minute);
+            at.set(Calendar.SECOND, 0);
+            at.set(Calendar.MILLISECOND, 0);
+            long millis = at.getTimeInMillis();
+            if (millis > afterMillis) return millis;
+        }
+        return -1;
+    }
+
+    /** This rule without skip dates before {@code todayKey} — they can never matter again. */
+    Recurrence withoutSkipsBefore(String todayKey) {
+        List<String> kept = new ArrayList<>();
+        for (String date : skipDates) {
+            if (date.compareTo(todayKey) >= 0) kept.add(date);
+        }
+        return kept.size() == skipDates.size() ? this : new Recurrence(dayMask, kept);
+    }
+
+    /** "mask" or "mask;date,date" — never contains '|'. */
+    String encode() {
+        StringBuilder sb = new StringBuilder().append(dayMask);
+        for (int i = 0; i < skipDates.size(); i++) {
+            sb.append(i == 0 ? ';' : ',').append(skipDates.get(i));
+        }
+        return sb.toString();
+    }
+
+    static Recurrence decode(String raw) {
+        if (raw == null || raw.isEmpty()) return NONE;
+        int semi = raw.indexOf(';');
+        try {
+            int mask = Integer.parseInt(semi < 0 ? raw : raw.substring(0, semi));
+            List<String> skips = new ArrayList<>();
+            if (semi >= 0) {
+                for (String date : raw.substring(semi + 1).split(",")) {
+                    if (!date.isEmpty()) skips.add(date);
+                }
+            }
+            return mask == 0 && skips.isEmpty() ? NONE : new Recurrence(mask, skips);
+        } catch (NumberFormatException e) {
+            return NONE;
+        }
+    }
+
+    static String dateKey(Calendar day) {
+        return String.format(Locale.US, "%04d-%02d-%02d", day.get(Calendar.YEAR),
+                day.get(Calendar.MONTH) + 1, day.get(Calendar.DAY_OF_MONTH));
+    }
+}
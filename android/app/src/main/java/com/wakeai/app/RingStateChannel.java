@@ -0,0 +1,279 @@
+package com.wakeai.app;
+
+import android.app.ActivityManager;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.util.Log;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ring state shared from the ":alarm" process to the main process.
+ *
+ * AlarmService and its AlarmStateBus / RingStateMachine live in the alarm
+ * process; the plugin, MainActivity and the overlay live in the main one.
+ * The alarm process is the authority on ringing, and every bus event or ring
+ * phase change there is broadcast within the package, guarded by a signature
+ * permission, on one background thread in publish order, so the ring path
+ * never waits on IPC. The same thread commits the latest state to a private
+ * device-protected prefs file, read back only by a restarted alarm process
+ * ({@link #interruptedRing}).
+ *
+ * The main process re-publishes each received event on its own bus. When it
+ * starts mid-ring (alarm cold start, WebView crash) it asks the running alarm
+ * process for its current state through AlarmProcessProvider, on a background
+ * thread; the answer is applied when it arrives.
+ */
+final class RingStateChannel {
+
+    private static final String TAG = "RingStateChannel";
+
+    private static final String ACTION_STATE = "com.wakeai.app.ALARM_STATE";
+    private static final String PERMISSION_SUFFIX = ".permission.ALARM_STATE";
+
+    private static final String PREFS_NAME = "wakeai_ring_state";
+
+    // Prefs keys double as broadcast extras and provider results
+    private static final String KEY_PID = "pid";
+    private static final String KEY_SEQ = "seq";
+    private static final String KEY_STATE = "state";
+    private static final String KEY_ALARM_ID = "alarmId";
+    private static final String KEY_TRIGGER_AT = "triggerAt";
+    private static final String KEY_AT = "at";
+    private static final String KEY_PHASE = "phase";
+    private static final String KEY_DUPLICATE_STARTS = "duplicateStarts";
+    private static final String KEY_LATE_STARTS = "lateStartsRejected";
+
+    // ── Alarm process ───────────────────────────────────────────────────
+
+    private static Handler writer;
+
+    /** Alarm process: mirror every local bus event and ring transition. */
+    static synchronized void startPublishing(Context context) {
+        if (writer != null) return;
+        final Context app = context.getApplicationContext();
+        HandlerThread thread = new HandlerThread(TAG, Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        writer = new Handler(thread.getLooper());
+
+        AlarmStateBus.addListener(new AlarmStateBus.Listener() {
+            @Override
+            public void onAlarmState(AlarmStateBus.Event event) {
+                post(app, event, RingStateMachine.current().phase);
+            }
+        });
+        RingStateMachine.addObserver(new RingStateMachine.Observer() {
+            @Override
+            public void onTransition(RingStateMachine.Ring from, RingStateMachine.Ring to) {
+                post(app, AlarmStateBus.latest(), to.phase);
+            }
+        });
+    }
+
+    /** Alarm process: the current state, as broadcast (AlarmProcessProvider). */
+    static Bundle snapshot() {
+        return state(AlarmStateBus.latest(), RingStateMachine.current().phase,
+                RingStateMachine.duplicateStarts.get(), RingStateMachine.lateStartsRejected.get());
+    }
+
+    /**
+     * Alarm process, restarted by START_STICKY: the ring that was in progress
+     * when the previous alarm process died, or null if it had ended. Its
+     * alarmId is null when the file had not caught up with the ring yet.
+     */
+    static AlarmStateBus.Event interruptedRing(Context context) {
+        SharedPreferences prefs = prefs(context);
+        int phase = prefs.getInt(KEY_PHASE, RingStateMachine.IDLE);
+        if (phase != RingStateMachine.STARTING && phase != RingStateMachine.RINGING) return null;
+        boolean known = AlarmStateBus.STATE_RINGING.equals(prefs.getString(KEY_STATE, null));
+        return new AlarmStateBus.Event(prefs.getLong(KEY_SEQ, 0), AlarmStateBus.STATE_RINGING,
+                known ? prefs.getString(KEY_ALARM_ID, null) : null,
+                known ? prefs.getLong(KEY_TRIGGER_AT, 0) : 0,
+                prefs.getLong(KEY_AT, 0), true);
+    }
+
+    private static void post(final Context app, final AlarmStateBus.Event event, final int phase) {
+        final Bundle state = state(event, phase, RingStateMachine.duplicateStarts.get(),
+                RingStateMachine.lateStartsRejected.get());
+        writer.post(new Runnable() {
+            @Override
+            public void run() {
+                Intent intent = new Intent(ACTION_STATE).setPackage(app.getPackageName());
+                intent.putExtras(state);
+                try {
+                    app.sendBroadcast(intent, permission(app));
+                    // commit(): the process may die right after; a restart must find it
+                    prefs(app).edit()
+                            .putLong(KEY_SEQ, event.seq)
+                            .putString(KEY_STATE, event.state)
+                            .putString(KEY_ALARM_ID, event.alarmId)
+                            .putLong(KEY_TRIGGER_AT, event.triggerAt)
+                            .putLong(KEY_AT, event.at)
+                            .putInt(KEY_PHASE, phase)
+                            .commit();
+                } catch (Exception e) {
+                    Log.w(TAG, "Could not share ring state", e);
+                }
+            }
+        });
+    }
+
+    private static Bundle state(AlarmStateBus.Event event, int phase,
+                                long duplicateStarts, long lateStarts) {
+        Bundle state = new Bundle();
+        state.putInt(KEY_PID, Process.myPid());
+        state.putLong(KEY_SEQ, event.seq);
+        state.putString(KEY_STATE, event.state);
+        state.putString(KEY_ALARM_ID, event.alarmId);
+        state.putLong(KEY_TRIGGER_AT, event.triggerAt);
+        state.putLong(KEY_AT, event.at);
+        state.putInt(KEY_PHASE, phase);
+        state.putLong(KEY_DUPLICATE_STARTS, duplicateStarts);
+        state.putLong(KEY_LATE_STARTS, lateStarts);
+        return state;
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        // Written and read by the alarm process only
+        return DeviceProtectedStorage.context(context)
+                .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    // ── Main process ────────────────────────────────────────────────────
+
+    // Latest state seen from the alarm process; guarded by the class lock
+    private static int remotePid;
+    private static long remoteSeq;
+    private static int remotePhase = RingStateMachine.IDLE;
+    private static long remoteDuplicateStarts;
+    private static long remoteLateStarts;
+    private static boolean receiving;
+    /** Released once the initial state has been fetched, or found not to exist. */
+    private static final CountDownLatch initialState = new CountDownLatch(1);
+
+    /** Main process: follow the alarm process, starting from its retained state. */
+    static void startReceiving(Context context) {
+        final Context app = context.getApplicationContext();
+        synchronized (RingStateChannel.class) {
+            if (receiving) return;
+            receiving = true;
+        }
+
+        BroadcastReceiver receiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context c, Intent intent) {
+                apply(intent.getExtras());
+            }
+        };
+        IntentFilter filter = new IntentFilter(ACTION_STATE);
+        // Registered before the alarm process is asked, so nothing falls in between
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+            app.registerReceiver(receiver, filter, permission(app), null,
+                    Context.RECEIVER_NOT_EXPORTED);
+        } else {
+            app.registerReceiver(receiver, filter, permission(app), null);
+        }
+
+        // Off the main thread: this runs from Application.onCreate, and both
+        // steps are binder calls. apply() drops the answer if a newer
+        // broadcast got here first.
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    // Only a running alarm process can be ringing; asking would start a dead one
+                    if (!isAlarmProcessAlive(app)) return;
+                    apply(AlarmProcessProvider.call(app, AlarmProcessProvider.METHOD_RING_STATE, null));
+                } finally {
+                    initialState.countDown();
+                }
+            }
+        }, TAG).start();
+    }
+
+    /**
+     * Wait up to {@code timeoutMs} for the initial state asked for in
+     * {@link #startReceiving}. For the rare caller that must know whether a
+     * ring is active right after a cold start; returns at once afterwards.
+     */
+    static void awaitInitialState(long timeoutMs) {
+        try {
+            initialState.await(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Ring phase of the alarm process (RingStateMachine.IDLE … STOPPING). */
+    static synchronized int remotePhase() {
+        return remotePhase;
+    }
+
+    /** True while the alarm process is STARTING or RINGING. */
+    static synchronized boolean isRemoteActive() {
+        return remotePhase == RingStateMachine.STARTING || remotePhase == RingStateMachine.RINGING;
+    }
+
+    static synchronized long remoteDuplicateStarts() {
+        return remoteDuplicateStarts;
+    }
+
+    static synchronized long remoteLateStartsRejected() {
+        return remoteLateStarts;
+    }
+
+    // ── Internals ───────────────────────────────────────────────────────
+
+    private static synchronized void apply(Bundle extras) {
+        if (extras == null) return;
+        String state = extras.getString(KEY_STATE);
+        if (state == null) return;
+        int pid = extras.getInt(KEY_PID);
+        long seq = extras.getLong(KEY_SEQ);
+        // A restarted alarm process counts from 1 again
+        if (pid == remotePid && seq < remoteSeq) return;
+        // Phase-only updates resend the latest event (or seq 0 before any)
+        boolean fresh = seq > 0 && (pid != remotePid || seq > remoteSeq);
+        remotePid = pid;
+        remoteSeq = seq;
+        remotePhase = extras.getInt(KEY_PHASE, RingStateMachine.IDLE);
+        remoteDuplicateStarts = extras.getLong(KEY_DUPLICATE_STARTS);
+        remoteLateStarts = extras.getLong(KEY_LATE_STARTS);
+        if (fresh) {
+            AlarmStateBus.publishRemote(state, extras.getString(KEY_ALARM_ID),
+                    extras.getLong(KEY_TRIGGER_AT), extras.getLong(KEY_AT));
+        }
+    }
+
+    /**
+     * Whether the ":alarm" process is running. Main-process calls and
+     * broadcasts that only matter to a live alarm process check this first,
+     * since either would otherwise start a dead one.
+     */
+    static boolean isAlarmProcessAlive(Context context) {
+        ActivityManager am = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        List<ActivityManager.RunningAppProcessInfo> running =
+                am != null ? am.getRunningAppProcesses() : null;
+        if (running == null) return false;
+        for (ActivityManager.RunningAppProcessInfo info : running) {
+            if (info.processName.endsWith(WakeAIApplication.ALARM_PROCESS_SUFFIX)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String permission(Context context) {
+        return context.getPackageName() + PERMISSION_SUFFIX;
+    }
+}
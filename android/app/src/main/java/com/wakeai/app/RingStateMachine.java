@@ -0,0 +1,192 @@
+package com.wakeai.app;
+
+import android.util.Log;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lock-free lifecycle of the one alarm that may ring at a time.
+ *
+ *   IDLE ──tryStart──▶ STARTING ──markRinging──▶ RINGING
+ *     ▲                   │                         │
+ *     └──markIdle── STOPPING ◀──────beginStop───────┘
+ *
+ * Each ring is keyed by alarm ID and fire epoch (the scheduled triggerAt).
+ * Every transition is a single compareAndSet on an immutable {@link Ring}, so
+ * AlarmReceiver, JS ring() and a START_STICKY restart racing
+ * ACTION_STOP_ALARM resolve to exactly one winner:
+ *   - a start for the ringing fire while STARTING / RINGING is a duplicate
+ *     and does nothing
+ *   - a start for the fire being stopped, or the one that was just stopped,
+ *     is late and is rejected
+ *   - a start for a different alarm takes over: it goes straight to STARTING
+ *     and the earlier ring counts as stopped ({@link Ring#replaced})
+ * A start with an unknown ID (or a ring with one) is taken as the same alarm;
+ * an unknown epoch (0) matches any fire of that alarm.
+ *
+ * Transitions are reported to {@link Observer}s and counted for metrics.
+ */
+final class RingStateMachine {
+
+    private static final String TAG = "RingStateMachine";
+
+    static final int IDLE = 0;
+    static final int STARTING = 1;
+    static final int RINGING = 2;
+    static final int STOPPING = 3;
+
+    static final String[] PHASE_NAMES = {"idle", "starting", "ringing", "stopping"};
+
+    /** One immutable state. Identity matters: transitions CAS on the exact instance. */
+    static final class Ring {
+        final int phase;
+        final String alarmId;   // null when unknown (JS ring(), restart with nothing stored)
+        final long epoch;       // scheduled triggerAt, 0 when unknown
+        /** STARTING only: the ring of another alarm this start took over, else null. */
+        final Ring replaced;
+
+        Ring(int phase, String alarmId, long epoch) {
+            this(phase, alarmId, epoch, null);
+        }
+
+        private Ring(int phase, String alarmId, long epoch, Ring replaced) {
+            this.phase = phase;
+            this.alarmId = alarmId;
+            this.epoch = epoch;
+            this.replaced = replaced;
+        }
+
+        boolean isSameFire(String otherId, long otherEpoch) {
+            return epoch > 0 && epoch == otherEpoch
+                    && alarmId != null && alarmId.equals(otherId);
+        }
+
+        /** Could a start for (otherId, otherEpoch) be this ring's fire? */
+        boolean isSameAlarm(String otherId, long otherEpoch) {
+            if (alarmId == null || otherId == null) return true;
+            return alarmId.equals(otherId)
+                    && (epoch == 0 || otherEpoch == 0 || epoch == otherEpoch);
+        }
+
+        Ring to(int next) {
+            return new Ring(next, alarmId, epoch);
+        }
+    }
+
+    interface Observer {
+        void onTransition(Ring from, Ring to);
+    }
+
+    private static final Ring IDLE_STATE = new Ring(IDLE, null, 0);
+
+    private static final AtomicReference<Ring> state = new AtomicReference<>(IDLE_STATE);
+    /** Last ring that reached STOPPING — late starts for the same fire are rejected. */
+    private static final AtomicReference<Ring> lastStopped = new AtomicReference<>();
+    private static final CopyOnWriteArrayList<Observer> observers = new CopyOnWriteArrayList<>();
+
+    static final AtomicLong duplicateStarts = new AtomicLong();
+    static final AtomicLong lateStartsRejected = new AtomicLong();
+
+    private RingStateMachine() {}
+
+    static void addObserver(Observer observer) {
+        observers.addIfAbsent(observer);
+    }
+
+    static void removeObserver(Observer observer) {
+        observers.remove(observer);
+    }
+
+    static Ring current() {
+        return state.get();
+    }
+
+    /** True while STARTING or RINGING. */
+    static boolean isActive() {
+        int phase = state.get().phase;
+        return phase == STARTING || phase == RINGING;
+    }
+
+    /**
+     * IDLE → STARTING, or another alarm's ring → STARTING (take-over).
+     *
+     * @return the STARTING state to pass to later transitions, or null if this
+     *         start is a duplicate or arrived too late. After a take-over its
+     *         {@link Ring#replaced} is the earlier ring, which the caller ends.
+     */
+    static Ring tryStart(String alarmId, long epoch) {
+        while (true) {
+            Ring cur = state.get();
+            Ring next;
+            if (cur.phase != IDLE && !cur.isSameAlarm(alarmId, epoch)) {
+                next = new Ring(STARTING, alarmId, epoch, cur.to(cur.phase));
+                if (!transition(cur, next)) continue;
+                if (cur.phase != STOPPING) lastStopped.set(cur.to(STOPPING));
+                Log.i(TAG, "Start for " + alarmId + "@" + epoch + " takes over from "
+                        + cur.alarmId + " (" + PHASE_NAMES[cur.phase] + ")");
+                return next;
+            }
+            if (cur.phase == STARTING || cur.phase == RINGING) {
+                duplicateStarts.incrementAndGet();
+                Log.i(TAG, "Duplicate start for " + alarmId + " — already " + PHASE_NAMES[cur.phase]);
+                return null;
+            }
+            Ring stopped = lastStopped.get();
+            if (cur.phase == STOPPING || (stopped != null && stopped.isSameFire(alarmId, epoch))) {
+                lateStartsRejected.incrementAndGet();
+                Log.i(TAG, "Late start for " + alarmId + "@" + epoch + " rejected");
+                return null;
+            }
+            next = new Ring(STARTING, alarmId, epoch);
+            if (transition(cur, next)) return next;
+        }
+    }
+
+    /**
+     * STARTING → RINGING, once audio is playing.
+     *
+     * @return false if the ring was stopped in the meantime.
+     */
+    static boolean markRinging(Ring starting) {
+        return starting != null && transition(starting, starting.to(RINGING));
+    }
+
+    /**
+     * STARTING / RINGING → STOPPING.
+     *
+     * @return the STOPPING state for {@link #markIdle}, or null if nothing was
+     *         active (already stopped, or a concurrent stop won).
+     */
+    static Ring beginStop() {
+        while (true) {
+            Ring cur = state.get();
+            if (cur.phase != STARTING && cur.phase != RINGING) return null;
+            Ring next = cur.to(STOPPING);
+            if (transition(cur, next)) {
+                lastStopped.set(next);
+                return next;
+            }
+        }
+    }
+
+    /** STOPPING → IDLE, once cleanup has run. A no-op once another alarm took over. */
+    static void markIdle(Ring stopping) {
+        if (stopping != null) {
+            transition(stopping, IDLE_STATE);
+        }
+    }
+
+    private static boolean transition(Ring from, Ring to) {
+        if (!state.compareAndSet(from, to)) return false;
+        for (Observer observer : observers) {
+            try {
+                observer.onTransition(from, to);
+            } catch (Exception e) {
+                Log.e(TAG, "Ring observer failed", e);
+            }
+        }
+        return true;
+    }
+}
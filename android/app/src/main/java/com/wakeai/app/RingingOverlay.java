@@ -0,0 +1,158 @@
+package com.wakeai.app;
+
+import android.app.Activity;
+import android.content.res.ColorStateList;
+import android.graphics.Color;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.TypedValue;
+import android.view.Gravity;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+import android.widget.LinearLayout;
+import android.widget.ProgressBar;
+import android.widget.TextView;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Native ringing screen shown over the WebView on an alarm cold start.
+ *
+ * Until the bridge and the React app are up, the activity would otherwise be
+ * blank while the alarm is already sounding. The overlay is a plain view tree
+ * (no inflation, no resources) added on top of the bridge layout, so it is in
+ * the first frame:
+ *   - alarm time (from the ringing AlarmStateBus event)
+ *   - elapsed counter, ticking once a second
+ *   - spinner while the challenge loads
+ *
+ * {@link #hide()} fades it out once JS reports the ringing screen rendered,
+ * or when the ring ends before that.
+ */
+final class RingingOverlay {
+
+    private static final String TAG = "RingingOverlay";
+
+    // Matches the JS ringing page (bg-[#050505], emerald accent)
+    private static final int COLOR_BACKGROUND = Color.parseColor("#050505");
+    private static final int COLOR_ACCENT = Color.parseColor("#10B981");
+    private static final int COLOR_TEXT = Color.WHITE;
+    private static final int COLOR_TEXT_MUTED = Color.parseColor("#B0B0B0");
+
+    private static final long TICK_MS = 1000;
+    private static final long FADE_MS = 200;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final View root;
+    private final TextView elapsedView;
+    private final long startedAt;
+    private boolean shown;
+
+    private final Runnable tick = new Runnable() {
+        @Override
+        public void run() {
+            updateElapsed();
+            handler.postDelayed(this, TICK_MS);
+        }
+    };
+
+    private RingingOverlay(Activity activity, long alarmTime, long startedAt) {
+        this.startedAt = startedAt;
+
+        LinearLayout column = new LinearLayout(activity);
+        column.setOrientation(LinearLayout.VERTICAL);
+        column.setGravity(Gravity.CENTER);
+
+        TextView timeView = text(activity, 64, COLOR_TEXT);
+        timeView.setText(new SimpleDateFormat("HH:mm", Locale.getDefault())
+                .format(new Date(alarmTime)));
+        column.addView(timeView);
+
+        elapsedView = text(activity, 18, COLOR_ACCENT);
+        column.addView(elapsedView);
+
+        ProgressBar spinner = new ProgressBar(activity);
+        spinner.setIndeterminate(true);
+        spinner.setIndeterminateTintList(ColorStateList.valueOf(COLOR_ACCENT));
+        LinearLayout.LayoutParams spinnerLp = new LinearLayout.LayoutParams(
+                dp(activity, 40), dp(activity, 40));
+        spinnerLp.topMargin = dp(activity, 48);
+        column.addView(spinner, spinnerLp);
+
+        TextView loadingView = text(activity, 14, COLOR_TEXT_MUTED);
+        loadingView.setText("Loading your challenge…");
+        LinearLayout.LayoutParams loadingLp = new LinearLayout.LayoutParams(
+                ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT);
+        loadingLp.topMargin = dp(activity, 12);
+        column.addView(loadingView, loadingLp);
+
+        FrameLayout frame = new FrameLayout(activity);
+        frame.setBackgroundColor(COLOR_BACKGROUND);
+        // Swallow touches so nothing reaches the half-loaded WebView below
+        frame.setClickable(true);
+        frame.addView(column, new FrameLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+        root = frame;
+    }
+
+    /**
+     * Build the overlay and add it on top of the activity content. Call after
+     * the bridge layout is set (i.e. after super.onCreate).
+     */
+    static RingingOverlay show(Activity activity) {
+        AlarmStateBus.Event ring = AlarmStateBus.currentRing();
+        long now = System.currentTimeMillis();
+        long alarmTime = ring != null && ring.triggerAt > 0 ? ring.triggerAt : now;
+        long startedAt = ring != null ? Math.min(ring.at, now) : now;
+
+        RingingOverlay overlay = new RingingOverlay(activity, alarmTime, startedAt);
+        activity.addContentView(overlay.root, new ViewGroup.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+        overlay.shown = true;
+        overlay.tick.run();
+        Log.i(TAG, "Native ringing overlay shown");
+        return overlay;
+    }
+
+    /** Fade out and detach. Idempotent; main thread only. */
+    void hide() {
+        if (!shown) return;
+        shown = false;
+        handler.removeCallbacks(tick);
+        root.animate().alpha(0f).setDuration(FADE_MS).withEndAction(new Runnable() {
+            @Override
+            public void run() {
+                ViewGroup parent = (ViewGroup) root.getParent();
+                if (parent != null) {
+                    parent.removeView(root);
+                }
+            }
+        }).start();
+        Log.i(TAG, "Handed off to WebView after "
+                + (System.currentTimeMillis() - startedAt) + " ms");
+    }
+
+    // ── Internals ───────────────────────────────────────────────────────
+
+    private void updateElapsed() {
+        long seconds = Math.max(0, (System.currentTimeMillis() - startedAt) / 1000);
+        elapsedView.setText(String.format(Locale.getDefault(),
+                "Ringing for %d:%02d", seconds / 60, seconds % 60));
+    }
+
+    private static TextView text(Activity activity, int sp, int color) {
+        TextView view = new TextView(activity);
+        view.setTextSize(TypedValue.COMPLEX_UNIT_SP, sp);
+        view.setTextColor(color);
+        view.setGravity(Gravity.CENTER);
+        return view;
+    }
+
+    private static int dp(Activity activity, int dp) {
+        return Math.round(dp * activity.getResources().getDisplayMetrics().density);
+    }
+}
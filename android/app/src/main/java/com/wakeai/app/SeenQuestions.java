@@ -0,0 +1,274 @@
+package com.wakeai.app;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Index of questions the user has already been shown, across days.
+ *
+ * Questions are keyed by a 64-bit hash of their normalized text (case,
+ * punctuation and spacing ignored), so the same question from the fallback
+ * pool, WebLLM or the native generator maps to one key whatever its ID.
+ *
+ * Two structures, both O(1) per query:
+ *   - an exact set of the last {@link #RECENT_CAPACITY} keys, in memory and
+ *     in an append-only file of 8-byte keys (rewritten to the window once
+ *     it doubles)
+ *   - a Bloom filter over everything since it was last rebuilt, in a
+ *     memory-mapped file — setting a bit is a store into the page cache, and
+ *     other processes mapping the file see it at once
+ * A key is seen if the exact set has it or the filter might. Once the filter
+ * holds {@link #BLOOM_CAPACITY} keys (about 1% false positives) it is rebuilt
+ * from the exact set, forgetting questions older than the recent window.
+ *
+ * The main process owns the writable index ({@link #get}); the generator
+ * process opens read-only snapshots ({@link #openReadOnly}) to skip
+ * questions the user has seen while it generates.
+ */
+final class SeenQuestions {
+
+    private static final String TAG = "SeenQuestions";
+
+    private static final String BLOOM_FILE = "seen_questions.bloom";
+    private static final String RECENT_FILE = "seen_questions.recent";
+
+    static final int RECENT_CAPACITY = 4096;
+
+    private static final int BLOOM_BITS = 1 << 18;  // 32 KiB
+    private static final int BLOOM_HASHES = 7;
+    static final int BLOOM_CAPACITY = 20000;
+
+    private static final int MAGIC = 0x53514231;  // "SQB1"
+    private static final int COUNT_OFFSET = 4;
+    private static final int HEADER_BYTES = 8;    // magic, key count
+    private static final int BLOOM_FILE_BYTES = HEADER_BYTES + BLOOM_BITS / 8;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static SeenQuestions instance;
+
+    private final boolean writable;
+    private final File recentFile;
+    /** Null when read-only and the filter file doesn't exist yet. */
+    private final MappedByteBuffer bloom;
+    private final ArrayDeque<Long> recentOrder = new ArrayDeque<>();
+    private final Set<Long> recent = new HashSet<>();
+    /** Keys in the recent file, including those that slid out of the window. */
+    private int recentRecords;
+
+    /** Main process: the writable index. */
+    static synchronized SeenQuestions get(Context context) {
+        if (instance == null) {
+            instance = new SeenQuestions(context.getApplicationContext(), true);
+        }
+        return instance;
+    }
+
+    /** Generator process: a snapshot of the exact set over the live filter. */
+    static SeenQuestions openReadOnly(Context context) {
+        return new SeenQuestions(context, false);
+    }
+
+    private SeenQuestions(Context context, boolean writable) {
+        this.writable = writable;
+        File dir = context.getNoBackupFilesDir();
+        recentFile = new File(dir, RECENT_FILE);
+        bloom = map(new File(dir, BLOOM_FILE), writable);
+        loadRecent();
+        if (writable && bloom != null && bloom.getInt(COUNT_OFFSET) == 0 && !recentOrder.isEmpty()) {
+            // Filter file lost or replaced — the recent window is still known
+            rebuildBloom();
+        }
+    }
+
+    // ── Keys ────────────────────────────────────────────────────────────
+
+    /** 64-bit FNV-1a of the question text, lower-cased, letters and digits only, single-spaced. */
+    static long key(String questionText) {
+        String text = questionText != null ? questionText.toLowerCase(Locale.ROOT) : "";
+        long h = FNV_OFFSET;
+        boolean space = false;
+        boolean any = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (space && any) {
+                    h = (h ^ ' ') * FNV_PRIME;
+                }
+                h = (h ^ c) * FNV_PRIME;
+                space = false;
+                any = true;
+            } else {
+                space = true;
+            }
+        }
+        return h;
+    }
+
+    // ── Queries ─────────────────────────────────────────────────────────
+
+    synchronized boolean contains(long key) {
+        return recent.contains(key) || mightContain(key);
+    }
+
+    boolean containsQuestion(String questionText) {
+        return contains(key(questionText));
+    }
+
+    /** Record keys as seen. Main process only. */
+    synchronized void addAll(long[] keys) {
+        if (!writable) throw new IllegalStateException("Read-only seen-question index");
+        long[] fresh = new long[keys.length];
+        int n = 0;
+        for (long key : keys) {
+            if (recent.contains(key)) continue;
+            addRecent(key);
+            addToBloom(key);
+            fresh[n++] = key;
+        }
+        if (n == 0) return;
+        appendRecent(fresh, n);
+        if (bloom != null && bloom.getInt(COUNT_OFFSET) >= BLOOM_CAPACITY) {
+            rebuildBloom();
+        }
+    }
+
+    // ── Internals ───────────────────────────────────────────────────────
+
+    private boolean mightContain(long key) {
+        if (bloom == null) return false;
+        int h1 = (int) key;
+        int h2 = (int) (key >>> 32) | 1;
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            int bit = (h1 + i * h2) & (BLOOM_BITS - 1);
+            if ((bloom.get(HEADER_BYTES + (bit >>> 3)) & (1 << (bit & 7))) == 0) return false;
+        }
+        return true;
+    }
+
+    private void addToBloom(long key) {
+        if (bloom == null) return;
+        int h1 = (int) key;
+        int h2 = (int) (key >>> 32) | 1;
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            int bit = (h1 + i * h2) & (BLOOM_BITS - 1);
+            int index = HEADER_BYTES + (bit >>> 3);
+            bloom.put(index, (byte) (bloom.get(index) | (1 << (bit & 7))));
+        }
+        bloom.putInt(COUNT_OFFSET, bloom.getInt(COUNT_OFFSET) + 1);
+    }
+
+    /** Start the filter over from the recent window. */
+    private void rebuildBloom() {
+        for (int i = HEADER_BYTES; i < BLOOM_FILE_BYTES; i++) {
+            bloom.put(i, (byte) 0);
+        }
+        bloom.putInt(COUNT_OFFSET, 0);
+        for (Long key : recentOrder) {
+            addToBloom(key);
+        }
+        Log.i(TAG, "Bloom filter rebuilt from " + recentOrder.size() + " recent questions");
+    }
+
+    private void addRecent(long key) {
+        recentOrder.addLast(key);
+        recent.add(key);
+        if (recentOrder.size() > RECENT_CAPACITY) {
+            recent.remove(recentOrder.pollFirst());
+        }
+    }
+
+    private void appendRecent(long[] keys, int n) {
+        if (recentRecords + n > 2 * RECENT_CAPACITY) {
+            rewriteRecent();
+            return;
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(recentFile, true)))) {
+            for (int i = 0; i < n; i++) {
+                out.writeLong(keys[i]);
+            }
+            recentRecords += n;
+        } catch (Exception e) {
+            Log.w(TAG, "Could not append seen questions", e);
+        }
+    }
+
+    /** Rewrite the recent file as the current window only. */
+    private void rewriteRecent() {
+        File temp = new File(recentFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(temp)))) {
+            for (Long key : recentOrder) {
+                out.writeLong(key);
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Could not rewrite seen questions", e);
+            return;
+        }
+        if (temp.renameTo(recentFile)) {
+            recentRecords = recentOrder.size();
+        } else {
+            Log.w(TAG, "Could not replace " + recentFile);
+        }
+    }
+
+    private void loadRecent() {
+        if (!recentFile.isFile()) return;
+        // A torn trailing key (crash mid-append) is ignored by the whole-key count
+        long keys = recentFile.length() / 8;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(recentFile)))) {
+            for (long i = 0; i < keys; i++) {
+                addRecent(in.readLong());
+            }
+            recentRecords = (int) keys;
+        } catch (Exception e) {
+            Log.w(TAG, "Could not read seen questions", e);
+        }
+        if (writable && recentFile.length() % 8 != 0) {
+            // Realign before appending again
+            rewriteRecent();
+        }
+    }
+
+    private static MappedByteBuffer map(File file, boolean writable) {
+        if (!writable && file.length() != BLOOM_FILE_BYTES) return null;
+        try (RandomAccessFile raf = new RandomAccessFile(file, writable ? "rw" : "r")) {
+            boolean fresh = raf.length() != BLOOM_FILE_BYTES;
+            if (fresh) raf.setLength(BLOOM_FILE_BYTES);
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer buf = raf.getChannel().map(
+                    writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY,
+                    0, BLOOM_FILE_BYTES);
+            if (buf.getInt(0) != MAGIC) {
+                if (!writable) return null;
+                if (!fresh) Log.w(TAG, "Unrecognized bloom filter file, starting over");
+                for (int i = 0; i < BLOOM_FILE_BYTES; i++) {
+                    buf.put(i, (byte) 0);
+                }
+                buf.putInt(0, MAGIC);
+            }
+            return buf;
+        } catch (Exception e) {
+            Log.w(TAG, "Could not map bloom filter", e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.wakeai.app;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Native snooze — the "Snooze" action on the alarm notification, and
+ * WakeAIAlarmPlugin.snooze().
+ *
+ * Snoozing is handled entirely here, with no JS round-trip:
+ *   1. the ringing alarm's record is moved to now + the snooze interval and
+ *      saved in place (same alarm ID, tone and vibration)
+ *   2. TriggerScheduler re-arms setAlarmClock for it
+ *   3. the ring ends as "snoozed" on AlarmStateBus (wake locks drop there)
+ *   4. AlarmService stops audio and vibration
+ * A notification tap on a locked phone therefore never starts the WebView.
+ *
+ * Runs in the main process, which owns alarm storage and the trigger heap;
+ * what is ringing comes from the alarm process via RingStateChannel.
+ */
+public class SnoozeReceiver extends BroadcastReceiver {
+
+    private static final String TAG = "SnoozeReceiver";
+
+    static final String ACTION_SNOOZE = "com.wakeai.app.SNOOZE";
+
+    private static final String PREFS_NAME = "wakeai_snooze";
+    private static final String KEY_INTERVAL_MS = "interval_ms";
+
+    static final long DEFAULT_INTERVAL_MS = 5 * 60 * 1000L;
+    private static final long MIN_INTERVAL_MS = 60 * 1000L;
+
+    /** Used when the ringing alarm is unknown (bare JS ring()). */
+    private static final String FALLBACK_ALARM_ID = "snooze";
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        if (!ACTION_SNOOZE.equals(intent.getAction())) return;
+        snooze(context.getApplicationContext(), getIntervalMs(context));
+    }
+
+    /**
+     * Snooze the ringing alarm.
+     *
+     * @return the re-armed record, or null when nothing was ringing.
+     */
+    static AlarmRecord snooze(Context context, long intervalMs) {
+        AlarmStateBus.Event ring = AlarmStateBus.currentRing();
+        if (ring == null) {
+            Log.i(TAG, "Snooze ignored — nothing is ringing");
+            return null;
+        }
+
+        AlarmStorage storage = new AlarmStorage(context);
+        AlarmRecord record = ringingRecord(context, storage, ring);
+        long triggerAt = System.currentTimeMillis() + Math.max(MIN_INTERVAL_MS, intervalMs);
+        AlarmRecord snoozed = record != null
+                ? record.withTriggerAt(triggerAt)
+                : new AlarmRecord(ring.alarmId != null ? ring.alarmId : FALLBACK_ALARM_ID,
+                        new SimpleDateFormat("HH:mm", Locale.US).format(new Date(triggerAt)),
+                        null, true, triggerAt);
+
+        // Re-arm before stopping, so the next fire is safe even if we die here
+        storage.saveAlarm(snoozed);
+        TriggerScheduler.schedule(context, snoozed);
+
+        AlarmStateBus.publishRingEnded(AlarmStateBus.STATE_SNOOZED);
+        AlarmNotificationHelper.cancelFallbackNotification(context);
+        try {
+            Intent stopIntent = new Intent(context, AlarmService.class);
+            stopIntent.setAction(AlarmService.ACTION_STOP_ALARM);
+            stopIntent.putExtra(AlarmService.EXTRA_OUTCOME, AlarmStateBus.STATE_SNOOZED);
+            context.startService(stopIntent);
+        } catch (Exception e) {
+            // Service not running (fallback-notification-only fire) — nothing to stop
+            Log.w(TAG, "Could not stop AlarmService", e);
+        }
+
+        Log.i(TAG, "Snoozed " + snoozed.alarmId + " until " + triggerAt);
+        return snoozed;
+    }
+
+    static long getIntervalMs(Context context) {
+        return prefs(context).getLong(KEY_INTERVAL_MS, DEFAULT_INTERVAL_MS);
+    }
+
+    static void setIntervalMs(Context context, long intervalMs) {
+        prefs(context).edit()
+                .putLong(KEY_INTERVAL_MS, Math.max(MIN_INTERVAL_MS, intervalMs))
+                .apply();
+    }
+
+    // ── Internals ───────────────────────────────────────────────────────
+
+    /**
+     * The record of the alarm that is ringing: the stored one when the ring
+     * knows its ID, otherwise the one-shot TriggerScheduler deleted when it
+     * fired (the most recent one when the ID is unknown).
+     */
+    private static AlarmRecord ringingRecord(Context context, AlarmStorage storage,
+                                             AlarmStateBus.Event ring) {
+        if (ring.alarmId != null) {
+            AlarmRecord record = storage.getAlarm(ring.alarmId);
+            if (record != null) return record;
+        }
+        return TriggerScheduler.firedRecord(context, ring.alarmId);
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return DeviceProtectedStorage.context(context)
+                .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}
@@ -0,0 +1,227 @@
+package com.wakeai.app;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.zip.CRC32;
+
+/**
+ * On-disk cache of transcoded alarm tones.
+ *
+ * WakeAIAlarmPlugin.schedule() decodes the selected tone once into a
+ * normalized file (fixed header + interleaved 16-bit LE PCM) under the app's
+ * device-protected no-backup directory (readable before first unlock). At fire time the alarm engine memory-maps that file
+ * instead of opening and decoding the APK resource.
+ *
+ * File layout (little-endian):
+ *   0  int   magic "WAPC"
+ *   4  int   format version
+ *   8  long  source stamp (APK mtime — invalidates the entry on app update)
+ *   16 int   sample rate
+ *   20 int   channel count
+ *   24 int   PCM byte length
+ *   28 int   CRC32 of the PCM bytes
+ *   32 ...   PCM
+ *
+ * The checksum is verified off the fire path only: {@link #store} checks the
+ * written temp file before renaming it into place, and {@link #verify} (tone
+ * prewarm) re-checks an existing entry. {@link #load} at fire time checks the
+ * header, size and stamp, so mapping a tone faults in no PCM pages before the
+ * first sample plays.
+ *
+ * Entries are evicted least-recently-used (by file mtime, touched on every
+ * hit) once the directory exceeds {@link #MAX_CACHE_BYTES}.
+ */
+final class ToneCache {
+
+    private static final String TAG = "ToneCache";
+
+    private static final String DIR_NAME = "tone_cache";
+    private static final int MAGIC = 0x43504157; // "WAPC" read as little-endian
+    /** v2: every entry was checksum-verified after writing. */
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 32;
+
+    /** Upper bound for all cached tones together. */
+    static final long MAX_CACHE_BYTES = 24L * 1024 * 1024;
+
+    private ToneCache() {}
+
+    /**
+     * Memory-map a cached tone. Fire path: the PCM itself is not read.
+     *
+     * @return the tone backed by a read-only mapping, or null on miss, stale
+     *         entry or bad header (the bad file is deleted).
+     */
+    static PcmTone load(Context context, int rawResId) {
+        File file = fileFor(context, rawResId);
+        if (file == null || !file.isFile()) return null;
+        return map(context, file, false);
+    }
+
+    /**
+     * Check a cached tone's PCM against its checksum, reading every page.
+     * Background threads only.
+     *
+     * @return true if the entry is present and intact; a bad entry is deleted.
+     */
+    static boolean verify(Context context, int rawResId) {
+        File file = fileFor(context, rawResId);
+        return file != null && file.isFile() && map(context, file, true) != null;
+    }
+
+    /**
+     * Write a decoded tone to the cache (atomically via rename) and trim the
+     * cache back under its size bound. The file is only renamed into place
+     * once its checksum has been verified.
+     */
+    static void store(Context context, int rawResId, PcmTone tone) {
+        File file = fileFor(context, rawResId);
+        if (file == null) return;
+
+        File tmp = new File(file.getPath() + ".tmp");
+        ByteBuffer pcm = tone.data.duplicate();
+        pcm.position(0);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC)
+                .putInt(VERSION)
+                .putLong(sourceStamp(context))
+                .putInt(tone.sampleRate)
+                .putInt(tone.channelCount)
+                .putInt(tone.sizeInBytes())
+                .putInt(crc32(pcm.duplicate()));
+        header.flip();
+
+        try (FileOutputStream out = new FileOutputStream(tmp);
+             FileChannel channel = out.getChannel()) {
+            while (header.hasRemaining()) channel.write(header);
+            while (pcm.hasRemaining()) channel.write(pcm);
+            out.getFD().sync();
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to write cached tone " + rawResId, e);
+            tmp.delete();
+            return;
+        }
+
+        if (map(context, tmp, true) == null || !tmp.renameTo(file)) {
+            tmp.delete();
+            return;
+        }
+        Log.i(TAG, "Cached tone " + rawResId + " (" + file.length() + " bytes)");
+        evict(file.getParentFile(), file);
+    }
+
+    // ── Internals ───────────────────────────────────────────────────────
+
+    /**
+     * Map {@code file} and validate its header; with {@code checkCrc} also
+     * the PCM checksum.
+     *
+     * @return the tone, or null (the file is deleted) if it fails a check.
+     */
+    private static PcmTone map(Context context, File file, boolean checkCrc) {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_BYTES) {
+                return reject(file, "truncated header");
+            }
+
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            map.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (map.getInt(0) != MAGIC || map.getInt(4) != VERSION) {
+                return reject(file, "bad magic/version");
+            }
+            if (map.getLong(8) != sourceStamp(context)) {
+                return reject(file, "stale (app updated)");
+            }
+            int sampleRate = map.getInt(16);
+            int channels = map.getInt(20);
+            int length = map.getInt(24);
+            int crc = map.getInt(28);
+            if (length <= 0 || HEADER_BYTES + (long) length != fileSize
+                    || channels < 1 || channels > 2 || sampleRate <= 0) {
+                return reject(file, "bad header fields");
+            }
+
+            map.position(HEADER_BYTES);
+            ByteBuffer pcm = map.slice();
+            if (checkCrc && crc32(pcm.duplicate()) != crc) {
+                return reject(file, "checksum mismatch");
+            }
+
+            // Mapping stays valid after the channel is closed.
+            file.setLastModified(System.currentTimeMillis());
+            return new PcmTone(sampleRate, channels, pcm);
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to map cached tone " + file.getName(), e);
+            return null;
+        }
+    }
+
+    private static File fileFor(Context context, int rawResId) {
+        File dir = new File(DeviceProtectedStorage.context(context).getNoBackupFilesDir(), DIR_NAME);
+        if (!dir.isDirectory() && !dir.mkdirs()) return null;
+        return new File(dir, "tone_" + rawResId + ".pcm");
+    }
+
+    /** Changes whenever the APK (and therefore the raw resources) is replaced. */
+    static long sourceStamp(Context context) {
+        return new File(context.getApplicationInfo().sourceDir).lastModified();
+    }
+
+    private static int crc32(ByteBuffer buf) {
+        // CRC32.update(ByteBuffer) is API 26+, so feed it in chunks.
+        CRC32 crc = new CRC32();
+        byte[] chunk = new byte[16 * 1024];
+        while (buf.hasRemaining()) {
+            int n = Math.min(chunk.length, buf.remaining());
+            buf.get(chunk, 0, n);
+            crc.update(chunk, 0, n);
+        }
+        return (int) crc.getValue();
+    }
+
+    private static PcmTone reject(File file, String reason) {
+        Log.w(TAG, "Discarding cached tone " + file.getName() + ": " + reason);
+        file.delete();
+        return null;
+    }
+
+    /** Delete least-recently-used entries until the cache fits, never touching {@code keep}. */
+    private static void evict(File dir, File keep) {
+        File[] files = dir.listFiles();
+        if (files == null) return;
+
+        long total = 0;
+        for (File f : files) total += f.length();
+        if (total <= MAX_CACHE_BYTES) return;
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(a.lastModified(), b.lastModified());
+            }
+        });
+        for (File f : files) {
+            if (total <= MAX_CACHE_BYTES) break;
+            if (f.equals(keep)) continue;
+            long size = f.length();
+            if (f.delete()) {
+                total -= size;
+                Log.i(TAG, "Evicted cached tone " + f.getName());
+            }
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package com.wakeai.app;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.media.AudioFormat;
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.os.Build;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Decodes alarm tones from res/raw into 16-bit PCM ahead of time, so the
+ * alarm engine never has to decode an MP3 at fire time.
+ *
+ * Lookup order in {@link #get} (the fire path):
+ *   1. the most recently used tone, kept in memory for the life of the process
+ *   2. ToneCache — a memory-mapped PCM file written (and checksummed) at
+ *      schedule time
+ * A miss is never decoded on the caller's thread: get() returns null, so
+ * AlarmService starts MediaPlayer at once, and the decode runs in the
+ * background for the next fire.
+ *
+ * WakeAIAlarmPlugin.schedule() and WarmUpReceiver fill the cache ahead of time
+ * with {@link #prewarm}, so a fire into a dead process normally only pays for
+ * the mmap. No lock is held while decoding; a tone already being decoded is
+ * not decoded a second time.
+ */
+final class ToneDecoder {
+
+    private static final String TAG = "ToneDecoder";
+
+    /** Tones larger than this are left to MediaPlayer (static AudioTrack buffers live in shared memory). */
+    static final int MAX_PCM_BYTES = 8 * 1024 * 1024;
+
+    private static final long CODEC_TIMEOUT_US = 10_000;
+    /** Give up on a decoder that never signals end-of-stream. */
+    private static final long DECODE_DEADLINE_NS = 10_000_000_000L;
+
+    /** The most recently used tone. Immutable; replaced as a whole. */
+    private static final class Recent {
+        final int resId;
+        final PcmTone tone;
+
+        Recent(int resId, PcmTone tone) {
+            this.resId = resId;
+            this.tone = tone;
+        }
+    }
+
+    private static volatile Recent recent;
+
+    /** Resources being decoded right now. Guarded by the class lock, which is never held across a decode. */
+    private static final Set<Integer> decoding = new HashSet<>();
+
+    private ToneDecoder() {}
+
+    /**
+     * Transcode the tone into ToneCache (if not already there) on a background
+     * thread, so a later {@link #get} is a memory or mmap hit.
+     */
+    static void prewarmAsync(Context context, String tone) {
+        prewarmAsync(context, AlarmService.getToneResourceId(tone));
+    }
+
+    static void prewarmAsync(Context context, final int rawResId) {
+        final Context app = context.getApplicationContext();
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                prewarm(app, rawResId);
+            }
+        }, "ToneDecoder-prewarm").start();
+    }
+
+    /**
+     * Fire path: PCM for a raw resource from memory or the disk cache. Never
+     * decodes — on a miss the decode is started in the background and null is
+     * returned, so the caller can fall back to MediaPlayer right away.
+     *
+     * @return the tone, or null on a cache miss.
+     */
+    static PcmTone get(Context context, int rawResId) {
+        PcmTone tone = lookup(context, rawResId);
+        if (tone == null) {
+            Log.i(TAG, "Tone " + rawResId + " not cached — decoding in the background");
+            prewarmAsync(context, rawResId);
+        }
+        return tone;
+    }
+
+    /**
+     * Make sure the tone is in ToneCache, decoding it on the calling thread if
+     * needed (up to the decode deadline). Background threads only.
+     *
+     * @return the tone, or null if it can't be decoded, is too large for a
+     *         static track, or another thread is decoding it right now.
+     */
+    static PcmTone prewarm(Context context, int rawResId) {
+        Recent r = recent;
+        if (r != null && r.resId == rawResId) return r.tone;
+        // The fire path trusts the cached file's header; check its PCM here
+        if (ToneCache.verify(context, rawResId)) {
+            PcmTone cached = lookup(context, rawResId);
+            if (cached != null) return cached;
+        }
+        synchronized (ToneDecoder.class) {
+            if (!decoding.add(rawResId)) return null;
+        }
+        try {
+            PcmTone tone = decode(context, rawResId);
+            if (tone != null) {
+                ToneCache.store(context, rawResId, tone);
+                recent = new Recent(rawResId, tone);
+            }
+            return tone;
+        } finally {
+            synchronized (ToneDecoder.class) {
+                decoding.remove(rawResId);
+            }
+        }
+    }
+
+    private static PcmTone lookup(Context context, int rawResId) {
+        Recent r = recent;
+        if (r != null && r.resId == rawResId) {
+            return r.tone;
+        }
+        PcmTone tone = ToneCache.load(context, rawResId);
+        if (tone != null) {
+            recent = new Recent(rawResId, tone);
+        }
+        return tone;
+    }
+
+    /**
+     * Decode a raw resource to interleaved 16-bit PCM with MediaExtractor + MediaCodec.
+     * Leading and trailing digital silence (encoder padding) is trimmed so the
+     * tone loops without an audible gap.
+     */
+    static PcmTone decode(Context context, int rawResId) {
+        MediaExtractor extractor = new MediaExtractor();
+        MediaCodec codec = null;
+        long startNs = System.nanoTime();
+        try {
+            AssetFileDescriptor afd = context.getResources().openRawResourceFd(rawResId);
+            try {
+                extractor.setDataSource(afd.getFileDescriptor(),
+                        afd.getStartOffset(), afd.getLength());
+            } finally {
+                afd.close();
+            }
+
+            MediaFormat inputFormat = null;
+            for (int i = 0; i < extractor.getTrackCount(); i++) {
+                MediaFormat f = extractor.getTrackFormat(i);
+                String mime = f.getString(MediaFormat.KEY_MIME);
+                if (mime != null && mime.startsWith("audio/")) {
+                    extractor.selectTrack(i);
+                    inputFormat = f;
+                    break;
+                }
+            }
+            if (inputFormat == null) return null;
+
+            codec = MediaCodec.createDecoderByType(inputFormat.getString(MediaFormat.KEY_MIME));
+            codec.configure(inputFormat, null, null, 0);
+            codec.start();
+
+            int sampleRate = inputFormat.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+            int channels = inputFormat.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+            boolean inputDone = false;
+
+            while (true) {
+                if (System.nanoTime() - startNs > DECODE_DEADLINE_NS) {
+                    Log.w(TAG, "Decode deadline exceeded for tone " + rawResId);
+                    return null;
+                }
+                if (!inputDone) {
+                    int in = codec.dequeueInputBuffer(CODEC_TIMEOUT_US);
+                    if (in >= 0) {
+                        ByteBuffer buf = codec.getInputBuffer(in);
+                        int n = buf != null ? extractor.readSampleData(buf, 0) : -1;
+                        if (n < 0) {
+                            codec.queueInputBuffer(in, 0, 0, 0,
+                                    MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                            inputDone = true;
+                        } else {
+                            codec.queueInputBuffer(in, 0, n, extractor.getSampleTime(), 0);
+                            extractor.advance();
+                        }
+                    }
+                }
+
+                int outIdx = codec.dequeueOutputBuffer(info, CODEC_TIMEOUT_US);
+                if (outIdx == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                    MediaFormat outFormat = codec.getOutputFormat();
+                    sampleRate = outFormat.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+                    channels = outFormat.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N
+                            && outFormat.containsKey(MediaFormat.KEY_PCM_ENCODING)
+                            && outFormat.getInteger(MediaFormat.KEY_PCM_ENCODING)
+                                != AudioFormat.ENCODING_PCM_16BIT) {
+                        Log.w(TAG, "Decoder output is not 16-bit PCM");
+                        return null;
+                    }
+                } else if (outIdx >= 0) {
+                    ByteBuffer buf = codec.getOutputBuffer(outIdx);
+                    if (buf != null && info.size > 0) {
+                        byte[] chunk = new byte[info.size];
+                        buf.position(info.offset);
+                        buf.get(chunk);
+                        out.write(chunk, 0, chunk.length);
+                        if (out.size() > MAX_PCM_BYTES) {
+                            Log.w(TAG, "Tone exceeds " + MAX_PCM_BYTES + " bytes of PCM");
+                            return null;
+                        }
+                    }
+                    codec.releaseOutputBuffer(outIdx, false);
+                    if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) break;
+                }
+            }
+
+            if (channels < 1 || channels > 2) return null;
+
+            ByteBuffer pcm = trimSilence(out.toByteArray(), channels);
+            if (pcm == null) return null;
+
+            Log.i(TAG, "Decoded tone " + rawResId + ": " + pcm.limit() + " bytes, "
+                    + sampleRate + " Hz x" + channels + " in "
+                    + (System.nanoTime() - startNs) / 1_000_000 + " ms");
+            return new PcmTone(sampleRate, channels, pcm);
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to decode tone " + rawResId, e);
+            return null;
+        } finally {
+            if (codec != null) {
+                try {
+                    codec.stop();
+                } catch (Exception ignored) {
+                    // Codec may already be in an error state
+                }
+                codec.release();
+            }
+            extractor.release();
+        }
+    }
+
+    /**
+     * Drop whole frames of exact zeros at both ends.
+     *
+     * @return a little-endian buffer over the remaining frames, or null if nothing is left.
+     */
+    private static ByteBuffer trimSilence(byte[] pcm, int channels) {
+        int frameBytes = 2 * channels;
+        int frames = pcm.length / frameBytes;
+        int first = 0;
+        while (first < frames && isSilentFrame(pcm, first * frameBytes, frameBytes)) first++;
+        int last = frames - 1;
+        while (last > first && isSilentFrame(pcm, last * frameBytes, frameBytes)) last--;
+        if (first > last) return null;
+
+        return ByteBuffer.wrap(pcm, first * frameBytes, (last - first + 1) * frameBytes)
+                .slice()
+                .order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static boolean isSilentFrame(byte[] pcm, int offset, int frameBytes) {
+        for (int i = 0; i < frameBytes; i++) {
+            if (pcm[offset + i] != 0) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,31 @@
+package com.wakeai.app;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+/**
+ * Main-process half of a fire: advances the trigger heap.
+ *
+ * AlarmReceiver runs in the ":alarm" process, but alarm storage and the
+ * trigger heap are only ever written by the main process (SharedPreferences
+ * can't be shared by two writers). After ringing has started, AlarmReceiver
+ * sends the fired (alarmId, triggerAt) here and TriggerScheduler re-arms a
+ * repeating alarm and arms the next pending one.
+ */
+public class TriggerAdvanceReceiver extends BroadcastReceiver {
+
+    private static final String TAG = "TriggerAdvanceReceiver";
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        String alarmId = intent.getStringExtra(AlarmService.EXTRA_ALARM_ID);
+        long triggerAt = intent.getLongExtra(AlarmService.EXTRA_TRIGGER_AT, 0);
+        try {
+            TriggerScheduler.onFired(context, alarmId, triggerAt);
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to arm next trigger", e);
+        }
+    }
+}
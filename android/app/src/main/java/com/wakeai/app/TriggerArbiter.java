@@ -0,0 +1,164 @@
+package com.wakeai.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Collapses the several ways one alarm can be triggered into a single fire.
+ *
+ * The same alarm may arrive from AlarmReceiver (setAlarmClock), from JS ring()
+ * after the Capacitor LocalNotification backup fires, and from the JS timer
+ * on the ringing page. The first trigger for an (alarmId, triggerAt) claims
+ * the fire; every later one inside the dedupe window loses after a single
+ * atomic read and must not start the service, launch the activity or post a
+ * notification.
+ *
+ * Which source won is counted per device (device-protected prefs), so we can
+ * see which path actually wakes people up.
+ *
+ * Every claim is made in the ":alarm" process — JS ring() reaches it through
+ * AlarmReceiver — so the in-memory claim is the single source of truth, and
+ * the prefs file is private to that process. The main process reads the
+ * counters and sets the window through AlarmProcessProvider.
+ */
+final class TriggerArbiter {
+
+    private static final String TAG = "TriggerArbiter";
+
+    static final String SOURCE_ALARM_MANAGER = "alarmManager";
+    static final String SOURCE_LOCAL_NOTIFICATION = "localNotification";
+    static final String SOURCE_JS_TIMER = "jsTimer";
+    static final String SOURCE_JS = "js";
+
+    private static final String PREFS_NAME = "wakeai_trigger_arbiter";
+    private static final String KEY_WINDOW_MS = "window_ms";
+    private static final String KEY_WINS_PREFIX = "wins:";
+    private static final String KEY_SUPPRESSED_PREFIX = "suppressed:";
+
+    /** Long enough to cover an allowWhileIdle notification delayed by Doze. */
+    static final long DEFAULT_WINDOW_MS = 10 * 60 * 1000L;
+
+    /** The fire currently claimed. Immutable; replaced by CAS. */
+    private static final class Claim {
+        final String alarmId;
+        final long triggerAt;
+        final long claimedAt;   // elapsedRealtime
+        final String source;
+
+        Claim(String alarmId, long triggerAt, long claimedAt, String source) {
+            this.alarmId = alarmId;
+            this.triggerAt = triggerAt;
+            this.claimedAt = claimedAt;
+            this.source = source;
+        }
+
+        /**
+         * Only a trigger for the same alarm is a duplicate; an unknown ID never
+         * matches. An unknown epoch (0) matches any fire of that alarm.
+         */
+        boolean covers(String otherId, long otherTriggerAt, long now, long windowMs) {
+            if (now - claimedAt > windowMs || now < claimedAt) return false;
+            if (alarmId == null || !alarmId.equals(otherId)) return false;
+            return triggerAt == 0 || otherTriggerAt == 0 || triggerAt == otherTriggerAt;
+        }
+    }
+
+    private static final AtomicReference<Claim> claim = new AtomicReference<>();
+
+    private TriggerArbiter() {}
+
+    /**
+     * Try to claim the fire for {@code source}.
+     *
+     * @param alarmId   alarm being triggered, or null when the caller doesn't know
+     * @param triggerAt scheduled epoch millis, or 0 when unknown
+     * @return true if this trigger won and should ring; false if it duplicates
+     *         a fire that another path already claimed.
+     */
+    static boolean claim(Context context, String source, String alarmId, long triggerAt) {
+        long window = windowMs(context);
+        long now = SystemClock.elapsedRealtime();
+        Claim next = new Claim(alarmId, triggerAt, now, source);
+        while (true) {
+            Claim current = claim.get();
+            if (current != null && current.covers(alarmId, triggerAt, now, window)) {
+                Log.i(TAG, source + " trigger for " + alarmId + " suppressed — "
+                        + current.source + " already fired it");
+                count(context, KEY_SUPPRESSED_PREFIX + source);
+                return false;
+            }
+            if (claim.compareAndSet(current, next)) {
+                Log.i(TAG, source + " won the fire for " + alarmId + "@" + triggerAt);
+                count(context, KEY_WINS_PREFIX + source);
+                return true;
+            }
+        }
+    }
+
+    static void setWindowMs(Context context, long ms) {
+        if (!WakeAIApplication.isAlarmProcess()) {
+            Bundle extras = new Bundle();
+            extras.putLong(AlarmProcessProvider.KEY_WINDOW_MS, ms);
+            AlarmProcessProvider.call(context, AlarmProcessProvider.METHOD_SET_TRIGGER_WINDOW, extras);
+            return;
+        }
+        prefs(context).edit().putLong(KEY_WINDOW_MS, Math.max(0, ms)).apply();
+    }
+
+    static long windowMs(Context context) {
+        if (!WakeAIApplication.isAlarmProcess()) {
+            Bundle result = AlarmProcessProvider.call(
+                    context, AlarmProcessProvider.METHOD_TRIGGER_WINDOW, null);
+            return result != null
+                    ? result.getLong(AlarmProcessProvider.KEY_WINDOW_MS, DEFAULT_WINDOW_MS)
+                    : DEFAULT_WINDOW_MS;
+        }
+        return prefs(context).getLong(KEY_WINDOW_MS, DEFAULT_WINDOW_MS);
+    }
+
+    /** Per-source counters: {@code wins} and {@code suppressed}, keyed by source name. */
+    static Map<String, Map<String, Number>> getStats(Context context) {
+        if (!WakeAIApplication.isAlarmProcess()) {
+            return AlarmProcessProvider.groups(context, AlarmProcessProvider.METHOD_TRIGGER_STATS);
+        }
+        Map<String, Number> wins = new HashMap<>();
+        Map<String, Number> suppressed = new HashMap<>();
+        for (Map.Entry<String, ?> entry : prefs(context).getAll().entrySet()) {
+            if (!(entry.getValue() instanceof Integer)) continue;
+            String key = entry.getKey();
+            if (key.startsWith(KEY_WINS_PREFIX)) {
+                wins.put(key.substring(KEY_WINS_PREFIX.length()), (Integer) entry.getValue());
+            } else if (key.startsWith(KEY_SUPPRESSED_PREFIX)) {
+                suppressed.put(key.substring(KEY_SUPPRESSED_PREFIX.length()), (Integer) entry.getValue());
+            }
+        }
+        Map<String, Map<String, Number>> stats = new HashMap<>();
+        stats.put("wins", wins);
+        stats.put("suppressed", suppressed);
+        return stats;
+    }
+
+    // ── Internals ───────────────────────────────────────────────────────
+
+    private static SharedPreferences prefs(Context context) {
+        return DeviceProtectedStorage.context(context)
+                .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    private static synchronized void count(Context context, String key) {
+        try {
+            SharedPreferences prefs = prefs(context);
+            prefs.edit().putInt(key, prefs.getInt(key, 0) + 1).apply();
+        } catch (Exception e) {
+            // Stats must never break the fire path
+            Log.w(TAG, "Could not record trigger stats", e);
+        }
+    }
+}
@@ -0,0 +1,372 @@
+package com.wakeai.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TimeZone;
+
+/**
+ * Process-wide min-heap of pending alarm triggers.
+ *
+ * Only the head of the heap is ever armed in AlarmManager (one setAlarmClock
+ * registration per app, request code 0). When the head fires or is cancelled
+ * the scheduler advances to the next entry natively — no JS round-trip.
+ *
+ * Cancellation is lazy: {@link #live} maps each alarm ID to its current
+ * record, and heap entries whose record is no longer the live one are
+ * discarded when they reach the head. Upserts and cancels are therefore
+ * O(log n) and O(1) respectively, regardless of how many alarms exist.
+ *
+ * Callers persist records in AlarmStorage first; the heap is rebuilt from
+ * storage the first time it is touched in a fresh process.
+ *
+ * Repeating records (see {@link Recurrence}) are moved to their next
+ * occurrence here — after they fire, when a stale one is loaded, and on a
+ * clock / time-zone change — and written back to storage in one batch, so
+ * they stay armed indefinitely without JS. One-shot records are deleted from
+ * storage once they have fired (or are found already past), so a stale one
+ * never stands in for the alarm that is ringing; the last few stay readable
+ * through {@link #firedRecord} for snooze. They are kept in a small file of
+ * their own too, so a snooze after this process was killed mid-ring still
+ * re-arms with the alarm's tone and vibration.
+ */
+public final class TriggerScheduler {
+
+    private static final String TAG = "TriggerScheduler";
+
+    private static final Object LOCK = new Object();
+
+    private static final String FIRED_PREFS_NAME = "wakeai_fired_alarms";
+    private static final String KEY_FIRED_PREFIX = "fired:";
+
+    private static PriorityQueue<AlarmRecord> heap;
+    private static HashMap<String, AlarmRecord> live;
+
+    /** Trigger currently registered with AlarmManager, or null if nothing armed. */
+    private static AlarmRecord armed;
+
+    /** How many deleted one-shot records {@link #firedRecord} remembers. */
+    private static final int FIRED_MEMORY = 8;
+
+    /** One-shot records deleted after firing, oldest first. */
+    private static final LinkedHashMap<String, AlarmRecord> fired =
+            new LinkedHashMap<String, AlarmRecord>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, AlarmRecord> eldest) {
+            return size() > FIRED_MEMORY;
+        }
+    };
+    private static boolean firedLoaded;
+
+    private TriggerScheduler() {}
+
+    /**
+     * Add or replace the trigger for a record that was just persisted,
+     * re-arming AlarmManager only if the head changed.
+     */
+    static void schedule(Context context, AlarmRecord record) {
+        synchronized (LOCK) {
+            ensureLoaded(context);
+            if (record.triggerAt > System.currentTimeMillis()) {
+                live.put(record.alarmId, record);
+                heap.add(record);
+            } else {
+                live.remove(record.alarmId);
+            }
+            armHead(context);
+        }
+    }
+
+    /**
+     * Drop the trigger for one alarm. If it was armed, the next entry is
+     * armed in its place (or AlarmManager is cleared when nothing is left).
+     */
+    static void cancel(Context context, String alarmId) {
+        synchronized (LOCK) {
+            ensureLoaded(context);
+            if (live.remove(alarmId) != null) {
+                armHead(context);
+            }
+        }
+    }
+
+    /**
+     * Apply a batch of persisted upserts and deletes, then re-arm AlarmManager
+     * at most once.
+     */
+    static void applyBatch(Context context, List<AlarmRecord> upserts, List<String> deletes) {
+        synchronized (LOCK) {
+            ensureLoaded(context);
+            long now = System.currentTimeMillis();
+            for (AlarmRecord record : upserts) {
+                if (record.triggerAt > now) {
+                    live.put(record.alarmId, record);
+                    heap.add(record);
+                } else {
+                    live.remove(record.alarmId);
+                }
+            }
+            for (String alarmId : deletes) {
+                live.remove(alarmId);
+            }
+            armHead(context);
+        }
+    }
+
+    /**
+     * Drop every trigger and clear the AlarmManager slot.
+     */
+    static void cancelAll(Context context) {
+        synchronized (LOCK) {
+            heap = new PriorityQueue<>(11, AlarmRecord.BY_TRIGGER);
+            live = new HashMap<>();
+            armed = null;
+            BootReceiver.cancelScheduledAlarm(context);
+            AlarmStateBus.publish(AlarmStateBus.STATE_IDLE, null, 0);
+        }
+    }
+
+    /**
+     * Called from AlarmReceiver once the armed trigger has been delivered.
+     * Pops every entry that is now due (including the one that fired) and
+     * arms whatever comes next.
+     */
+    static void onFired(Context context, String alarmId, long triggerAt) {
+        synchronized (LOCK) {
+            ensureLoaded(context);
+            long due = Math.max(triggerAt, System.currentTimeMillis());
+            // The service rings from the FirePlan in its intent, so fired
+            // one-shot records can go; repeating ones move on to their next
+            // occurrence.
+            List<AlarmRecord> popped = new ArrayList<>();
+            while (!heap.isEmpty() && heap.peek().triggerAt <= due) {
+                AlarmRecord top = heap.poll();
+                if (live.get(top.alarmId) == top) {
+                    live.remove(top.alarmId);
+                    popped.add(top);
+                }
+            }
+            if (alarmId != null) {
+                AlarmRecord record = live.get(alarmId);
+                if (record != null && record.triggerAt <= due) {
+                    live.remove(alarmId);
+                    popped.add(record);
+                }
+            }
+            retire(context, popped);
+            advance(context, popped, due);
+            armed = null;
+            armHead(context);
+        }
+    }
+
+    /**
+     * A one-shot record deleted after it fired, for snooze to re-arm with the
+     * same tone and vibration.
+     *
+     * @param alarmId the ringing alarm, or null for the most recently fired one
+     * @return the record, or null if it is not among the last few fired.
+     */
+    static AlarmRecord firedRecord(Context context, String alarmId) {
+        synchronized (LOCK) {
+            loadFired(context);
+            if (alarmId != null) return fired.get(alarmId);
+            AlarmRecord last = null;
+            for (AlarmRecord record : fired.values()) {
+                last = record;
+            }
+            return last;
+        }
+    }
+
+    /**
+     * Recompute every repeating alarm from its rule, persist the changes in
+     * one batch, rebuild the heap and arm the head once. For boot, clock and
+     * time-zone changes and app updates, where stored trigger times may no
+     * longer match the wall clock.
+     */
+    static void rescheduleAll(Context context, String reason) {
+        synchronized (LOCK) {
+            long now = System.currentTimeMillis();
+            TimeZone zone = TimeZone.getDefault();
+            List<AlarmRecord> changed = new ArrayList<>();
+            for (AlarmRecord record : new AlarmStorage(context).getAlarms()) {
+                if (!record.recurrence.repeats()) continue;
+                AlarmRecord next = record.nextOccurrence(now, zone);
+                if (next != null && next.triggerAt != record.triggerAt) {
+                    changed.add(next);
+                }
+            }
+            if (!changed.isEmpty()) {
+                new AlarmStorage(context).applyBatch(changed, Collections.<String>emptyList());
+            }
+            Log.i(TAG, "Rescheduled " + changed.size() + " repeating alarm(s) (" + reason
+                    + ", zone " + zone.getID() + ")");
+
+            heap = null;
+            live = null;
+            armed = null;
+            ensureLoaded(context);
+            armHead(context);
+        }
+    }
+
+    /**
+     * Rebuild the heap from storage and arm the head.
+     */
+    static void rearm(Context context) {
+        synchronized (LOCK) {
+            heap = null;
+            live = null;
+            armed = null;
+            ensureLoaded(context);
+            armHead(context);
+        }
+    }
+
+    /**
+     * The trigger currently armed in AlarmManager, or null.
+     */
+    static AlarmRecord peekArmed(Context context) {
+        synchronized (LOCK) {
+            ensureLoaded(context);
+            return head();
+        }
+    }
+
+    // ── Internals (callers hold LOCK) ───────────────────────────────────
+
+    private static void ensureLoaded(Context context) {
+        if (heap != null) return;
+
+        heap = new PriorityQueue<>(11, AlarmRecord.BY_TRIGGER);
+        live = new HashMap<>();
+
+        long now = System.currentTimeMillis();
+        List<AlarmRecord> stale = new ArrayList<>();
+        for (AlarmRecord record : new AlarmStorage(context).getAlarms()) {
+            if (record.triggerAt > now) {
+                live.put(record.alarmId, record);
+                heap.add(record);
+            } else {
+                stale.add(record);
+            }
+        }
+        // Alarms whose occurrence passed while nothing was running (e.g. the
+        // device was off): one-shots are dropped, repeating ones catch up to
+        // their next occurrence.
+        retire(context, stale);
+        advance(context, stale, now);
+    }
+
+    /**
+     * Delete the one-shot records in {@code records} from storage in one
+     * batch and remember them for {@link #firedRecord}. Repeating records
+     * are ignored.
+     */
+    private static void retire(Context context, List<AlarmRecord> records) {
+        loadFired(context);
+        List<String> spent = new ArrayList<>();
+        for (AlarmRecord record : records) {
+            if (record.recurrence.repeats()) continue;
+            spent.add(record.alarmId);
+            fired.remove(record.alarmId);
+            fired.put(record.alarmId, record);
+        }
+        if (spent.isEmpty()) return;
+        saveFired(context);
+        new AlarmStorage(context).applyBatch(Collections.<AlarmRecord>emptyList(), spent);
+        Log.i(TAG, "Retired fired one-shot alarm(s) " + spent);
+    }
+
+    /** Read the remembered fired records once per process (caller holds LOCK). */
+    private static void loadFired(Context context) {
+        if (firedLoaded) return;
+        firedLoaded = true;
+        SharedPreferences prefs = firedPrefs(context);
+        for (int i = 0; i < FIRED_MEMORY; i++) {
+            AlarmRecord record = AlarmRecord.decode(prefs.getString(KEY_FIRED_PREFIX + i, null));
+            if (record != null) fired.put(record.alarmId, record);
+        }
+    }
+
+    /** Rewrite the remembered fired records, oldest first (caller holds LOCK). */
+    private static void saveFired(Context context) {
+        SharedPreferences.Editor editor = firedPrefs(context).edit().clear();
+        int i = 0;
+        for (AlarmRecord record : fired.values()) {
+            editor.putString(KEY_FIRED_PREFIX + i++, record.encode());
+        }
+        editor.apply();
+    }
+
+    private static SharedPreferences firedPrefs(Context context) {
+        // Written and read by the main process only, like alarm storage
+        return DeviceProtectedStorage.context(context)
+                .getSharedPreferences(FIRED_PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Move each repeating record in {@code records} to its next occurrence
+     * after {@code afterMillis}, persist them in one batch and push them on
+     * the heap. One-shot records are ignored.
+     */
+    private static void advance(Context context, List<AlarmRecord> records, long afterMillis) {
+        TimeZone zone = TimeZone.getDefault();
+        List<AlarmRecord> next = new ArrayList<>();
+        for (AlarmRecord record : records) {
+            AlarmRecord following = record.nextOccurrence(afterMillis, zone);
+            if (following != null) {
+                next.add(following);
+            }
+        }
+        if (next.isEmpty()) return;
+        new AlarmStorage(context).applyBatch(next, Collections.<String>emptyList());
+        for (AlarmRecord record : next) {
+            live.put(record.alarmId, record);
+            heap.add(record);
+            Log.i(TAG, "Repeating " + record.alarmId + " next at " + record.triggerAt);
+        }
+    }
+
+    /** Discard stale entries until the heap head is a live record. */
+    private static AlarmRecord head() {
+        while (!heap.isEmpty()) {
+            AlarmRecord top = heap.peek();
+            if (live.get(top.alarmId) == top) return top;
+            heap.poll();
+        }
+        return null;
+    }
+
+    private static void armHead(Context context) {
+        AlarmRecord next = head();
+
+        if (next == null) {
+            // Cancel unconditionally: a previous process may have armed the slot.
+            BootReceiver.cancelScheduledAlarm(context);
+            if (armed != null) {
+                AlarmStateBus.publish(AlarmStateBus.STATE_IDLE, null, 0);
+            }
+            armed = null;
+            Log.i(TAG, "No pending triggers — AlarmManager slot cleared");
+            return;
+        }
+
+        if (next == armed) return; // Head unchanged — nothing to do
+
+        BootReceiver.scheduleAlarm(context, FirePlan.forRecord(context, next));
+        armed = next;
+        AlarmStateBus.publish(AlarmStateBus.STATE_ARMED, next.alarmId, next.triggerAt);
+        Log.i(TAG, "Armed head " + next.alarmId + " at " + next.triggerAt
+                + " (" + live.size() + " pending)");
+    }
+}
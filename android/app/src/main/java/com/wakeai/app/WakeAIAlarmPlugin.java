@@ -1,36 +1,101 @@
 package com.wakeai.app;
 
+import android.app.Activity;
 import android.app.AlarmManager;
 import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.os.Build;
 import android.util.Log;
 
+import com.getcapacitor.JSArray;
 import com.getcapacitor.JSObject;
 import com.getcapacitor.Plugin;
 import com.getcapacitor.PluginCall;
 import com.getcapacitor.PluginMethod;
 import com.getcapacitor.annotation.CapacitorPlugin;
 
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+
 /**
  * Capacitor plugin that bridges JS ↔ native alarm scheduling.
  *
  * JS API:
- *   schedule({ alarmId, time, tone, vibration, triggerAt })
- *   cancel()
+ *   schedule({ alarmId, time, tone, vibration, triggerAt?, repeatDays?, skipDates? })
+ *                         — triggerAt may be omitted for a repeating alarm
+ *   cancel({ alarmId? })  — omit alarmId to cancel every alarm
+ *   scheduleBatch({ upserts: [...], deletes: [alarmId] }) → { results: [{ alarmId, op, ok, error? }] }
  *   dismiss()
- *   checkLaunchIntent()   → { alarmFired: boolean }
- *   isNativeRinging()     → { ringing: boolean }
+ *   checkLaunchIntent()   → { alarmFired: boolean, state }
+ *   isNativeRinging()     → { ringing: boolean, phase, duplicateStarts, lateStartsRejected }
+ *   getAlarmState()       → latest alarmState event (retained for late subscribers)
+ *   ringingScreenReady()  — JS ringing screen rendered (hides native overlay, reportFullyDrawn)
+ *   getFireTraces({ clear? }) → { device, traces: [...] }
+ *   ring({ source?, alarmId?, triggerAt? }) → { started: boolean }
+ *   getTriggerStats()     → { windowMs, wins: { source: n }, suppressed: { source: n } }
+ *   setTriggerWindow({ windowMs })
+ *   setWarmUpLead({ leadMs }) — 0 disables the pre-alarm warm-up
+ *   getWakeLockStats()    → { active: [tag], heldMs: { tag: ms }, holds: { tag: n }, timeouts: { tag: n } }
+ *   getFireCosts({ clear? }) → { fires, totals, averages, wakeLockMs, peak heap, records: [...] }
+ *   snooze({ intervalMs? }) → { snoozed, alarmId?, triggerAt? } — re-armed natively
+ *   setSnoozeInterval({ intervalMs })
+ *
+ * Events:
+ *   alarmFired     — alarm intent arrived while the bridge is running
+ *   alarmsChanged  — native alarm store changed { count, nextAlarmId, nextTriggerAt }
+ *   alarmState     — state transition { seq, state, alarmId, triggerAt, at, ringing }
+ *                    (see AlarmStateBus for the states)
  */
 @CapacitorPlugin(name = "WakeAIAlarm")
 public class WakeAIAlarmPlugin extends Plugin {
 
     private static final String TAG = "WakeAIAlarmPlugin";
     private static final String EVENT_ALARM_FIRED = "alarmFired";
+    private static final String EVENT_ALARMS_CHANGED = "alarmsChanged";
+    private static final String EVENT_ALARM_STATE = "alarmState";
+
+    private final AlarmStorage.Listener storeListener = new AlarmStorage.Listener() {
+        @Override
+        public void onAlarmsChanged(AlarmSnapshot snapshot) {
+            JSObject data = new JSObject();
+            data.put("count", snapshot.size());
+            AlarmRecord next = snapshot.nextAfter(System.currentTimeMillis());
+            if (next != null) {
+                data.put("nextAlarmId", next.alarmId);
+                data.put("nextTriggerAt", next.triggerAt);
+            }
+            notifyListeners(EVENT_ALARMS_CHANGED, data);
+        }
+    };
 
-    /** Set by MainActivity when launched via alarm full-screen intent */
-    static volatile boolean launchedByAlarm = false;
+    private final AlarmStateBus.Listener stateListener = new AlarmStateBus.Listener() {
+        @Override
+        public void onAlarmState(AlarmStateBus.Event event) {
+            notifyListeners(EVENT_ALARM_STATE, toJson(event));
+        }
+    };
+
+    @Override
+    public void load() {
+        AlarmStorage.addListener(storeListener);
+        AlarmStateBus.addListener(stateListener);
+    }
+
+    @Override
+    protected void handleOnDestroy() {
+        AlarmStorage.removeListener(storeListener);
+        AlarmStateBus.removeListener(stateListener);
+    }
 
     @PluginMethod()
     public void schedule(PluginCall call) {
@@ -47,6 +112,10 @@ public class WakeAIAlarmPlugin extends Plugin {
         // and the native alarm to never be scheduled.
         // Use getData().optLong() which correctly handles Long values.
         long triggerAt = call.getData().optLong("triggerAt", 0);
+        Recurrence recurrence = parseRecurrence(call.getData());
+        if (triggerAt <= 0 && time != null) {
+            triggerAt = recurrence.nextAfter(time, System.currentTimeMillis(), TimeZone.getDefault());
+        }
 
         if (alarmId == null || time == null || triggerAt <= 0) {
             Log.e(TAG, "Validation failed — alarmId: " + alarmId
@@ -58,33 +127,134 @@ public class WakeAIAlarmPlugin extends Plugin {
         Context ctx = getContext();
 
         // Persist alarm data so native components can read it
+        AlarmRecord record = new AlarmRecord(alarmId, time, tone, vibration, triggerAt, recurrence);
         AlarmStorage storage = new AlarmStorage(ctx);
-        storage.saveAlarm(alarmId, time, tone, vibration, triggerAt);
+        storage.saveAlarm(record);
+        AlarmStateBus.publish(AlarmStateBus.STATE_SCHEDULED, alarmId, triggerAt);
 
         // Eagerly create the fallback notification channel so it exists before
         // any alarm fires. This channel is also used by LocalNotifications
         // (alarmScheduler.js) so Capacitor-posted notifications play on STREAM_ALARM.
         AlarmNotificationHelper.ensureFallbackChannel(ctx);
 
-        // Schedule via AlarmManager
-        BootReceiver.scheduleAlarm(ctx, triggerAt);
+        // Transcode the tone into the PCM file cache now, off the main thread,
+        // so the AudioTrack engine only memory-maps it at fire time.
+        ToneDecoder.prewarmAsync(ctx, tone);
+
+        // Push onto the trigger heap. AlarmManager is only touched if this
+        // alarm became the earliest pending one.
+        TriggerScheduler.schedule(ctx, record);
 
         Log.i(TAG, "Alarm scheduled: " + alarmId + " at " + triggerAt);
         call.resolve();
     }
 
+    /**
+     * Apply many schedule/cancel operations at once (e.g. JS reconciling its
+     * alarm list on startup). Valid items are persisted in a single storage
+     * commit and AlarmManager is re-armed at most once; invalid items are
+     * skipped and reported in the per-item results instead of failing the call.
+     */
     @PluginMethod()
-    public void cancel(PluginCall call) {
+    public void scheduleBatch(PluginCall call) {
+        JSArray upsertsIn = call.getArray("upserts", new JSArray());
+        JSArray deletesIn = call.getArray("deletes", new JSArray());
+
+        List<AlarmRecord> upserts = new ArrayList<>();
+        List<String> deletes = new ArrayList<>();
+        Set<String> tones = new HashSet<>();
+        JSArray results = new JSArray();
+
+        for (int i = 0; i < upsertsIn.length(); i++) {
+            JSONObject item = upsertsIn.optJSONObject(i);
+            String alarmId = item != null ? item.optString("alarmId", null) : null;
+            String time = item != null ? item.optString("time", null) : null;
+            // optLong, not optDouble — see the note in schedule()
+            long triggerAt = item != null ? item.optLong("triggerAt", 0) : 0;
+            Recurrence recurrence = item != null ? parseRecurrence(item) : Recurrence.NONE;
+            if (triggerAt <= 0 && time != null) {
+                triggerAt = recurrence.nextAfter(time, System.currentTimeMillis(), TimeZone.getDefault());
+            }
+            if (alarmId == null || time == null || triggerAt <= 0) {
+                results.put(batchResult(alarmId, "upsert",
+                        "Missing required fields: alarmId, time, triggerAt"));
+                continue;
+            }
+            String tone = item.optString("tone", "gentle");
+            upserts.add(new AlarmRecord(alarmId, time, tone,
+                    item.optBoolean("vibration", true), triggerAt, recurrence));
+            tones.add(tone);
+            results.put(batchResult(alarmId, "upsert", null));
+        }
+
+        for (int i = 0; i < deletesIn.length(); i++) {
+            String alarmId = deletesIn.optString(i, null);
+            if (alarmId == null || alarmId.isEmpty()) {
+                results.put(batchResult(null, "delete", "Missing alarmId"));
+                continue;
+            }
+            deletes.add(alarmId);
+        }
+
         Context ctx = getContext();
+        Set<String> removed = new AlarmStorage(ctx).applyBatch(upserts, deletes);
+        for (AlarmRecord record : upserts) {
+            AlarmStateBus.publish(AlarmStateBus.STATE_SCHEDULED, record.alarmId, record.triggerAt);
+        }
+        for (String alarmId : deletes) {
+            results.put(batchResult(alarmId, "delete",
+                    removed.contains(alarmId) ? null : "Not found"));
+        }
+
+        if (!upserts.isEmpty()) {
+            AlarmNotificationHelper.ensureFallbackChannel(ctx);
+            for (String tone : tones) {
+                ToneDecoder.prewarmAsync(ctx, tone);
+            }
+        }
+
+        TriggerScheduler.applyBatch(ctx, upserts, deletes);
 
-        // Cancel the AlarmManager PendingIntent
-        cancelAlarmManager(ctx);
+        Log.i(TAG, "Batch applied: " + upserts.size() + " upsert(s), "
+                + deletes.size() + " delete(s)");
+        JSObject result = new JSObject();
+        result.put("results", results);
+        call.resolve(result);
+    }
+
+    private static JSObject batchResult(String alarmId, String op, String error) {
+        JSObject item = new JSObject();
+        item.put("alarmId", alarmId);
+        item.put("op", op);
+        item.put("ok", error == null);
+        if (error != null) {
+            item.put("error", error);
+        }
+        return item;
+    }
 
-        // Clear persisted data
+    @PluginMethod()
+    public void cancel(PluginCall call) {
+        Context ctx = getContext();
+        String alarmId = call.getString("alarmId");
         AlarmStorage storage = new AlarmStorage(ctx);
-        storage.clearAlarm();
 
-        Log.i(TAG, "Alarm cancelled");
+        if (alarmId == null) {
+            // No ID — cancel everything (pre multi-alarm behaviour)
+            storage.clearAlarm();
+            TriggerScheduler.cancelAll(ctx);
+            cancelAlarmManager(ctx);
+            Log.i(TAG, "All alarms cancelled");
+            call.resolve();
+            return;
+        }
+
+        storage.removeAlarm(alarmId);
+
+        // Advances the heap: the next alarm is armed only if this one was the head
+        TriggerScheduler.cancel(ctx, alarmId);
+
+        Log.i(TAG, "Alarm cancelled: " + alarmId);
         call.resolve();
     }
 
@@ -100,29 +270,100 @@ public class WakeAIAlarmPlugin extends Plugin {
         // Cancel the fallback notification (in case AlarmService didn't start)
         AlarmNotificationHelper.cancelFallbackNotification(ctx);
 
-        // Reset the launch flag
-        launchedByAlarm = false;
+        // Ends the retained ringing state even if AlarmService never started
+        AlarmStateBus.publishRingEnded(AlarmStateBus.STATE_DISMISSED);
 
         Log.i(TAG, "Alarm dismissed");
         call.resolve();
     }
 
+    /**
+     * Snooze the ringing alarm natively (same path as the notification's
+     * Snooze action). intervalMs defaults to the configured snooze interval.
+     */
+    @PluginMethod()
+    public void snooze(PluginCall call) {
+        Context ctx = getContext();
+        long intervalMs = call.getData().optLong("intervalMs", SnoozeReceiver.getIntervalMs(ctx));
+        AlarmRecord snoozed = SnoozeReceiver.snooze(ctx, intervalMs);
+
+        JSObject result = new JSObject();
+        result.put("snoozed", snoozed != null);
+        if (snoozed != null) {
+            result.put("alarmId", snoozed.alarmId);
+            result.put("triggerAt", snoozed.triggerAt);
+        }
+        call.resolve(result);
+    }
+
+    @PluginMethod()
+    public void setSnoozeInterval(PluginCall call) {
+        long intervalMs = call.getData().optLong("intervalMs", -1);
+        if (intervalMs <= 0) {
+            call.reject("intervalMs must be a positive number");
+            return;
+        }
+        SnoozeReceiver.setIntervalMs(getContext(), intervalMs);
+        call.resolve();
+    }
+
     /**
      * Called by JS on app start to check if the app was launched by an alarm
-     * full-screen intent (cold start case).
+     * full-screen intent (cold start case). Answered from the retained
+     * AlarmStateBus value, so it stays true for as long as the alarm rings
+     * instead of being a one-shot flag.
      */
     @PluginMethod()
     public void checkLaunchIntent(PluginCall call) {
+        AlarmStateBus.Event latest = AlarmStateBus.latest();
         JSObject result = new JSObject();
-        result.put("alarmFired", launchedByAlarm);
+        result.put("alarmFired", latest.ringing);
+        result.put("state", toJson(latest));
         call.resolve(result);
 
-        // Consume the flag so it doesn't re-trigger
-        if (launchedByAlarm) {
-            launchedByAlarm = false;
+        if (latest.ringing) {
+            FireTrace.mark(getContext(), FireTrace.STAGE_JS_EVENT);
         }
     }
 
+    /**
+     * The JS ringing screen has rendered. Lets MainActivity report
+     * time-to-fully-drawn for the launch.
+     */
+    @PluginMethod()
+    public void ringingScreenReady(PluginCall call) {
+        final Activity activity = getActivity();
+        if (activity instanceof MainActivity) {
+            activity.runOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    ((MainActivity) activity).onRingingScreenReady();
+                }
+            });
+        }
+        call.resolve();
+    }
+
+    /**
+     * Latest alarm state event. JS subscribers call this right after adding an
+     * alarmState listener and skip events whose seq they have already seen.
+     */
+    @PluginMethod()
+    public void getAlarmState(PluginCall call) {
+        call.resolve(toJson(AlarmStateBus.latest()));
+    }
+
+    private static JSObject toJson(AlarmStateBus.Event event) {
+        JSObject data = new JSObject();
+        data.put("seq", event.seq);
+        data.put("state", event.state);
+        data.put("alarmId", event.alarmId);
+        data.put("triggerAt", event.triggerAt);
+        data.put("at", event.at);
+        data.put("ringing", event.ringing);
+        return data;
+    }
+
     /**
      * Start the native AlarmService AND bring the activity to the foreground.
      *
@@ -135,80 +376,352 @@ public class WakeAIAlarmPlugin extends Plugin {
      * (singleTask + SINGLE_TOP just delivers onNewIntent). When the app is
      * minimized, it brings the activity to the foreground so the user sees the
      * swipe-to-dismiss screen without manually opening the app.
+     *
+     * Goes through TriggerArbiter first: if AlarmReceiver (or an earlier JS
+     * trigger) already fired this alarm, nothing is started and the call
+     * resolves with started: false. The arbiter and AlarmService live in the
+     * ":alarm" process, so the claim is an ordered broadcast to AlarmReceiver
+     * there; it carries a FirePlan for the stored alarm, so the alarm process
+     * doesn't read storage.
      */
     @PluginMethod()
-    public void ring(PluginCall call) {
-        Context ctx = getContext();
+    public void ring(final PluginCall call) {
+        final Context ctx = getContext();
 
-        try {
-            // 1. Start AlarmService (audio + vibration + notification)
-            Intent serviceIntent = new Intent(ctx, AlarmService.class);
-            serviceIntent.setAction(AlarmService.ACTION_START_ALARM);
-
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-                ctx.startForegroundService(serviceIntent);
-            } else {
-                ctx.startService(serviceIntent);
-            }
+        String source = call.getString("source", TriggerArbiter.SOURCE_JS);
+        String alarmId = call.getString("alarmId");
+        // optLong, not getDouble — see the note in schedule()
+        long triggerAt = call.getData().optLong("triggerAt", 0);
 
-            Log.i(TAG, "Native AlarmService started via ring()");
-
-            // 2. Bring activity to foreground (essential when app is minimized).
-            //    When the app is already visible, singleTask + SINGLE_TOP makes
-            //    this a harmless onNewIntent delivery.
-            try {
-                Intent activityIntent = new Intent(ctx, MainActivity.class);
-                activityIntent.setAction("com.wakeai.app.ALARM_FIRED");
-                activityIntent.addFlags(
-                        Intent.FLAG_ACTIVITY_NEW_TASK
-                        | Intent.FLAG_ACTIVITY_CLEAR_TOP
-                        | Intent.FLAG_ACTIVITY_SINGLE_TOP);
-                ctx.startActivity(activityIntent);
-                Log.i(TAG, "Activity brought to foreground via ring()");
-            } catch (Exception e) {
-                // May fail on some devices due to background activity restrictions.
-                // Not fatal — the AlarmService notification is the fallback.
-                Log.w(TAG, "Could not bring activity to foreground: " + e.getMessage());
+        Intent ringIntent = new Intent(ctx, AlarmReceiver.class);
+        ringIntent.setAction(AlarmReceiver.ACTION_RING);
+        AlarmRecord record = alarmId != null ? new AlarmStorage(ctx).getAlarm(alarmId) : null;
+        if (record != null) {
+            FirePlan.forRecord(ctx, record).writeTo(ringIntent);
+        }
+        // The fire as JS saw it — a repeating record may already point at its next occurrence
+        ringIntent.putExtra(AlarmReceiver.EXTRA_SOURCE, source);
+        ringIntent.putExtra(AlarmService.EXTRA_ALARM_ID, alarmId);
+        ringIntent.putExtra(AlarmService.EXTRA_TRIGGER_AT, triggerAt);
+
+        BroadcastReceiver resultReceiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                int code = getResultCode();
+                if (code == AlarmReceiver.RESULT_FAILED) {
+                    call.reject("Failed to start native alarm service");
+                    return;
+                }
+                boolean started = code == Activity.RESULT_OK;
+                if (started) {
+                    Log.i(TAG, "Native AlarmService started via ring()");
+                    bringActivityToFront(ctx, alarmId);
+                }
+                JSObject result = new JSObject();
+                result.put("started", started);
+                call.resolve(result);
             }
-
-            call.resolve();
+        };
+        try {
+            ctx.sendOrderedBroadcast(ringIntent, null, resultReceiver, null,
+                    AlarmReceiver.RESULT_FAILED, null, null);
         } catch (Exception e) {
-            Log.e(TAG, "Failed to start AlarmService via ring()", e);
+            Log.e(TAG, "Failed to reach the alarm process via ring()", e);
             call.reject("Failed to start native alarm service: " + e.getMessage());
         }
     }
 
+    /**
+     * Bring the activity to the foreground (essential when the app is
+     * minimized). When the app is already visible, singleTask + SINGLE_TOP
+     * makes this a harmless onNewIntent delivery.
+     */
+    private static void bringActivityToFront(Context ctx, String alarmId) {
+        try {
+            Intent activityIntent = new Intent(ctx, MainActivity.class);
+            activityIntent.setAction("com.wakeai.app.ALARM_FIRED");
+            activityIntent.putExtra(AlarmService.EXTRA_ALARM_ID, alarmId);
+            activityIntent.addFlags(
+                    Intent.FLAG_ACTIVITY_NEW_TASK
+                    | Intent.FLAG_ACTIVITY_CLEAR_TOP
+                    | Intent.FLAG_ACTIVITY_SINGLE_TOP);
+            ctx.startActivity(activityIntent);
+            Log.i(TAG, "Activity brought to foreground via ring()");
+        } catch (Exception e) {
+            // May fail on some devices due to background activity restrictions.
+            // Not fatal — the AlarmService notification is the fallback.
+            Log.w(TAG, "Could not bring activity to foreground: " + e.getMessage());
+        }
+    }
+
     /**
      * Check if the native alarm service is currently ringing.
      */
     @PluginMethod()
     public void isNativeRinging(PluginCall call) {
+        // AlarmService's RingStateMachine is in the alarm process — read its mirror
+        int phase = RingStateChannel.remotePhase();
         JSObject result = new JSObject();
-        result.put("ringing", AlarmService.isRinging);
+        result.put("ringing", RingStateChannel.isRemoteActive());
+        result.put("phase", RingStateMachine.PHASE_NAMES[phase]);
+        result.put("duplicateStarts", RingStateChannel.remoteDuplicateStarts());
+        result.put("lateStartsRejected", RingStateChannel.remoteLateStartsRejected());
         call.resolve(result);
     }
 
     /**
      * Called by MainActivity when an alarm intent arrives while the app is running.
      * Fires a JS event so the WebView can navigate to the ringing screen.
+     *
+     * @param alarmId ID carried by the alarm intent, or null — then the ring
+     *                in progress on AlarmStateBus is used. alarmId and time
+     *                are left out of the event when neither knows the alarm.
      */
-    void fireAlarmEvent() {
+    void fireAlarmEvent(String alarmId) {
         JSObject data = new JSObject();
         data.put("alarmFired", true);
 
-        AlarmStorage storage = new AlarmStorage(getContext());
-        org.json.JSONObject alarm = storage.getAlarm();
-        if (alarm != null) {
-            data.put("alarmId", alarm.optString("alarmId", ""));
-            data.put("time", alarm.optString("time", ""));
+        if (alarmId == null) {
+            AlarmStateBus.Event ring = AlarmStateBus.currentRing();
+            alarmId = ring != null ? ring.alarmId : null;
+        }
+        if (alarmId != null) {
+            data.put("alarmId", alarmId);
+            AlarmRecord alarm = new AlarmStorage(getContext()).getAlarm(alarmId);
+            if (alarm != null) {
+                data.put("time", alarm.time);
+            }
         }
 
         notifyListeners(EVENT_ALARM_FIRED, data);
+        FireTrace.mark(getContext(), FireTrace.STAGE_JS_EVENT);
         Log.i(TAG, "Fired alarmFired event to JS");
     }
 
+    /**
+     * Which trigger path won each fire on this device, and how many later
+     * triggers were collapsed into it.
+     */
+    @PluginMethod()
+    public void getTriggerStats(PluginCall call) {
+        Context ctx = getContext();
+        JSObject result = new JSObject();
+        result.put("windowMs", TriggerArbiter.windowMs(ctx));
+        for (Map.Entry<String, Map<String, Number>> group : TriggerArbiter.getStats(ctx).entrySet()) {
+            JSObject counts = new JSObject();
+            for (Map.Entry<String, Number> count : group.getValue().entrySet()) {
+                counts.put(count.getKey(), count.getValue().intValue());
+            }
+            result.put(group.getKey(), counts);
+        }
+        call.resolve(result);
+    }
+
+    /**
+     * Wake lock accounting from WakeLockCoordinator: the tags this (main)
+     * process holds right now — AlarmService's are in the alarm process — and,
+     * per tag across both processes, total held time, hold count and
+     * safety-timeout count.
+     */
+    @PluginMethod()
+    public void getWakeLockStats(PluginCall call) {
+        JSObject result = new JSObject();
+        JSArray active = new JSArray();
+        for (String tag : WakeLockCoordinator.activeTags()) {
+            active.put(tag);
+        }
+        result.put("active", active);
+        for (Map.Entry<String, Map<String, Number>> group
+                : WakeLockCoordinator.getStats(getContext()).entrySet()) {
+            JSObject values = new JSObject();
+            for (Map.Entry<String, Number> value : group.getValue().entrySet()) {
+                values.put(value.getKey(), value.getValue().longValue());
+            }
+            result.put(group.getKey(), values);
+        }
+        call.resolve(result);
+    }
+
+    /**
+     * Set how long before each alarm the warm-up trigger runs. Applied from
+     * the next arming; the currently armed trigger is re-armed right away.
+     */
+    @PluginMethod()
+    public void setWarmUpLead(PluginCall call) {
+        long leadMs = call.getData().optLong("leadMs", -1);
+        if (leadMs < 0) {
+            call.reject("leadMs must be a non-negative number");
+            return;
+        }
+        Context ctx = getContext();
+        WarmUpReceiver.setLeadMs(ctx, leadMs);
+        TriggerScheduler.rearm(ctx);
+        call.resolve();
+    }
+
+    /**
+     * Set how long after a fire other triggers for the same alarm are ignored.
+     */
+    @PluginMethod()
+    public void setTriggerWindow(PluginCall call) {
+        long windowMs = call.getData().optLong("windowMs", -1);
+        if (windowMs < 0) {
+            call.reject("windowMs must be a non-negative number");
+            return;
+        }
+        TriggerArbiter.setWindowMs(getContext(), windowMs);
+        call.resolve();
+    }
+
+    /**
+     * Return the retained fire-path latency traces (oldest first) together with
+     * device/OEM info so JS can chart time-to-sound percentiles per device.
+     *
+     * Each trace: { alarmId, triggerAt, receivedAt, latenessMs, timeToSoundMs,
+     * stages: { received, serviceStart, ... } } where stage values are ms since
+     * the first recorded stage, or -1 if that stage was not reached.
+     */
+    @PluginMethod()
+    public void getFireTraces(PluginCall call) {
+        Context ctx = getContext();
+
+        JSObject device = new JSObject();
+        device.put("manufacturer", Build.MANUFACTURER);
+        device.put("model", Build.MODEL);
+        device.put("sdkInt", Build.VERSION.SDK_INT);
+
+        JSArray traces = new JSArray();
+        for (FireTrace.Trace t : FireTrace.getTraces(ctx)) {
+            JSObject stages = new JSObject();
+            for (int i = 0; i < FireTrace.STAGE_NAMES.length; i++) {
+                stages.put(FireTrace.STAGE_NAMES[i], t.stages[i]);
+            }
+            JSObject item = new JSObject();
+            item.put("alarmId", t.alarmId);
+            item.put("triggerAt", t.triggerAt);
+            item.put("receivedAt", t.receivedAt);
+            item.put("latenessMs", t.latenessMs());
+            item.put("timeToSoundMs", t.stages[FireTrace.STAGE_AUDIO_STARTED]);
+            item.put("stages", stages);
+            traces.put(item);
+        }
+
+        JSObject result = new JSObject();
+        result.put("device", device);
+        result.put("traces", traces);
+        call.resolve(result);
+
+        if (call.getBoolean("clear", false)) {
+            FireTrace.clear(ctx);
+        }
+    }
+
+    /**
+     * Per-fire resource cost (see FireCost) and aggregates over the retained
+     * fires, for the battery-impact section of the stats screen.
+     *
+     * { fires, totals: { ringMs, cpuMs, audioMs, vibrationMs, awakeMs, wakeLockMs },
+     *   averages: { same keys, per fire }, wakeLockMs: { tag: total ms },
+     *   peakJavaHeapKb, peakNativeHeapKb, records: [...] } — records oldest first.
+     * awakeMs is how long the device was actually kept awake; wakeLockMs adds
+     * up overlapping per-tag holds and is larger.
+     */
+    @PluginMethod()
+    public void getFireCosts(PluginCall call) {
+        Context ctx = getContext();
+        List<FireCost.Record> records = FireCost.getRecords(ctx);
+
+        long ringMs = 0, cpuMs = 0, audioMs = 0, vibrationMs = 0, awakeMs = 0, wakeMs = 0;
+        long peakJava = 0, peakNative = 0;
+        Map<String, Long> wakeByTag = new HashMap<>();
+        JSArray items = new JSArray();
+        for (FireCost.Record r : records) {
+            ringMs += r.ringMs;
+            cpuMs += r.cpuMs;
+            audioMs += r.audioMs;
+            vibrationMs += r.vibrationMs;
+            awakeMs += r.awakeMs;
+            peakJava = Math.max(peakJava, r.peakJavaHeapKb);
+            peakNative = Math.max(peakNative, r.peakNativeHeapKb);
+
+            JSObject wakeLocks = new JSObject();
+            for (Map.Entry<String, Long> entry : r.wakeLockMs.entrySet()) {
+                wakeMs += entry.getValue();
+                Long prev = wakeByTag.get(entry.getKey());
+                wakeByTag.put(entry.getKey(), (prev != null ? prev : 0) + entry.getValue());
+                wakeLocks.put(entry.getKey(), entry.getValue());
+            }
+
+            JSObject item = new JSObject();
+            item.put("alarmId", r.alarmId);
+            item.put("startedAt", r.startedAt);
+            item.put("outcome", r.outcome);
+            item.put("ringMs", r.ringMs);
+            item.put("cpuMs", r.cpuMs);
+            item.put("audioMs", r.audioMs);
+            item.put("vibrationMs", r.vibrationMs);
+            item.put("awakeMs", r.awakeMs);
+            item.put("peakJavaHeapKb", r.peakJavaHeapKb);
+            item.put("peakNativeHeapKb", r.peakNativeHeapKb);
+            item.put("wakeLockMs", wakeLocks);
+            items.put(item);
+        }
+
+        int fires = records.size();
+        long[] sums = {ringMs, cpuMs, audioMs, vibrationMs, awakeMs, wakeMs};
+        String[] keys = {"ringMs", "cpuMs", "audioMs", "vibrationMs", "awakeMs", "wakeLockMs"};
+        JSObject totals = new JSObject();
+        JSObject averages = new JSObject();
+        for (int i = 0; i < keys.length; i++) {
+            totals.put(keys[i], sums[i]);
+            averages.put(keys[i], fires > 0 ? sums[i] / fires : 0);
+        }
+        JSObject wakeLockMs = new JSObject();
+        for (Map.Entry<String, Long> entry : wakeByTag.entrySet()) {
+            wakeLockMs.put(entry.getKey(), entry.getValue());
+        }
+
+        JSObject result = new JSObject();
+        result.put("fires", fires);
+        result.put("totals", totals);
+        result.put("averages", averages);
+        result.put("wakeLockMs", wakeLockMs);
+        result.put("peakJavaHeapKb", peakJava);
+        result.put("peakNativeHeapKb", peakNative);
+        result.put("records", items);
+        call.resolve(result);
+
+        if (call.getBoolean("clear", false)) {
+            FireCost.clear(ctx);
+        }
+    }
+
     // ── Private helpers ─────────────────────────────────────────────────
 
+    /**
+     * Repeat rule from schedule options: repeatDays (0 = Sunday … 6, as JS
+     * Date.getDay()) and skipDates ("YYYY-MM-DD"). Invalid entries are ignored.
+     */
+    private static Recurrence parseRecurrence(JSONObject data) {
+        JSONArray days = data.optJSONArray("repeatDays");
+        JSONArray skips = data.optJSONArray("skipDates");
+        int mask = 0;
+        if (days != null) {
+            for (int i = 0; i < days.length(); i++) {
+                int day = days.optInt(i, -1);
+                if (day >= 0 && day <= 6) mask |= 1 << day;
+            }
+        }
+        List<String> skipDates = new ArrayList<>();
+        if (skips != null) {
+            for (int i = 0; i < skips.length(); i++) {
+                String date = skips.optString(i, "");
+                if (date.matches("\\d{4}-\\d{2}-\\d{2}")) skipDates.add(date);
+            }
+        }
+        return mask == 0 ? Recurrence.NONE : new Recurrence(mask, skipDates);
+    }
+
     private void cancelAlarmManager(Context ctx) {
         AlarmManager am = (AlarmManager) ctx.getSystemService(Context.ALARM_SERVICE);
         if (am == null) return;
@@ -218,13 +731,10 @@ public class WakeAIAlarmPlugin extends Plugin {
             piFlags |= PendingIntent.FLAG_IMMUTABLE;
         }
 
-        // Cancel CURRENT PendingIntent type (getBroadcast → AlarmReceiver)
-        Intent receiverIntent = new Intent(ctx, AlarmReceiver.class);
-        receiverIntent.setAction(AlarmService.ACTION_START_ALARM);
-        PendingIntent broadcastPI = PendingIntent.getBroadcast(ctx, 0, receiverIntent, piFlags);
-        am.cancel(broadcastPI);
+        // The CURRENT PendingIntent type (getBroadcast → AlarmReceiver) is
+        // owned by TriggerScheduler and cleared by cancelAll().
 
-        // Also cancel OLD PendingIntent type (getForegroundService → AlarmService)
+        // Cancel the OLD PendingIntent type (getForegroundService → AlarmService)
         // in case an alarm was scheduled before this update
         Intent serviceIntent = new Intent(ctx, AlarmService.class);
         serviceIntent.setAction(AlarmService.ACTION_START_ALARM);
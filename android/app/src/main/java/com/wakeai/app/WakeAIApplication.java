@@ -0,0 +1,75 @@
+package com.wakeai.app;
+
+import android.app.Application;
+import android.os.Build;
+import android.util.Log;
+
+import java.io.FileInputStream;
+
+/**
+ * Process entry point for all app processes.
+ *
+ * The main process hosts MainActivity, the Capacitor bridge and the WebView;
+ * it preloads native alarm state so the bridge finds it in memory, and
+ * mirrors the ring state published by the alarm process.
+ *
+ * The ":alarm" process hosts only the ring path (AlarmReceiver and
+ * AlarmService, see the manifest). Its init is deliberately minimal — no
+ * storage preload, since the fire plan travels in the intent, and nothing
+ * that would load WebView, Capacitor or ad SDK classes — so a fire into a
+ * dead app starts a small process, and that process stays small while it
+ * rings. The one content provider there is AlarmProcessProvider, through
+ * which the main process reads alarm-process state; it has no init of its
+ * own. Every other provider runs in the main process.
+ *
+ * The ":generator" process hosts QuestionGeneratorService only and skips
+ * init entirely.
+ */
+public class WakeAIApplication extends Application {
+
+    private static final String TAG = "WakeAIApplication";
+
+    static final String ALARM_PROCESS_SUFFIX = ":alarm";
+
+    private static volatile boolean alarmProcess;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        String name = processName();
+        alarmProcess = name.endsWith(ALARM_PROCESS_SUFFIX);
+        if (alarmProcess) {
+            Log.i(TAG, "Alarm process started");
+            RingStateChannel.startPublishing(this);
+            return;
+        }
+        if (name.indexOf(':') >= 0) {
+            // Other helper processes (":generator") need none of the main-process state
+            return;
+        }
+        AlarmStorage.preloadAsync(this);
+        RingStateChannel.startReceiving(this);
+    }
+
+    /** True in the ":alarm" process, where the ring path runs. */
+    static boolean isAlarmProcess() {
+        return alarmProcess;
+    }
+
+    private static String processName() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+            return Application.getProcessName();
+        }
+        // /proc/self/cmdline is the NUL-terminated process name
+        try (FileInputStream in = new FileInputStream("/proc/self/cmdline")) {
+            byte[] buf = new byte[256];
+            int len = in.read(buf);
+            int end = 0;
+            while (end < len && buf[end] != 0) end++;
+            return new String(buf, 0, end, "UTF-8");
+        } catch (Exception e) {
+            Log.w(TAG, "Could not read process name", e);
+            return "";
+        }
+    }
+}
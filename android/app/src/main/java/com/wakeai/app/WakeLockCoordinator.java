@@ -0,0 +1,296 @@
+package com.wakeai.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.PowerManager;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Process-wide owner of the alarm wake locks.
+ *
+ * Components take tagged holds instead of their own PowerManager locks:
+ *   - one PARTIAL_WAKE_LOCK is held while any hold is active
+ *   - one screen lock (ACQUIRE_CAUSES_WAKEUP) while any screen hold is active
+ * Each tag counts once — re-acquiring a held tag only extends its timeout,
+ * so repeated onNewIntent / onStartCommand calls cannot stack locks.
+ *
+ * Every hold ends at the latest when the ring ends (dismissed / snoozed on
+ * AlarmStateBus), not when its safety timeout runs out. How long each tag
+ * held the CPU, and how often it had to be cut by its timeout, is recorded
+ * per device for battery diagnostics.
+ *
+ * AlarmService holds in the ":alarm" process and MainActivity in the main
+ * one, each through its own coordinator. Each process keeps its own private
+ * stats file; {@link #getStats} in the main process adds the alarm process's
+ * numbers in through AlarmProcessProvider. Hold times go to FireCost, which
+ * forwards main-process holds to the alarm process, and so does each span the
+ * CPU lock was held: tags overlap, so their sum overstates awake time.
+ */
+final class WakeLockCoordinator {
+
+    private static final String TAG = "WakeLockCoordinator";
+
+    static final String TAG_SERVICE = "service";          // AlarmService while ringing
+    static final String TAG_SERVICE_SCREEN = "serviceScreen"; // screen-on at fire, until the activity is up
+    static final String TAG_ACTIVITY = "activity";        // MainActivity showing a ringing alarm
+
+    /** Safety cap for alarm holds — matches MAX_RING_DURATION_MS in JS. */
+    static final long ALARM_TIMEOUT_MS = 20 * 60 * 1000L;
+
+    private static final String PREFS_NAME = "wakeai_wake_locks";
+    private static final String ALARM_PREFS_NAME = "wakeai_wake_locks_alarm";
+    private static final String KEY_HELD_MS_PREFIX = "heldMs:";
+    private static final String KEY_HOLDS_PREFIX = "holds:";
+    private static final String KEY_TIMEOUTS_PREFIX = "timeouts:";
+
+    /** One active hold. Also the Handler token of its timeout. */
+    private static final class Hold {
+        final String tag;
+        final boolean screen;
+        final long since;        // elapsedRealtime
+        long deadline;           // elapsedRealtime
+
+        Hold(String tag, boolean screen, long since, long deadline) {
+            this.tag = tag;
+            this.screen = screen;
+            this.since = since;
+            this.deadline = deadline;
+        }
+    }
+
+    private static final Handler handler = new Handler(Looper.getMainLooper());
+
+    // All guarded by the class lock
+    private static final Map<String, Hold> holds = new HashMap<>();
+    private static PowerManager.WakeLock cpuLock;
+    private static PowerManager.WakeLock screenLock;
+    private static SharedPreferences prefs;
+    private static Context appContext;
+    private static boolean listening;
+    private static long cpuHeldSince = -1;  // elapsedRealtime, -1 while released
+
+    private WakeLockCoordinator() {}
+
+    /** Take (or extend) a CPU hold for {@code tag}. */
+    static void acquire(Context context, String tag, long timeoutMs) {
+        acquire(context, tag, timeoutMs, false);
+    }
+
+    /** Take (or extend) a hold that also turns the screen on. */
+    static void acquireScreen(Context context, String tag, long timeoutMs) {
+        acquire(context, tag, timeoutMs, true);
+    }
+
+    static synchronized void release(String tag) {
+        Hold hold = holds.remove(tag);
+        if (hold == null) return;
+        end(hold, false);
+        update();
+    }
+
+    /** Drop every hold — the ring is over. */
+    static synchronized void releaseAll(String reason) {
+        if (holds.isEmpty()) return;
+        Log.i(TAG, "Releasing " + holds.keySet() + " (" + reason + ")");
+        for (Hold hold : holds.values()) {
+            end(hold, false);
+        }
+        holds.clear();
+        update();
+    }
+
+    /** Tags holding right now. */
+    static synchronized List<String> activeTags() {
+        return new ArrayList<>(holds.keySet());
+    }
+
+    /**
+     * Per-tag accounting: {@code heldMs}, {@code holds} and {@code timeouts},
+     * keyed by tag — across both processes when called in the main one, this
+     * process's own otherwise.
+     */
+    static Map<String, Map<String, Number>> getStats(Context context) {
+        Map<String, Map<String, Number>> stats;
+        synchronized (WakeLockCoordinator.class) {
+            load(context);
+            Map<String, Number> heldMs = new HashMap<>();
+            Map<String, Number> holdCounts = new HashMap<>();
+            Map<String, Number> timeouts = new HashMap<>();
+            for (Map.Entry<String, ?> entry : prefs.getAll().entrySet()) {
+                String key = entry.getKey();
+                Object value = entry.getValue();
+                if (key.startsWith(KEY_HELD_MS_PREFIX) && value instanceof Long) {
+                    add(heldMs, key.substring(KEY_HELD_MS_PREFIX.length()), (Long) value);
+                } else if (key.startsWith(KEY_HOLDS_PREFIX) && value instanceof Integer) {
+                    add(holdCounts, key.substring(KEY_HOLDS_PREFIX.length()), (Integer) value);
+                } else if (key.startsWith(KEY_TIMEOUTS_PREFIX) && value instanceof Integer) {
+                    add(timeouts, key.substring(KEY_TIMEOUTS_PREFIX.length()), (Integer) value);
+                }
+            }
+            stats = new HashMap<>();
+            stats.put("heldMs", heldMs);
+            stats.put("holds", holdCounts);
+            stats.put("timeouts", timeouts);
+        }
+        if (!WakeAIApplication.isAlarmProcess()) {
+            // Outside the lock: a binder round trip to the alarm process
+            Map<String, Map<String, Number>> alarm = AlarmProcessProvider.groups(
+                    context, AlarmProcessProvider.METHOD_WAKE_LOCK_STATS);
+            for (Map.Entry<String, Map<String, Number>> group : alarm.entrySet()) {
+                Map<String, Number> totals = stats.get(group.getKey());
+                if (totals == null) continue;
+                for (Map.Entry<String, Number> value : group.getValue().entrySet()) {
+                    add(totals, value.getKey(), value.getValue().longValue());
+                }
+            }
+        }
+        return stats;
+    }
+
+    // ── Internals ───────────────────────────────────────────────────────
+
+    private static void add(Map<String, Number> totals, String tag, long value) {
+        Number prev = totals.get(tag);
+        totals.put(tag, (prev != null ? prev.longValue() : 0) + value);
+    }
+
+    private static synchronized void acquire(Context context, String tag,
+                                             long timeoutMs, boolean screen) {
+        load(context);
+        init(context);
+        long now = SystemClock.elapsedRealtime();
+        Hold hold = holds.get(tag);
+        if (hold == null) {
+            hold = new Hold(tag, screen, now, now + timeoutMs);
+            holds.put(tag, hold);
+            Log.i(TAG, "+" + tag + " (" + holds.size() + " held)");
+        } else {
+            hold.deadline = Math.max(hold.deadline, now + timeoutMs);
+            handler.removeCallbacksAndMessages(hold);
+        }
+        scheduleTimeout(hold);
+        update();
+    }
+
+    private static void scheduleTimeout(final Hold hold) {
+        long uptimeAt = SystemClock.uptimeMillis()
+                + (hold.deadline - SystemClock.elapsedRealtime());
+        handler.postAtTime(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (WakeLockCoordinator.class) {
+                    if (holds.get(hold.tag) != hold) return;
+                    holds.remove(hold.tag);
+                    Log.w(TAG, hold.tag + " hit its timeout");
+                    end(hold, true);
+                    update();
+                }
+            }
+        }, hold, uptimeAt);
+    }
+
+    /** Bring the two PowerManager locks in line with the active holds. */
+    private static void update() {
+        long now = SystemClock.elapsedRealtime();
+        long cpuUntil = 0;
+        long screenUntil = 0;
+        for (Hold hold : holds.values()) {
+            cpuUntil = Math.max(cpuUntil, hold.deadline);
+            if (hold.screen) {
+                screenUntil = Math.max(screenUntil, hold.deadline);
+            }
+        }
+        apply(cpuLock, cpuUntil - now);
+        apply(screenLock, screenUntil - now);
+
+        // The span the CPU lock was actually held, whatever the tags behind it
+        if (cpuUntil > now) {
+            if (cpuHeldSince < 0) cpuHeldSince = now;
+        } else if (cpuHeldSince >= 0) {
+            FireCost.cpuAwake(appContext, cpuHeldSince, now);
+            cpuHeldSince = -1;
+        }
+    }
+
+    /** Locks are not reference counted, so acquire() again just moves the timeout. */
+    private static void apply(PowerManager.WakeLock lock, long remainingMs) {
+        if (lock == null) return;
+        try {
+            if (remainingMs > 0) {
+                lock.acquire(remainingMs);
+            } else if (lock.isHeld()) {
+                lock.release();
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Wake lock update failed", e);
+        }
+    }
+
+    private static void end(Hold hold, boolean timedOut) {
+        handler.removeCallbacksAndMessages(hold);
+        long heldMs = SystemClock.elapsedRealtime() - hold.since;
+        Log.i(TAG, "-" + hold.tag + " after " + heldMs + " ms" + (timedOut ? " (timeout)" : ""));
+        FireCost.wakeLockHeld(appContext, hold.tag, heldMs);
+        try {
+            SharedPreferences.Editor editor = prefs.edit()
+                    .putLong(KEY_HELD_MS_PREFIX + hold.tag,
+                            prefs.getLong(KEY_HELD_MS_PREFIX + hold.tag, 0) + heldMs)
+                    .putInt(KEY_HOLDS_PREFIX + hold.tag,
+                            prefs.getInt(KEY_HOLDS_PREFIX + hold.tag, 0) + 1);
+            if (timedOut) {
+                editor.putInt(KEY_TIMEOUTS_PREFIX + hold.tag,
+                        prefs.getInt(KEY_TIMEOUTS_PREFIX + hold.tag, 0) + 1);
+            }
+            editor.apply();
+        } catch (Exception e) {
+            // Stats must never keep a lock held
+            Log.w(TAG, "Could not record wake lock stats", e);
+        }
+    }
+
+    private static void load(Context context) {
+        if (prefs != null) return;
+        appContext = context.getApplicationContext();
+        // One file per process, each read and written only by its own process
+        prefs = DeviceProtectedStorage.context(context).getSharedPreferences(
+                WakeAIApplication.isAlarmProcess() ? ALARM_PREFS_NAME : PREFS_NAME,
+                Context.MODE_PRIVATE);
+    }
+
+    @SuppressWarnings("deprecation")
+    private static void init(Context context) {
+        if (cpuLock != null) return;
+        PowerManager pm = (PowerManager) context.getApplicationContext()
+                .getSystemService(Context.POWER_SERVICE);
+        if (pm != null) {
+            cpuLock = pm.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, "WakeAI::Alarm");
+            cpuLock.setReferenceCounted(false);
+            // SCREEN_BRIGHT_WAKE_LOCK is deprecated but ACQUIRE_CAUSES_WAKEUP only
+            // works with screen-level wake locks, and this is what stock alarm apps use.
+            screenLock = pm.newWakeLock(
+                    PowerManager.SCREEN_BRIGHT_WAKE_LOCK | PowerManager.ACQUIRE_CAUSES_WAKEUP,
+                    "WakeAI::AlarmScreenWake");
+            screenLock.setReferenceCounted(false);
+        }
+        if (!listening) {
+            listening = true;
+            AlarmStateBus.addListener(new AlarmStateBus.Listener() {
+                @Override
+                public void onAlarmState(AlarmStateBus.Event event) {
+                    if (AlarmStateBus.STATE_DISMISSED.equals(event.state)
+                            || AlarmStateBus.STATE_SNOOZED.equals(event.state)) {
+                        releaseAll(event.state);
+                    }
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.wakeai.app;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.webkit.WebView;
+
+/**
+ * Pre-alarm warm-up trigger.
+ *
+ * BootReceiver.scheduleAlarm() arms this a configurable lead time before the
+ * real trigger. Delivering it brings the main process up (Application init,
+ * AlarmStorage preload) and then:
+ *   1. starts the ":alarm" process, where AlarmReceiver and AlarmService run,
+ *      with a no-op AlarmProcessProvider call
+ *   2. decodes the tone the fire plan names into the on-disk cache, which
+ *      AlarmService memory-maps in the alarm process
+ *   3. creates and destroys a WebView, so the Chromium provider is loaded
+ *   4. publishes "warming" on AlarmStateBus, which lets a live JS bridge run
+ *      the question preload manager
+ * so the real fire only has to start playback and show the UI, provided the
+ * system keeps both processes cached until then.
+ *
+ * Armed with setExactAndAllowWhileIdle (inexact when exact alarms aren't
+ * allowed) rather than setAlarmClock, so it never shows up as the user's
+ * next alarm in the status bar.
+ */
+public class WarmUpReceiver extends BroadcastReceiver {
+
+    private static final String TAG = "WarmUpReceiver";
+
+    static final String ACTION_WARM_UP = "com.wakeai.app.WARM_UP";
+
+    private static final String PREFS_NAME = "wakeai_warm_up";
+    private static final String KEY_LEAD_MS = "lead_ms";
+
+    /** Default lead time — early enough to absorb a cold start, late enough to stay cached. */
+    static final long DEFAULT_LEAD_MS = 3 * 60 * 1000L;
+    /** No warm-up when the trigger is closer than this (or lead time is 0). */
+    private static final long MIN_LEAD_MS = 15 * 1000L;
+
+    /** PendingIntent request code — 0 is the real trigger, 1 its show-intent. */
+    private static final int REQUEST_CODE = 2;
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        if (!ACTION_WARM_UP.equals(intent.getAction())) return;
+
+        final Context app = context.getApplicationContext();
+        final FirePlan plan = FirePlan.fromIntent(app, intent);
+        final PendingResult pending = goAsync();
+        Log.i(TAG, "Warming up for alarm " + (plan != null ? plan.alarmId : "(unknown)"));
+
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long startNs = System.nanoTime();
+                AlarmProcessProvider.call(app, AlarmProcessProvider.METHOD_WARM_UP, null);
+                Log.i(TAG, "Alarm process up in "
+                        + (System.nanoTime() - startNs) / 1_000_000 + " ms");
+
+                startNs = System.nanoTime();
+                try {
+                    AlarmStorage.snapshot(app);
+                    int toneResId = plan != null ? plan.toneResId
+                            : AlarmService.getToneResourceId("gentle");
+                    ToneDecoder.prewarm(app, toneResId);
+                } catch (Exception e) {
+                    Log.w(TAG, "Warm-up preload failed", e);
+                }
+                Log.i(TAG, "Storage + tone warm in "
+                        + (System.nanoTime() - startNs) / 1_000_000 + " ms");
+
+                new Handler(Looper.getMainLooper()).post(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            warmWebView(app);
+                            AlarmStateBus.publish(AlarmStateBus.STATE_WARMING,
+                                    plan != null ? plan.alarmId : null,
+                                    plan != null ? plan.triggerAt : 0);
+                        } finally {
+                            pending.finish();
+                        }
+                    }
+                });
+            }
+        }, "WarmUp").start();
+    }
+
+    /**
+     * Arm (or re-arm) the warm-up for the plan that was just armed as the
+     * real trigger. Skipped when the trigger is too close to benefit.
+     */
+    static void arm(Context context, FirePlan plan) {
+        AlarmManager am = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        if (am == null) return;
+
+        long warmAt = plan.triggerAt - getLeadMs(context);
+        if (warmAt - System.currentTimeMillis() < MIN_LEAD_MS
+                || plan.triggerAt - warmAt < MIN_LEAD_MS) {
+            am.cancel(pendingIntent(context, null));
+            return;
+        }
+
+        PendingIntent pi = pendingIntent(context, plan);
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.S || am.canScheduleExactAlarms()) {
+            am.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, warmAt, pi);
+        } else {
+            am.setAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, warmAt, pi);
+        }
+        Log.i(TAG, "Warm-up for " + plan.alarmId + " armed at " + warmAt);
+    }
+
+    static void cancel(Context context) {
+        AlarmManager am = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        if (am != null) {
+            am.cancel(pendingIntent(context, null));
+        }
+    }
+
+    static long getLeadMs(Context context) {
+        return prefs(context).getLong(KEY_LEAD_MS, DEFAULT_LEAD_MS);
+    }
+
+    /** Takes effect the next time a trigger is armed. 0 disables the warm-up. */
+    static void setLeadMs(Context context, long leadMs) {
+        prefs(context).edit().putLong(KEY_LEAD_MS, Math.max(0, leadMs)).apply();
+    }
+
+    // ── Internals ───────────────────────────────────────────────────────
+
+    private static SharedPreferences prefs(Context context) {
+        return DeviceProtectedStorage.context(context)
+                .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /** Extras are not part of PendingIntent identity, so a bare intent cancels too. */
+    private static PendingIntent pendingIntent(Context context, FirePlan plan) {
+        Intent intent = new Intent(context, WarmUpReceiver.class);
+        intent.setAction(ACTION_WARM_UP);
+        if (plan != null) {
+            plan.writeTo(intent);
+        }
+        int piFlags = PendingIntent.FLAG_UPDATE_CURRENT;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            piFlags |= PendingIntent.FLAG_IMMUTABLE;
+        }
+        return PendingIntent.getBroadcast(context, REQUEST_CODE, intent, piFlags);
+    }
+
+    /** Load the WebView provider. Its data directory is credential-protected, so not before unlock. */
+    private static void warmWebView(Context context) {
+        if (!DeviceProtectedStorage.isUserUnlocked(context)) return;
+        long startNs = System.nanoTime();
+        try {
+            new WebView(context).destroy();
+            Log.i(TAG, "WebView provider warm in "
+                    + (System.nanoTime() - startNs) / 1_000_000 + " ms");
+        } catch (Exception e) {
+            Log.w(TAG, "WebView warm-up failed", e);
+        }
+    }
+}
@@ -92,14 +92,19 @@ import {
   removeNotificationListeners
 } from './services/alarm/alarmScheduler';
 import { initializeQuestionPool } from './services/llm/questionPool';
+import { syncNativePrefetch } from './services/llm/preloadManager';
+import { ensureNativeModel } from './services/llm/nativeGenerator';
 import { initializeModel, unloadModel } from './services/llm/webllm';
 import { initializeAds } from './services/ad';
-import { checkLaunchIntent, addAlarmFiredListener } from './services/alarm/nativeAlarm';
+import { checkLaunchIntent, addAlarmFiredListener, addAlarmStateListener } from './services/alarm/nativeAlarm';
 
 // Inner component that has access to navigation
 function AppContent() {
   const navigate = useNavigate();
   const initRef = useRef(false);
+  // True while an alarm-launched cold start is still ringing: heavy
+  // non-alarm work (ads, model, question pool) waits until it ends.
+  const alarmLaunchRef = useRef(false);
 
   useEffect(() => {
     // Prevent double initialization in strict mode
@@ -132,7 +137,7 @@ function AppContent() {
     // 2. Check if launched by alarm full-screen intent (cold start).
     //    MUST be awaited — without await, the home page renders first and
     //    the navigation to /alarm-ringing happens too late or not at all.
-    await checkNativeAlarmLaunch();
+    const launchedByAlarm = await checkNativeAlarmLaunch();
 
     // 3. Set up LocalNotification trigger callback + register Capacitor listeners.
     //    Awaited so queued events (from cold-start notification taps) are captured
@@ -141,14 +146,18 @@ function AppContent() {
 
     // ── Remaining init (non-alarm-critical) ──────────────────────────
 
-    // Start model loading — fire-and-forget so it runs in parallel
-    console.log('Starting model load...');
-    initializeModel().catch(err => {
-      console.warn('Model load failed:', err);
-    });
-
-    // Initialize AdMob SDK
-    await initializeAds();
+    // Alarm launch: the ringing screen only needs cached questions, so
+    // ads, the model and the question pool wait until the alarm ends.
+    if (launchedByAlarm) {
+      alarmLaunchRef.current = true;
+      deferUntilAlarmEnds(() => {
+        alarmLaunchRef.current = false;
+        console.log('[App] Alarm ended — running deferred init');
+        startDeferrableInit();
+      });
+    } else {
+      startDeferrableInit();
+    }
 
     // Set up notification channel for alarms
     await setupNotificationChannel();
@@ -159,13 +168,48 @@ function AppContent() {
     // Initialize background service (includes preload checking)
     await initializeBackgroundService();
 
+    console.log('WakeAI app initialized');
+  };
+
+  /**
+   * Heavy init the ringing screen doesn't need. Fire-and-forget.
+   */
+  const startDeferrableInit = () => {
+    // Start model loading — runs in parallel with the rest
+    console.log('Starting model load...');
+    initializeModel().catch(err => {
+      console.warn('Model load failed:', err);
+    });
+
+    // Initialize AdMob SDK
+    initializeAds();
+
     // Initialize question pool (loads model and generates questions in phases)
     console.log('Starting question pool initialization...');
     initializeQuestionPool().catch(err => {
       console.warn('Failed to initialize question pool:', err);
     });
 
-    console.log('WakeAI app initialized');
+    // Pick up questions the native prefetch job generated while we were away
+    syncNativePrefetch().catch(err => {
+      console.warn('Native prefetch sync failed:', err);
+    });
+
+    // No WebGPU: fetch the native generator's model (first run, or until it succeeds)
+    ensureNativeModel();
+  };
+
+  /**
+   * Run callback once the native alarm stops ringing (dismissed / snoozed).
+   */
+  const deferUntilAlarmEnds = (callback) => {
+    let done = false;
+    const remove = addAlarmStateListener((event) => {
+      if (done || event.ringing) return;
+      done = true;
+      remove();
+      callback();
+    });
   };
 
   const setupNotificationListeners = async () => {
@@ -220,8 +264,10 @@ function AppContent() {
         console.log('[App] App was launched by alarm — navigating to ringing');
         navigate('/alarm-ringing', { replace: true });
       }
+      return alarmFired;
     } catch (err) {
       console.warn('[App] checkLaunchIntent failed (expected on web):', err);
+      return false;
     }
   };
 
@@ -237,7 +283,9 @@ function AppContent() {
           return;
         }
 
-        // Reload model when app comes to foreground
+        // Reload model when app comes to foreground (not during an
+        // alarm launch — deferred init loads it once the alarm ends)
+        if (alarmLaunchRef.current) return;
         initializeModel().catch(err => {
           console.warn('Model reload on foreground failed:', err);
         });
@@ -1,10 +1,15 @@
 import { useEffect } from 'react';
 import { useNavigate } from 'react-router-dom';
 import { startAlarmMonitor, stopAlarmMonitor } from '../services/alarm/alarmTimer';
+import { isNativeAlarmAvailable, addAlarmStateListener } from '../services/alarm/nativeAlarm';
+import { getAlarm } from '../services/storage/alarmStorage';
 
 /**
  * Invisible component that monitors for alarm time and navigates to ringing page.
  * Must be rendered inside the Router to use useNavigate.
+ *
+ * On Android the native alarm state stream pushes the "ringing" transition,
+ * so no JS timer runs. On web the 1 Hz alarmTimer is the only trigger.
  */
 const AlarmMonitor = () => {
   const navigate = useNavigate();
@@ -20,7 +25,28 @@ const AlarmMonitor = () => {
       navigate('/alarm-ringing', { replace: true });
     };
 
-    startAlarmMonitor(handleAlarmFire);
+    if (isNativeAlarmAvailable()) {
+      // React once per ring: later events of the same ring (e.g. the next
+      // alarm being armed) still carry ringing: true.
+      let ringHandled = false;
+      return addAlarmStateListener((event) => {
+        if (!event.ringing) {
+          ringHandled = false;
+          // Snoozed natively (notification action) — leave the ringing page
+          if (event.state === 'snoozed' && window.location.pathname === '/alarm-ringing') {
+            navigate('/', { replace: true });
+          }
+          return;
+        }
+        if (ringHandled) return;
+        ringHandled = true;
+        if (window.location.pathname === '/alarm-ringing') return;
+        const alarm = getAlarm();
+        if (alarm) handleAlarmFire(alarm);
+      });
+    }
+
+    startAlarmMonitor((alarm) => handleAlarmFire({ ...alarm, triggerSource: 'jsTimer' }));
 
     return () => {
       stopAlarmMonitor();
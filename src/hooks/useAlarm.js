@@ -106,9 +106,15 @@ export function useAlarm() {
         if (ringingResult.ringing) {
           nativeHandlingAudio = true;
         } else {
-          // Native not ringing yet — start it directly from JS
-          await startNativeRinging();
-          nativeHandlingAudio = true;
+          // Native not ringing yet — start it directly from JS. If another
+          // trigger already claimed this fire, only trust native audio when
+          // the service is actually ringing; otherwise JS plays it.
+          const started = await startNativeRinging({
+            source: alarmToUse.triggerSource || 'js',
+            alarmId: alarmToUse.alarmId || alarmToUse.id,
+            triggerAt: alarmToUse.triggerAt,
+          });
+          nativeHandlingAudio = started || (await isNativeRinging()).ringing;
         }
       } catch (err) {
         console.error('Failed to start native ringing:', err);
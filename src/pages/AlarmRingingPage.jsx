@@ -14,6 +14,8 @@ import { getQuestionSet, deleteQuestionSet, getRequiredQuestionCount } from '../
 import { prepareQuestionsForAlarm } from '../services/alarm/alarmManager';
 import { getAlarm } from '../services/storage/alarmStorage';
 import { lockVolume, unlockVolume } from '../services/alarm/volumeGuard';
+import { ringingScreenReady } from '../services/alarm/nativeAlarm';
+import { markQuestionsSeen } from '../services/llm/seenQuestions';
 
 const STATES = {
   RINGING: 'ringing',
@@ -83,6 +85,11 @@ export default function AlarmRingingPage() {
     return () => unlockVolume();
   }, []);
 
+  // Report first meaningful render to native (alarm-launch fully-drawn timing)
+  useEffect(() => {
+    ringingScreenReady().catch(() => {});
+  }, []);
+
   // Initialize alarm on mount
   useEffect(() => {
     if (alarmData && !alarmDataRef.current) {
@@ -221,10 +228,16 @@ export default function AlarmRingingPage() {
     }
   }, [correctCount, wrongCount, requiredCorrect, answerQuestion, handleSuccess, handleFailure]);
 
+  // Remember what was shown, so it isn't asked again on another morning
+  const markShownQuestionsSeen = useCallback(() => {
+    markQuestionsSeen(questions.slice(0, currentQuestionIndex + 1));
+  }, [questions, currentQuestionIndex]);
+
   // Handle kill switch
   const handleKillSwitch = useCallback(async () => {
     clearTimeout(timeoutRef.current);
     unlockVolume();
+    markShownQuestionsSeen();
     await dismiss('kill');
     // Reset alarm firing flag so future alarms can fire
     resetAlarmFiring();
@@ -242,11 +255,12 @@ export default function AlarmRingingPage() {
     }
 
     navigate('/', { replace: true });
-  }, [dismiss, navigate]);
+  }, [dismiss, navigate, markShownQuestionsSeen]);
 
   // Handle close (after success or failure)
   const handleClose = useCallback(() => {
     unlockVolume();
+    markShownQuestionsSeen();
     // Reset alarm firing flag so future alarms can fire
     resetAlarmFiring();
     // Clear session storage
@@ -263,7 +277,7 @@ export default function AlarmRingingPage() {
     }
 
     navigate('/', { replace: true });
-  }, [navigate]);
+  }, [navigate, markShownQuestionsSeen]);
 
   // Get current question
   const currentQuestion = questions[currentQuestionIndex];
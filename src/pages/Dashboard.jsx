@@ -1,14 +1,31 @@
-import { useState } from 'react';
+import { useState, useEffect } from 'react';
 import { useNavigate } from 'react-router-dom';
 import { useStats } from '../hooks/useStats';
 import { useRewardedAd } from '../hooks/useAds';
 import { Card } from '../components/common';
+import { getFireCosts } from '../services/alarm/nativeAlarm';
+import { getGenerationStats } from '../services/storage/statsStorage';
+
+function formatDuration(ms) {
+  if (ms < 1000) return `${ms} ms`;
+  const seconds = Math.round(ms / 1000);
+  if (seconds < 60) return `${seconds} s`;
+  return `${Math.floor(seconds / 60)} min ${seconds % 60} s`;
+}
 
 export default function Dashboard() {
   const navigate = useNavigate();
   const { stats } = useStats();
   const { showRewardedAd, isRewardedReady, rewarded } = useRewardedAd();
   const [hasWatchedAd, setHasWatchedAd] = useState(false);
+  const [fireCosts, setFireCosts] = useState(null);
+  const [generationStats] = useState(getGenerationStats);
+
+  useEffect(() => {
+    getFireCosts()
+      .then(setFireCosts)
+      .catch(err => console.warn('[Dashboard] getFireCosts failed:', err));
+  }, []);
 
   const statsUnlocked = rewarded || hasWatchedAd;
 
@@ -231,6 +248,58 @@ export default function Dashboard() {
                 )}
               </div>
             </Card>
+
+            {/* Battery impact */}
+            {(fireCosts?.fires > 0 || generationStats.runs > 0) && (
+              <Card>
+                <h2 className="text-xs font-medium text-[#636363] uppercase tracking-wide mb-4">
+                  Battery Impact
+                </h2>
+                <div className="space-y-3">
+                  {fireCosts?.fires > 0 && (
+                    <>
+                      <div className="p-3 bg-[#161616] rounded-xl">
+                        <div className="text-sm text-[#636363]">
+                          Avg. ringing time per alarm
+                        </div>
+                        <div className="text-lg font-semibold text-[#F1F1F1]">
+                          {formatDuration(fireCosts.averages.ringMs)}
+                        </div>
+                      </div>
+
+                      <div className="p-3 bg-[#161616] rounded-xl">
+                        <div className="text-sm text-[#636363]">
+                          Avg. CPU time per alarm
+                        </div>
+                        <div className="text-lg font-semibold text-[#F1F1F1]">
+                          {formatDuration(fireCosts.averages.cpuMs)}
+                        </div>
+                      </div>
+
+                      <div className="p-3 bg-[#161616] rounded-xl">
+                        <div className="text-sm text-[#636363]">
+                          Avg. device kept awake per alarm
+                        </div>
+                        <div className="text-lg font-semibold text-[#F1F1F1]">
+                          {formatDuration(fireCosts.averages.awakeMs)}
+                        </div>
+                      </div>
+                    </>
+                  )}
+
+                  {generationStats.runs > 0 && (
+                    <div className="p-3 bg-[#161616] rounded-xl">
+                      <div className="text-sm text-[#636363]">
+                        Question generation ({generationStats.questions} questions)
+                      </div>
+                      <div className="text-lg font-semibold text-[#F1F1F1]">
+                        {formatDuration(generationStats.totalMs)}
+                      </div>
+                    </div>
+                  )}
+                </div>
+              </Card>
+            )}
           </>
         )}
       </div>
@@ -14,6 +14,10 @@ import {
 // Capacitor's LocalNotification fires, the notification plays on STREAM_ALARM.
 const ALARM_CHANNEL_ID = 'wakeai_alarm_fallback_channel';
 
+// WakeAI alarms ring every day. Native re-arms each next occurrence itself
+// (after every fire, on boot and on clock / time-zone changes).
+const EVERY_DAY = [0, 1, 2, 3, 4, 5, 6];
+
 let notificationListenerRegistered = false;
 let onAlarmTriggerCallback = null;
 
@@ -58,7 +62,7 @@ export async function setupNotificationListeners() {
     await LocalNotifications.addListener('localNotificationActionPerformed', (notification) => {
       const alarmData = notification.notification.extra;
       if (onAlarmTriggerCallback && alarmData) {
-        onAlarmTriggerCallback(alarmData);
+        onAlarmTriggerCallback({ ...alarmData, triggerSource: 'localNotification' });
       }
     });
 
@@ -66,7 +70,7 @@ export async function setupNotificationListeners() {
     await LocalNotifications.addListener('localNotificationReceived', (notification) => {
       const alarmData = notification.extra;
       if (onAlarmTriggerCallback && alarmData) {
-        onAlarmTriggerCallback(alarmData);
+        onAlarmTriggerCallback({ ...alarmData, triggerSource: 'localNotification' });
       }
     });
 
@@ -112,7 +116,10 @@ export async function scheduleAlarm(alarm) {
           time: alarm.time,
           tone: toneName,
           vibration: settings.vibrationEnabled !== false,
-          triggerAt
+          triggerAt,
+          repeatDays: EVERY_DAY,
+          // Already rang today — the rule must not ring again today
+          skipDates: alarm.lastFiredDate ? [alarm.lastFiredDate] : []
         });
         console.log('[AlarmScheduler] Native alarm scheduled for', alarmDate.toLocaleString());
       } catch (nativeErr) {
@@ -147,6 +154,7 @@ export async function scheduleAlarm(alarm) {
             difficulty: alarm.difficulty,
             tone: toneName,
             vibration: settings.vibrationEnabled !== false,
+            triggerAt,
             type: 'alarm'
           },
           ongoing: true,
@@ -170,7 +178,7 @@ export async function cancelAlarm(alarmId) {
 
   // Cancel each path independently — one failing must not block the other
   try {
-    await cancelNativeAlarm();
+    await cancelNativeAlarm(alarmId);
   } catch (err) {
     console.warn('Failed to cancel native alarm:', err);
   }
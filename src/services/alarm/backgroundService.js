@@ -19,10 +19,13 @@
  */
 
 import { App } from '@capacitor/app';
+import { addAlarmStateListener } from './nativeAlarm';
+import { forcePreload } from '../llm/preloadManager';
 
 // Track listener handles for proper cleanup (avoid removing unrelated listeners)
 let appStateChangeListener = null;
 let appUrlOpenListener = null;
+let removeAlarmStateListener = null;
 
 /**
  * Initialize background services and listeners
@@ -52,6 +55,19 @@ async function setupAppStateListeners() {
   appUrlOpenListener = await App.addListener('appUrlOpen', async (event) => {
     console.log('[BackgroundService] App opened via URL:', event.url);
   });
+
+  // Native pre-alarm warm-up: fill the question cache while the alarm is
+  // still minutes away, so the ringing screen never waits on generation.
+  // Only reaches us if the WebView is alive at warm-up time.
+  removeAlarmStateListener = addAlarmStateListener((event) => {
+    if (event.state !== 'warming') return;
+    // Skip a replayed warm-up that is already past its alarm
+    if (event.triggerAt && event.triggerAt <= Date.now()) return;
+    console.log('[BackgroundService] Native warm-up — preloading questions');
+    forcePreload().catch((err) => {
+      console.warn('[BackgroundService] Warm-up preload failed:', err);
+    });
+  });
 }
 
 /**
@@ -81,6 +97,10 @@ export async function cleanupBackgroundService() {
     await appUrlOpenListener.remove();
     appUrlOpenListener = null;
   }
+  if (removeAlarmStateListener) {
+    removeAlarmStateListener();
+    removeAlarmStateListener = null;
+  }
 }
 
 export default {
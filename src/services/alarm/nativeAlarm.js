@@ -14,26 +14,52 @@ export function isNativeAlarmAvailable() {
 /**
  * Schedule an alarm via native AlarmManager.setAlarmClock().
  *
+ * A repeating alarm (repeatDays) is re-armed natively for each next
+ * occurrence — after every fire, on boot and on clock / time-zone changes.
+ *
  * @param {Object} opts
  * @param {string} opts.alarmId    - Unique alarm ID
  * @param {string} opts.time       - Alarm time "HH:mm"
  * @param {string} opts.tone       - Tone name (e.g. "gentle")
  * @param {boolean} opts.vibration - Whether vibration is enabled
- * @param {number} opts.triggerAt  - Epoch millis when alarm should fire
+ * @param {number} [opts.triggerAt]    - Epoch millis of the first fire (computed natively when omitted for a repeating alarm)
+ * @param {number[]} [opts.repeatDays] - Weekdays to ring on, 0 = Sunday … 6 (Date.getDay())
+ * @param {string[]} [opts.skipDates]  - Local dates "YYYY-MM-DD" not to ring on
  */
-export async function scheduleNativeAlarm({ alarmId, time, tone, vibration, triggerAt }) {
+export async function scheduleNativeAlarm({ alarmId, time, tone, vibration, triggerAt, repeatDays = [], skipDates = [] }) {
   if (!isNativeAlarmAvailable()) return;
-  await WakeAIAlarm.schedule({ alarmId, time, tone, vibration, triggerAt });
-  console.log('[NativeAlarm] Scheduled:', alarmId, 'at', new Date(triggerAt).toLocaleString());
+  await WakeAIAlarm.schedule({ alarmId, time, tone, vibration, triggerAt, repeatDays, skipDates });
+  console.log('[NativeAlarm] Scheduled:', alarmId, 'at',
+    triggerAt ? new Date(triggerAt).toLocaleString() : 'next occurrence of ' + time);
 }
 
 /**
- * Cancel the currently scheduled native alarm.
+ * Cancel a scheduled native alarm.
+ *
+ * @param {string} [alarmId] - Alarm to cancel. Omit to cancel every native alarm.
  */
-export async function cancelNativeAlarm() {
+export async function cancelNativeAlarm(alarmId) {
   if (!isNativeAlarmAvailable()) return;
-  await WakeAIAlarm.cancel();
-  console.log('[NativeAlarm] Cancelled');
+  await WakeAIAlarm.cancel(alarmId ? { alarmId } : {});
+  console.log('[NativeAlarm] Cancelled', alarmId || '(all)');
+}
+
+/**
+ * Apply many schedule/cancel operations in one bridge call. Native persists
+ * them in a single write and re-arms AlarmManager at most once.
+ *
+ * @param {Object} opts
+ * @param {Array<Object>} [opts.upserts] - Same shape as scheduleNativeAlarm() options
+ * @param {string[]} [opts.deletes]      - Alarm IDs to cancel
+ * @returns {Promise<Array<{alarmId: string, op: string, ok: boolean, error?: string}>>}
+ */
+export async function scheduleNativeAlarmBatch({ upserts = [], deletes = [] } = {}) {
+  if (!isNativeAlarmAvailable()) return [];
+  const { results } = await WakeAIAlarm.scheduleBatch({ upserts, deletes });
+  const failed = results.filter((r) => !r.ok);
+  console.log('[NativeAlarm] Batch applied:', upserts.length, 'upsert(s),',
+    deletes.length, 'delete(s),', failed.length, 'failed');
+  return results;
 }
 
 /**
@@ -44,11 +70,56 @@ export async function cancelNativeAlarm() {
  *
  * Call this from useAlarm.startAlarm() so native audio always handles playback
  * on Android instead of JS Howler.js/Web Audio (which uses STREAM_MUSIC).
+ *
+ * Native arbitration collapses triggers for the same fire: if another path
+ * (usually AlarmManager) already fired this alarm, nothing is started.
+ *
+ * @param {Object} [opts]
+ * @param {string} [opts.source]    - Trigger path: 'localNotification' | 'jsTimer' | 'js'
+ * @param {string} [opts.alarmId]   - Alarm being triggered, if known
+ * @param {number} [opts.triggerAt] - Scheduled epoch millis, if known
+ * @returns {Promise<boolean>} Whether this call started the alarm
  */
-export async function startNativeRinging() {
-  if (!isNativeAlarmAvailable()) return;
-  await WakeAIAlarm.ring();
-  console.log('[NativeAlarm] Native ringing started via ring()');
+export async function startNativeRinging({ source = 'js', alarmId, triggerAt } = {}) {
+  if (!isNativeAlarmAvailable()) return false;
+  const { started } = await WakeAIAlarm.ring({ source, alarmId, triggerAt });
+  console.log('[NativeAlarm] ring() from', source, started ? 'started alarm' : 'collapsed into earlier fire');
+  return started;
+}
+
+/**
+ * Per-device trigger arbitration stats: which path won each fire and how
+ * many later triggers were suppressed.
+ * Returns { windowMs, wins: { [source]: n }, suppressed: { [source]: n } }.
+ */
+export async function getTriggerStats() {
+  if (!isNativeAlarmAvailable()) return { windowMs: 0, wins: {}, suppressed: {} };
+  return WakeAIAlarm.getTriggerStats();
+}
+
+/**
+ * Native wake lock accounting, per device: total held time, hold count and
+ * safety-timeout count per tag (service, serviceScreen, activity).
+ * Returns { active: [tag], heldMs: { [tag]: ms }, holds: { [tag]: n }, timeouts: { [tag]: n } }.
+ */
+export async function getWakeLockStats() {
+  if (!isNativeAlarmAvailable()) return { active: [], heldMs: {}, holds: {}, timeouts: {} };
+  return WakeAIAlarm.getWakeLockStats();
+}
+
+/**
+ * Per-fire resource cost of ringing (process CPU, ring / audio / vibration
+ * time, wake-lock time per tag, peak heap) with totals and per-fire averages.
+ * Returns { fires, totals, averages, wakeLockMs, peakJavaHeapKb, peakNativeHeapKb, records }.
+ * totals / averages.awakeMs is the time the device was kept awake; their
+ * wakeLockMs sums overlapping per-tag holds, so it is larger.
+ *
+ * @param {Object} [opts]
+ * @param {boolean} [opts.clear] - Clear the native records after reading
+ */
+export async function getFireCosts({ clear = false } = {}) {
+  if (!isNativeAlarmAvailable()) return null;
+  return WakeAIAlarm.getFireCosts({ clear });
 }
 
 /**
@@ -61,9 +132,35 @@ export async function dismissNativeAlarm() {
   console.log('[NativeAlarm] Dismissed');
 }
 
+/**
+ * Snooze the ringing alarm natively: stops audio + vibration and re-arms the
+ * same alarm for now + interval without any JS scheduling.
+ *
+ * @param {number} [intervalMs] - Defaults to the native snooze interval
+ * @returns {Promise<{snoozed: boolean, alarmId?: string, triggerAt?: number}>}
+ */
+export async function snoozeNativeAlarm(intervalMs) {
+  if (!isNativeAlarmAvailable()) return { snoozed: false };
+  const result = await WakeAIAlarm.snooze(intervalMs ? { intervalMs } : {});
+  console.log('[NativeAlarm] Snoozed:', result.alarmId, 'until',
+    result.triggerAt ? new Date(result.triggerAt).toLocaleString() : '-');
+  return result;
+}
+
+/**
+ * Set the snooze interval used by the notification's Snooze action.
+ *
+ * @param {number} intervalMs
+ */
+export async function setSnoozeInterval(intervalMs) {
+  if (!isNativeAlarmAvailable()) return;
+  await WakeAIAlarm.setSnoozeInterval({ intervalMs });
+}
+
 /**
  * Check if the app was launched by an alarm full-screen intent (cold start).
- * Returns { alarmFired: boolean }.
+ * Returns { alarmFired: boolean, state } — alarmFired stays true while the
+ * alarm is ringing; state is the latest alarmState event.
  */
 export async function checkLaunchIntent() {
   if (!isNativeAlarmAvailable()) return { alarmFired: false };
@@ -72,8 +169,17 @@ export async function checkLaunchIntent() {
 }
 
 /**
- * Check if the native alarm service is currently ringing.
- * Returns { ringing: boolean }.
+ * Tell native the ringing screen has rendered (reports time-to-fully-drawn).
+ */
+export async function ringingScreenReady() {
+  if (!isNativeAlarmAvailable()) return;
+  await WakeAIAlarm.ringingScreenReady();
+}
+
+/**
+ * Check if the native alarm service is currently ringing (or starting).
+ * Returns { ringing: boolean, phase, duplicateStarts, lateStartsRejected } —
+ * phase is idle | starting | ringing | stopping; the counters are per process.
  */
 export async function isNativeRinging() {
   if (!isNativeAlarmAvailable()) return { ringing: false };
@@ -81,9 +187,57 @@ export async function isNativeRinging() {
   return result;
 }
 
+/**
+ * Read the native fire-path latency traces (oldest first).
+ * Returns { device: { manufacturer, model, sdkInt }, traces: [...] } where each
+ * trace has latenessMs, timeToSoundMs and per-stage offsets in ms (-1 = not reached).
+ *
+ * @param {Object} [opts]
+ * @param {boolean} [opts.clear] - Clear the native ring buffer after reading
+ */
+export async function getFireTraces({ clear = false } = {}) {
+  if (!isNativeAlarmAvailable()) return { device: null, traces: [] };
+  return WakeAIAlarm.getFireTraces({ clear });
+}
+
+/**
+ * Set how long before each alarm the native warm-up trigger runs (process
+ * start, tone + WebView preload, "warming" state event). 0 disables it.
+ *
+ * @param {number} leadMs
+ */
+export async function setWarmUpLead(leadMs) {
+  if (!isNativeAlarmAvailable()) return;
+  await WakeAIAlarm.setWarmUpLead({ leadMs });
+}
+
+/**
+ * Subscribe to native alarm state transitions (scheduled, armed, warming,
+ * ringing, dismissed, snoozed, idle). The retained latest state is replayed on
+ * subscribe, and events are delivered at most once in seq order.
+ *
+ * @param {Function} callback - Called with { seq, state, alarmId, triggerAt, at, ringing }
+ * @returns {Function} Remove listener
+ */
+export function addAlarmStateListener(callback) {
+  if (!isNativeAlarmAvailable()) return () => {};
+  let lastSeq = 0;
+  const deliver = (event) => {
+    if (!event || event.seq <= lastSeq) return;
+    lastSeq = event.seq;
+    callback(event);
+  };
+  const handle = WakeAIAlarm.addListener('alarmState', deliver);
+  WakeAIAlarm.getAlarmState()
+    .then(deliver)
+    .catch((err) => console.warn('[NativeAlarm] getAlarmState failed:', err));
+  return () => handle.then ? handle.then(h => h.remove()) : handle.remove();
+}
+
 /**
  * Add listener for when an alarm fires while the app is running (warm start).
- * @param {Function} callback - Called with { alarmFired, alarmId, time }
+ * @param {Function} callback - Called with { alarmFired, alarmId?, time? } — alarmId
+ *   and time are absent when native doesn't know which alarm fired
  * @returns {Function} Remove listener
  */
 export function addAlarmFiredListener(callback) {
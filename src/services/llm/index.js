@@ -2,5 +2,7 @@ export * from './fallbackQuestions';
 export * from './questionCache';
 export * from './webllm';
 export * from './questionGenerator';
+export * from './nativeGenerator';
+export * from './seenQuestions';
 export * from './preloadManager';
 export * from './questionService';
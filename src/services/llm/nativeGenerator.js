@@ -0,0 +1,155 @@
+import { Capacitor, registerPlugin } from '@capacitor/core';
+import { recordGeneration } from '../storage/statsStorage';
+import { NATIVE_QUESTION_MODEL } from '../../utils/constants';
+
+const QuestionGenerator = registerPlugin('QuestionGenerator');
+
+// getStatus() is cheap but crosses the bridge; it only changes on installModel
+let cachedStatus = null;
+
+/**
+ * Native CPU generator status.
+ * @returns {Promise<{supported: boolean, modelInstalled: boolean, modelBytes: number}>}
+ */
+export async function getNativeGeneratorStatus() {
+  if (!Capacitor.isNativePlatform()) {
+    return { supported: false, modelInstalled: false, modelBytes: 0 };
+  }
+  if (cachedStatus) return cachedStatus;
+  try {
+    cachedStatus = await QuestionGenerator.getStatus();
+  } catch (e) {
+    console.warn('[NativeGenerator] getStatus failed:', e.message);
+    return { supported: false, modelInstalled: false, modelBytes: 0 };
+  }
+  return cachedStatus;
+}
+
+/**
+ * True when questions can be generated natively (Android 7+, model installed).
+ */
+export async function isNativeGeneratorAvailable() {
+  const status = await getNativeGeneratorStatus();
+  return status.supported && status.modelInstalled;
+}
+
+/**
+ * Generate questions on the CPU in the native generator process.
+ * Questions are validated natively and have the same shape as WebLLM ones.
+ *
+ * @param {string[]} categories - Cycled through, one question each
+ * @param {number} count
+ * @param {Object} [options]
+ * @param {Function} [options.onQuestion] - Called with each question as soon as it is ready
+ * @param {number} [options.temperature]
+ * @returns {Promise<Object[]|null>} Questions, or null when none could be generated
+ */
+export async function generateBatchNative(categories, count, { onQuestion, temperature } = {}) {
+  const requestId = `native-${Date.now()}-${Math.random().toString(36).slice(2, 8)}`;
+  let handle = null;
+
+  if (onQuestion) {
+    handle = await QuestionGenerator.addListener('question', (event) => {
+      if (event.requestId === requestId) onQuestion(event.question);
+    });
+  }
+
+  try {
+    const result = await QuestionGenerator.generateBatch({
+      requestId,
+      categories: Array.isArray(categories) ? categories : [categories],
+      count,
+      ...(temperature !== undefined ? { temperature } : {})
+    });
+    console.log('[NativeGenerator]', result.generated, 'generated,', result.failed,
+      'failed in', result.durationMs, 'ms (load', result.loadMs, 'ms)');
+    recordGeneration(result.durationMs, result.generated);
+    return result.questions.length > 0 ? result.questions : null;
+  } catch (e) {
+    console.warn('[NativeGenerator] generateBatch failed:', e.message);
+    return null;
+  } finally {
+    if (handle) handle.remove();
+  }
+}
+
+/**
+ * Download the pinned .task model file; native checks its SHA-256 before
+ * installing it. Progress events: { receivedBytes, totalBytes }.
+ */
+export async function installNativeModel(onProgress) {
+  const { url, sha256 } = NATIVE_QUESTION_MODEL;
+  const handle = onProgress
+    ? await QuestionGenerator.addListener('modelProgress', onProgress)
+    : null;
+  try {
+    const result = await QuestionGenerator.installModel({ url, sha256 });
+    cachedStatus = null;
+    return result;
+  } finally {
+    if (handle) handle.remove();
+  }
+}
+
+let modelInstall = null;
+
+/**
+ * First run on a device without WebGPU: install the native model in the
+ * background so later alarms get generated questions. Once per app start.
+ */
+export function ensureNativeModel() {
+  if (!modelInstall) {
+    modelInstall = (async () => {
+      if (typeof navigator !== 'undefined' && navigator.gpu) return false;
+      if (!NATIVE_QUESTION_MODEL.sha256) return false;
+      const status = await getNativeGeneratorStatus();
+      if (!status.supported || status.modelInstalled) return false;
+      try {
+        const { modelBytes } = await installNativeModel();
+        console.log('[NativeGenerator] Model installed:', modelBytes, 'bytes');
+        return true;
+      } catch (e) {
+        console.warn('[NativeGenerator] Model install failed:', e.message);
+        return false;
+      }
+    })();
+  }
+  return modelInstall;
+}
+
+/**
+ * Tell the native night-before prefetch job what to keep ready.
+ */
+export async function setPrefetchSpec(categories, count) {
+  if (!Capacitor.isNativePlatform()) return;
+  try {
+    await QuestionGenerator.setPrefetchSpec({ categories, count });
+  } catch (e) {
+    console.warn('[NativeGenerator] setPrefetchSpec failed:', e.message);
+  }
+}
+
+/**
+ * Add the native prefetch job's finished runs to the generation stats.
+ */
+export async function collectPrefetchRuns() {
+  if (!Capacitor.isNativePlatform()) return;
+  try {
+    const { runs } = await QuestionGenerator.takePrefetchRuns();
+    for (const run of runs) {
+      recordGeneration(run.durationMs, run.generated);
+    }
+  } catch (e) {
+    console.warn('[NativeGenerator] takePrefetchRuns failed:', e.message);
+  }
+}
+
+export default {
+  getNativeGeneratorStatus,
+  isNativeGeneratorAvailable,
+  generateBatchNative,
+  installNativeModel,
+  ensureNativeModel,
+  setPrefetchSpec,
+  collectPrefetchRuns
+};
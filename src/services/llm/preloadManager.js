@@ -2,18 +2,21 @@ import { getAlarm } from '../storage/alarmStorage';
 import { getSettings } from '../storage/settingsStorage';
 import {
   cacheQuestions,
-  getCachedQuestions,
-  clearCache,
-  hasSufficientQuestions
+  getCachedCount,
+  hasSufficientQuestions,
+  pruneCache,
+  takeQuestions
 } from './questionCache';
 import { getRandomFallbackQuestions } from './fallbackQuestions';
-import { generateQuestionBatch } from './questionGenerator';
-import { isModelReady } from './webllm';
+import { canGenerateQuestions, generateQuestionBatch } from './questionGenerator';
+import { collectPrefetchRuns, setPrefetchSpec } from './nativeGenerator';
+import { preferUnseen } from './seenQuestions';
 import { getNextAlarmDate, getMsUntilTime } from '../../utils/timeUtils';
 import { DIFFICULTY, PRELOAD_BEFORE_ALARM_MS, QUESTION_CACHE_SIZE } from '../../utils/constants';
 
 const CACHE_MAX_AGE_MS = 24 * 60 * 60 * 1000; // 24 hours
 const BUFFER_QUESTIONS = 5; // Extra questions for wrong answers
+const FALLBACK_SAMPLE_FACTOR = 4; // Fallback questions drawn per one needed, to skip seen ones
 
 let lastPreloadCheck = 0;
 const MIN_CHECK_INTERVAL_MS = 60 * 1000; // Don't check more than once per minute
@@ -63,19 +66,23 @@ export async function preloadForAlarm(alarm) {
   const requiredQuestions = DIFFICULTY[difficulty]?.questions || 1;
   const neededCount = (requiredQuestions * 2) + BUFFER_QUESTIONS; // Double for safety + buffer
 
+  // Keep the native prefetch job's target current; what it generated is already cached
+  setPrefetchSpec(categories, neededCount);
+  collectPrefetchRuns();
+
   // Check if we already have enough cached questions
-  if (hasSufficientQuestions(neededCount)) {
-    return { success: true, source: 'cache', count: getCachedQuestions().length };
+  if (await hasSufficientQuestions(neededCount)) {
+    return { success: true, source: 'cache', count: await getCachedCount() };
   }
 
   // Clear old cache before adding new questions
-  clearOldCache();
+  await clearOldCache();
 
   let questions = [];
   let source = 'none';
 
-  // Try to generate with LLM
-  if (isModelReady()) {
+  // Try to generate with LLM (WebLLM, or the native CPU generator)
+  if (await canGenerateQuestions()) {
     try {
       const generated = await generateQuestionBatch(categories, neededCount);
       if (generated && generated.length > 0) {
@@ -87,9 +94,13 @@ export async function preloadForAlarm(alarm) {
     }
   }
 
-  // Fallback to pre-written questions
+  // Fallback to pre-written questions, ones the user hasn't seen first
   if (questions.length < neededCount) {
-    const fallback = getRandomFallbackQuestions(categories, neededCount - questions.length);
+    const missing = neededCount - questions.length;
+    const fallback = await preferUnseen(
+      getRandomFallbackQuestions(categories, missing * FALLBACK_SAMPLE_FACTOR),
+      missing
+    );
     questions = [...questions, ...fallback];
     source = questions.length > 0 && source === 'llm' ? 'mixed' : 'fallback';
   }
@@ -101,7 +112,7 @@ export async function preloadForAlarm(alarm) {
       ...q,
       cachedAt: Date.now()
     }));
-    cacheQuestions(timestampedQuestions);
+    await cacheQuestions(timestampedQuestions);
   }
 
   return {
@@ -113,25 +124,35 @@ export async function preloadForAlarm(alarm) {
 }
 
 /**
- * Get questions for an alarm session
+ * Keep the native prefetch job in step with the active alarm and settings,
+ * and add the runs it finished meanwhile to the generation stats.
+ * Call on app start.
+ */
+export async function syncNativePrefetch() {
+  await collectPrefetchRuns();
+  const alarm = getAlarm();
+  if (!alarm || !alarm.enabled) return;
+  const settings = getSettings();
+  const difficulty = alarm.difficulty || settings.difficulty || 'EASY';
+  const requiredQuestions = DIFFICULTY[difficulty]?.questions || 1;
+  await setPrefetchSpec(
+    settings.selectedCategories || ['math'],
+    (requiredQuestions * 2) + BUFFER_QUESTIONS
+  );
+}
+
+/**
+ * Get questions for an alarm session. Takes them out of the cache in one
+ * call: requested categories first, then any cached category.
  */
-export function getQuestionsForSession(difficulty, categories) {
+export async function getQuestionsForSession(difficulty, categories) {
   const requiredQuestions = DIFFICULTY[difficulty]?.questions || 1;
   const neededCount = requiredQuestions + BUFFER_QUESTIONS;
   const categoriesList = Array.isArray(categories) ? categories : [categories];
 
-  // Get cached questions
-  let cached = getCachedQuestions();
+  let questions = await takeQuestions(neededCount, categoriesList);
 
-  // Filter by categories if we have enough
-  let questions = cached.filter(q => categoriesList.includes(q.category));
-
-  // If not enough category-specific questions, use all cached
-  if (questions.length < neededCount) {
-    questions = cached;
-  }
-
-  // If still not enough, supplement with fallback
+  // If not enough, supplement with fallback
   if (questions.length < neededCount) {
     const fallback = getRandomFallbackQuestions(categoriesList, neededCount - questions.length);
     questions = [...questions, ...fallback];
@@ -163,21 +184,8 @@ export function getQuestionsForSession(difficulty, categories) {
 /**
  * Clear cached questions older than 24 hours
  */
-export function clearOldCache() {
-  const cached = getCachedQuestions();
-  const now = Date.now();
-
-  const validQuestions = cached.filter(q => {
-    if (!q.cachedAt) return true; // Keep questions without timestamp
-    return now - q.cachedAt < CACHE_MAX_AGE_MS;
-  });
-
-  if (validQuestions.length < cached.length) {
-    clearCache();
-    if (validQuestions.length > 0) {
-      cacheQuestions(validQuestions);
-    }
-  }
+export async function clearOldCache() {
+  return pruneCache(CACHE_MAX_AGE_MS);
 }
 
 /**
@@ -196,8 +204,7 @@ export async function forcePreload() {
 /**
  * Get preload status for UI
  */
-export function getPreloadStatus() {
-  const cached = getCachedQuestions();
+export async function getPreloadStatus() {
   const alarm = getAlarm();
 
   if (!alarm || !alarm.enabled) {
@@ -208,13 +215,14 @@ export function getPreloadStatus() {
   const difficulty = alarm.difficulty || settings.difficulty || 'EASY';
   const requiredQuestions = DIFFICULTY[difficulty]?.questions || 1;
   const neededCount = (requiredQuestions * 2) + BUFFER_QUESTIONS;
+  const count = await getCachedCount();
 
-  if (cached.length >= neededCount) {
-    return { status: 'ready', count: cached.length };
+  if (count >= neededCount) {
+    return { status: 'ready', count };
   }
 
-  if (cached.length > 0) {
-    return { status: 'partial', count: cached.length, needed: neededCount };
+  if (count > 0) {
+    return { status: 'partial', count, needed: neededCount };
   }
 
   return { status: 'empty', count: 0, needed: neededCount };
@@ -227,5 +235,6 @@ export default {
   getQuestionsForSession,
   clearOldCache,
   forcePreload,
-  getPreloadStatus
+  getPreloadStatus,
+  syncNativePrefetch
 };
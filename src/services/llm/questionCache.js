@@ -1,10 +1,60 @@
+import { Capacitor, registerPlugin } from '@capacitor/core';
 import { get, set, remove } from '../storage/storageService';
 import { QUESTION_CACHE_SIZE } from '../../utils/constants';
 
+/**
+ * Question cache.
+ *
+ * On Android the cache is the native QuestionStore: per-category queues in an
+ * append-only file, where push and pop are O(1) and size caps and compaction
+ * are handled natively. The localStorage array below is only used on web
+ * builds, and is migrated into the native store once on Android.
+ */
+
+/** The one QuestionStore plugin proxy — seenQuestions.js imports it from here. */
+export const QuestionStore = registerPlugin('QuestionStore');
+
 const CACHE_KEY = 'questionCache';
 
-export function cacheQuestions(questions) {
-  const existing = getCachedQuestions();
+const useNativeStore = Capacitor.isNativePlatform() && Capacitor.getPlatform() === 'android';
+
+let legacyMigration = null;
+
+/**
+ * Move a cache left in localStorage by an older version into the native store.
+ */
+function migrateLegacyCache() {
+  if (!legacyMigration) {
+    legacyMigration = (async () => {
+      const legacy = get(CACHE_KEY);
+      if (Array.isArray(legacy) && legacy.length > 0) {
+        await QuestionStore.push({ questions: legacy });
+        console.log('[QuestionCache] Migrated', legacy.length, 'questions to native store');
+      }
+      remove(CACHE_KEY);
+    })().catch((e) => {
+      console.warn('[QuestionCache] Legacy cache migration failed:', e.message);
+    });
+  }
+  return legacyMigration;
+}
+
+async function nativeStore() {
+  await migrateLegacyCache();
+  return QuestionStore;
+}
+
+/**
+ * Append questions. The oldest are evicted beyond the size caps.
+ * @returns {Promise<number>} Cache size afterwards
+ */
+export async function cacheQuestions(questions) {
+  if (useNativeStore) {
+    const { size } = await (await nativeStore()).push({ questions });
+    return size;
+  }
+
+  const existing = get(CACHE_KEY) || [];
   const combined = [...existing, ...questions];
 
   // Enforce cache size limit - keep only the most recent questions
@@ -14,55 +64,105 @@ export function cacheQuestions(questions) {
     : combined;
 
   set(CACHE_KEY, limited);
-  return limited;
+  return limited.length;
 }
 
-export function getCachedQuestions() {
+/**
+ * All cached questions, oldest first, without removing them.
+ */
+export async function getCachedQuestions() {
+  if (useNativeStore) {
+    const { questions } = await (await nativeStore()).peek({});
+    return questions;
+  }
   return get(CACHE_KEY) || [];
 }
 
-export function clearCache() {
+/**
+ * Number of cached questions — no questions cross the bridge.
+ */
+export async function getCachedCount() {
+  if (useNativeStore) {
+    const { size } = await (await nativeStore()).size();
+    return size;
+  }
+  return (get(CACHE_KEY) || []).length;
+}
+
+export async function clearCache() {
+  if (useNativeStore) {
+    await (await nativeStore()).clear();
+    return;
+  }
   remove(CACHE_KEY);
 }
 
-export function hasSufficientQuestions(count) {
-  const cached = getCachedQuestions();
-  return cached.length >= count;
+export async function hasSufficientQuestions(count) {
+  return (await getCachedCount()) >= count;
 }
 
-export function getAndRemoveQuestion(categories) {
-  const cached = getCachedQuestions();
+/**
+ * Remove and return up to count questions, spread over the requested
+ * categories, then from any category when those run out. One bridge call
+ * for a whole alarm session.
+ */
+export async function takeQuestions(count, categories) {
+  if (useNativeStore) {
+    const { questions } = await (await nativeStore()).take({ count, categories });
+    return questions;
+  }
 
-  if (cached.length === 0) {
-    return null;
+  const cached = get(CACHE_KEY) || [];
+  const taken = [];
+  const remaining = [];
+  for (const q of cached) {
+    if (taken.length < count && categories.includes(q.category)) {
+      taken.push(q);
+    } else {
+      remaining.push(q);
+    }
+  }
+  while (taken.length < count && remaining.length > 0) {
+    taken.push(remaining.shift());
   }
+  set(CACHE_KEY, remaining);
+  return taken;
+}
 
-  // Find a question matching one of the requested categories
-  const matchIndex = cached.findIndex(q =>
-    categories.includes(q.category)
-  );
+export async function getAndRemoveQuestion(categories) {
+  const [question] = await takeQuestions(1, categories);
+  return question || null;
+}
 
-  if (matchIndex === -1) {
-    // No matching category found, return first available question
-    const [question, ...remaining] = cached;
-    set(CACHE_KEY, remaining);
-    return question;
+/**
+ * Drop questions cached more than maxAgeMs ago.
+ * @returns {Promise<number>} Number removed
+ */
+export async function pruneCache(maxAgeMs) {
+  if (useNativeStore) {
+    const { removed } = await (await nativeStore()).prune({ maxAgeMs });
+    return removed;
   }
 
-  // Remove and return the matching question
-  const question = cached[matchIndex];
-  const remaining = [
-    ...cached.slice(0, matchIndex),
-    ...cached.slice(matchIndex + 1)
-  ];
-  set(CACHE_KEY, remaining);
-  return question;
+  const cached = get(CACHE_KEY) || [];
+  const now = Date.now();
+  const valid = cached.filter(q => {
+    if (!q.cachedAt) return true; // Keep questions without timestamp
+    return now - q.cachedAt < maxAgeMs;
+  });
+  if (valid.length < cached.length) {
+    set(CACHE_KEY, valid);
+  }
+  return cached.length - valid.length;
 }
 
 export default {
   cacheQuestions,
   getCachedQuestions,
+  getCachedCount,
   clearCache,
   hasSufficientQuestions,
-  getAndRemoveQuestion
+  takeQuestions,
+  getAndRemoveQuestion,
+  pruneCache
 };
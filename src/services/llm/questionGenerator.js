@@ -1,4 +1,5 @@
 import { generateCompletion, isModelReady } from './webllm';
+import { generateBatchNative, isNativeGeneratorAvailable } from './nativeGenerator';
 import { CATEGORIES } from '../../utils/constants';
 
 const MAX_RETRIES = 2;
@@ -168,8 +169,19 @@ export async function generateQuestions(categories, count) {
   return questions.length > 0 ? questions : null;
 }
 
-export async function generateQuestionBatch(categories, count) {
+/**
+ * True when either WebLLM is loaded or the native CPU generator can run.
+ */
+export async function canGenerateQuestions() {
+  return isModelReady() || isNativeGeneratorAvailable();
+}
+
+export async function generateQuestionBatch(categories, count, options = {}) {
   if (!isModelReady()) {
+    // No WebGPU model — generate on the CPU natively when a model is installed
+    if (await isNativeGeneratorAvailable()) {
+      return generateBatchNative(categories, count, options);
+    }
     console.warn('Model not ready, cannot generate questions');
     return null;
   }
@@ -219,5 +231,6 @@ export async function generateQuestionBatch(categories, count) {
 
 export default {
   generateQuestions,
-  generateQuestionBatch
+  generateQuestionBatch,
+  canGenerateQuestions
 };
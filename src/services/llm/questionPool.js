@@ -13,9 +13,14 @@ import { initializeModel, isModelReady, onModelReady } from './webllm';
 import { getSettings } from '../storage/settingsStorage';
 import { getAlarm } from '../storage/alarmStorage';
 import { saveQuestionSet, deleteQuestionSet, getRequiredQuestionCount } from '../storage/questionStorage';
+import { recordGeneration } from '../storage/statsStorage';
+import { filterUnseen, preferUnseen } from './seenQuestions';
 
 const POOL_STORAGE_KEY = 'wakeai_question_pool';
 
+// Fallback questions drawn per question needed, so seen ones can be skipped
+const FALLBACK_SAMPLE_FACTOR = 4;
+
 // Phase targets — how many questions we want at each phase
 const PHASE_TARGETS = {
   1: 5,  // covers Easy
@@ -140,6 +145,8 @@ export async function generateQuestionsInPhases(categories) {
 
   isGenerating = true;
   generationAborted = false;
+  const startedAt = Date.now();
+  let generated = 0;
 
   const currentCount = getPoolCount();
   console.log('[QuestionPool] Starting phased generation. Current count:', currentCount);
@@ -167,8 +174,12 @@ export async function generateQuestionsInPhases(categories) {
       const newQuestions = await generateQuestionSet('EASY', categories, needed);
 
       if (newQuestions && newQuestions.length > 0) {
-        const cleanQuestions = newQuestions.filter(q => typeof q === 'object' && q.question);
+        // Repeats of earlier mornings are dropped; the next phase tops up
+        const cleanQuestions = await filterUnseen(
+          newQuestions.filter(q => typeof q === 'object' && q.question)
+        );
         addToPool(cleanQuestions, categories);
+        generated += cleanQuestions.length;
       }
 
       // Small delay between phases
@@ -186,6 +197,7 @@ export async function generateQuestionsInPhases(categories) {
     console.error('[QuestionPool] Generation error:', error);
   } finally {
     isGenerating = false;
+    recordGeneration(Date.now() - startedAt, generated);
     // NOTE: Model is intentionally NOT unloaded here.
     // Lifecycle is managed by App.jsx (foreground/background).
   }
@@ -222,7 +234,10 @@ export async function initializeQuestionPool() {
   if (currentCount < 9) {
     const needed = 9 - currentCount;
     console.log('[QuestionPool] Pre-filling pool with', needed, 'fallback questions');
-    const fallback = getRandomFallbackQuestions(categories, needed);
+    const fallback = await preferUnseen(
+      getRandomFallbackQuestions(categories, needed * FALLBACK_SAMPLE_FACTOR),
+      needed
+    );
     addToPool(fallback, categories);
   }
 
@@ -258,10 +273,14 @@ export async function generateAdditionalQuestions(additionalCount, categories) {
   // If model is ready, generate with LLM
   if (isModelReady()) {
     try {
+      const startedAt = Date.now();
       const newQuestions = await generateQuestionSet('EASY', categories, additionalCount);
       if (newQuestions && newQuestions.length > 0) {
-        const cleanQuestions = newQuestions.filter(q => typeof q === 'object' && q.question);
+        const cleanQuestions = await filterUnseen(
+          newQuestions.filter(q => typeof q === 'object' && q.question)
+        );
         addToPool(cleanQuestions, categories);
+        recordGeneration(Date.now() - startedAt, cleanQuestions.length);
         return;
       }
     } catch (error) {
@@ -271,7 +290,10 @@ export async function generateAdditionalQuestions(additionalCount, categories) {
 
   // Fallback — always works
   console.log('[QuestionPool] Using fallback for additional questions');
-  const fallback = getRandomFallbackQuestions(categories, additionalCount);
+  const fallback = await preferUnseen(
+    getRandomFallbackQuestions(categories, additionalCount * FALLBACK_SAMPLE_FACTOR),
+    additionalCount
+  );
   addToPool(fallback, categories);
 }
 
@@ -0,0 +1,66 @@
+import { Capacitor } from '@capacitor/core';
+import { QuestionStore } from './questionCache';
+
+/**
+ * Which questions the user has already been shown, across days.
+ *
+ * Backed by the native seen-question index (content-hashed, constant time
+ * per question). Web builds have no index: every question counts as unseen.
+ */
+
+const useNativeIndex = Capacitor.isNativePlatform() && Capacitor.getPlatform() === 'android';
+
+/**
+ * Record questions as shown. Call when a question session ends.
+ */
+export async function markQuestionsSeen(questions) {
+  if (!useNativeIndex || !questions || questions.length === 0) return;
+  try {
+    await QuestionStore.markSeen({ questions });
+  } catch (e) {
+    console.warn('[SeenQuestions] markSeen failed:', e.message);
+  }
+}
+
+/**
+ * One flag per question: true if the user has seen it before.
+ * @returns {Promise<boolean[]>}
+ */
+export async function checkSeen(questions) {
+  if (!useNativeIndex || questions.length === 0) {
+    return questions.map(() => false);
+  }
+  try {
+    const { seen } = await QuestionStore.checkSeen({ questions });
+    return seen;
+  } catch (e) {
+    console.warn('[SeenQuestions] checkSeen failed:', e.message);
+    return questions.map(() => false);
+  }
+}
+
+/**
+ * Questions the user hasn't seen yet.
+ */
+export async function filterUnseen(questions) {
+  const seen = await checkSeen(questions);
+  return questions.filter((_, i) => !seen[i]);
+}
+
+/**
+ * Pick count questions, unseen ones first, topping up with seen ones only
+ * when there aren't enough — for sources that must never come back short.
+ */
+export async function preferUnseen(questions, count) {
+  const seen = await checkSeen(questions);
+  const unseen = questions.filter((_, i) => !seen[i]);
+  const repeats = questions.filter((_, i) => seen[i]);
+  return [...unseen, ...repeats].slice(0, count);
+}
+
+export default {
+  markQuestionsSeen,
+  checkSeen,
+  filterUnseen,
+  preferUnseen
+};
@@ -1,6 +1,14 @@
 import { get, set, remove } from './storageService';
 
 const STATS_KEY = 'wakeai_stats';
+const GENERATION_STATS_KEY = 'wakeai_generation_stats';
+
+const DEFAULT_GENERATION_STATS = {
+  runs: 0,
+  totalMs: 0,
+  questions: 0,
+  lastRunAt: null
+};
 
 const DEFAULT_STATS = {
   totalAlarms: 0,
@@ -66,6 +74,28 @@ export function resetStats() {
   remove(STATS_KEY);
 }
 
+/**
+ * LLM question generation cost — wall time of each generation run and how
+ * many questions it produced. Shown next to the native per-fire costs.
+ */
+export function getGenerationStats() {
+  const stored = get(GENERATION_STATS_KEY);
+  return { ...DEFAULT_GENERATION_STATS, ...stored };
+}
+
+export function recordGeneration(durationMs, questions) {
+  const stats = getGenerationStats();
+  const updated = {
+    ...stats,
+    runs: stats.runs + 1,
+    totalMs: stats.totalMs + durationMs,
+    questions: stats.questions + questions,
+    lastRunAt: Date.now()
+  };
+  set(GENERATION_STATS_KEY, updated);
+  return updated;
+}
+
 export function getWinRate() {
   const stats = getStats();
   if (stats.totalAlarms === 0) {
@@ -88,6 +118,8 @@ export default {
   recordKill,
   recordFail,
   resetStats,
+  getGenerationStats,
+  recordGeneration,
   getWinRate,
   getAccuracy
 };
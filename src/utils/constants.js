@@ -25,6 +25,17 @@ export const MODEL_CONFIG = {
   LARGE: { id: 'Qwen2.5-1.5B-Instruct-q4f16_1-MLC', ramThreshold: 6000 }
 };
 
+// Native CPU generator model (.task), for devices without WebGPU: Qwen2.5-0.5B
+// 8-bit with a 1280-token KV cache, as QuestionGenerator.java expects. The
+// file is only installed if its SHA-256 matches; bump both together. Until the
+// digest of the release artifact is filled in, nothing is downloaded — set it
+// together with nativeQuestionModel in android/variables.gradle, which is what
+// packages the native runtime.
+export const NATIVE_QUESTION_MODEL = {
+  url: 'https://huggingface.co/litert-community/Qwen2.5-0.5B-Instruct/resolve/main/Qwen2.5-0.5B-Instruct_multi-prefill-seq_q8_ekv1280.task',
+  sha256: ''
+};
+
 export const PRELOAD_BEFORE_ALARM_MS = 30 * 60 * 1000; // 30 minutes
 export const QUESTION_CACHE_SIZE = 10;
 